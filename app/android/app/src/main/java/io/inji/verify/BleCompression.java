@@ -0,0 +1,114 @@
+package io.inji.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Payload compression for BLE transfers. The verifier publishes the codecs it
+// can decode on the CAPS characteristic; the wallet picks one both support and
+// names it in START, so a peer from before this handshake (no CAPS, or no codec
+// byte in START) simply gets CODEC_NONE. Only raw deflate with a preset
+// dictionary is offered: zstd has no implementation in the platform or in
+// this app's dependencies.
+final class BleCompression {
+
+    static final int CODEC_NONE = 0;
+    static final int CODEC_DEFLATE = 1;
+
+    // Bitmask over codec ids, as published on CAPS
+    static final int SUPPORTED_CODECS = 1 << CODEC_DEFLATE;
+
+    // Hand-picked seed, not trained: strings left in the sample farmer credential
+    // (mosip-farmer-vc.json) once VcCodec's own dictionaries have been applied,
+    // i.e. JWS headers, DID and context URL fragments and its subject fields. It
+    // is tuned to that one sample, so other credential types gain less. Most
+    // frequent material comes last, where deflate reaches it with the shortest
+    // distances. The bytes are part of what CODEC_DEFLATE means on the wire, so
+    // a dictionary built from a corpus of real credentials ships under a new
+    // codec id, negotiated through CAPS; this one can be retired once no peer
+    // still publishes only CODEC_DEFLATE.
+    private static final byte[] DICTIONARY = (
+        "farmerIdidTypefarmSizeHectaretypeOfCroplandOwnershipCommunity LanddistrictstatedateOfIssue"
+            + "validTillprimaryCropTypesecondaryCropTypelandAreaRiceWheatPulsesLeasedOwnedFarmer ID"
+            + "@gmail.comphoneNumber+91dateOfBirthgenderMaleFemaleaddressfaceimage/jpeg;base64,"
+            + "data:image/png;base64,data:image/jpeg;base64,urn:uuid:did:key:z6Mk"
+            + "https://w3id.org/https://www.w3.org/mock-public-key.jsonmock-controller.json"
+            + "SchoolCredential.json/DID/.github.io/FarmerCredentialMOSIPVerifiableCredential"
+            + "https://did:web:#key-0\",\"alg\":\"PS256\"}\",\"alg\":\"ES256\"}\",\"alg\":\"RS256\"}"
+            + "\",\"alg\":\"EdDSA\"}{\"x5t#S256\":\"\",\"b64\":false,\"crit\":[\"b64\"],\"kid\":\"")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private BleCompression() {
+    }
+
+    static boolean isSupported(int codec) {
+        return codec == CODEC_NONE || (codec < 8 && (SUPPORTED_CODECS & (1 << codec)) != 0);
+    }
+
+    // The codec to use with a verifier publishing peerCodecs
+    static int choose(int peerCodecs) {
+        return (peerCodecs & SUPPORTED_CODECS & (1 << CODEC_DEFLATE)) != 0 ? CODEC_DEFLATE : CODEC_NONE;
+    }
+
+    static byte[] compress(byte[] input, int codec) {
+        if (codec == CODEC_NONE) {
+            return input;
+        }
+        if (codec != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown codec: " + codec);
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+            byte[] chunk = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Refuses output beyond maxLength, so a small frame cannot inflate into a huge allocation
+    static byte[] decompress(byte[] input, int length, int codec, int maxLength) {
+        if (codec == CODEC_NONE) {
+            if (length > maxLength) {
+                throw new IllegalArgumentException("Payload too large");
+            }
+            byte[] copy = new byte[length];
+            System.arraycopy(input, 0, copy, 0, length);
+            return copy;
+        }
+        if (codec != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown codec: " + codec);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(input, 0, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 3);
+            byte[] chunk = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed payload");
+                }
+                if (out.size() + n > maxLength) {
+                    throw new IllegalArgumentException("Payload too large");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
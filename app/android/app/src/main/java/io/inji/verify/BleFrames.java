@@ -0,0 +1,123 @@
+package io.inji.verify;
+
+import java.util.UUID;
+
+// Wire format of the BLE credential transfer. The wallet (GATT client) writes
+// START and DATA frames to the DATA characteristic without response; the
+// verifier (GATT server) answers with cumulative ACKs on the ACK characteristic.
+//
+//   START  [1][version][total u32][chunk u16][window u8][codec u8]
+//   DATA   [2][seq u16][chunk bytes; the last one may be shorter]
+//   ACK    [3][next expected seq u16][flags]
+//   ABORT  [4][reason]
+//
+// Multi-byte fields are big-endian. Every frame fits the default 23-byte MTU
+// except DATA, whose chunk size follows the negotiated MTU.
+//
+// Before sending, the wallet reads the CAPS characteristic, [version][codec
+// mask], and names a codec both sides support in START (see BleCompression).
+// Peers from before CAPS existed send a 9-byte START, meaning CODEC_NONE, and
+// ignore the codec byte, which is only ever non-zero once CAPS was read.
+final class BleFrames {
+
+    interface Channel {
+        // Sends one frame; false if the link is busy, in which case the caller
+        // retries once it is told the link is writable again
+        boolean send(byte[] frame, int length);
+    }
+
+    static final UUID SERVICE_UUID = UUID.fromString("6f3c1a40-5b8e-4c2b-9a0e-7d4b1f0c2a10");
+    static final UUID DATA_UUID = UUID.fromString("6f3c1a41-5b8e-4c2b-9a0e-7d4b1f0c2a10");
+    static final UUID ACK_UUID = UUID.fromString("6f3c1a42-5b8e-4c2b-9a0e-7d4b1f0c2a10");
+    static final UUID CAPS_UUID = UUID.fromString("6f3c1a43-5b8e-4c2b-9a0e-7d4b1f0c2a10");
+    // Client Characteristic Configuration descriptor, for enabling notifications
+    static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    static final int VERSION = 1;
+
+    static final byte TYPE_START = 1;
+    static final byte TYPE_DATA = 2;
+    static final byte TYPE_ACK = 3;
+    static final byte TYPE_ABORT = 4;
+
+    // ACK sent because of a missing or repeated frame: resend from its seq
+    static final int FLAG_RESEND = 1;
+
+    static final int REASON_TOO_LARGE = 1;
+    static final int REASON_PROTOCOL = 2;
+    static final int REASON_CANCELLED = 3;
+
+    static final int DEFAULT_MTU = 23;
+    // Largest ATT MTU; Android 14 requests it regardless of what is asked for
+    static final int MAX_MTU = 517;
+    static final int ATT_HEADER = 3;
+    static final int START_LENGTH = 10;
+    // START without the codec byte, as sent by older wallets
+    static final int MIN_START_LENGTH = 9;
+    static final int CAPS_LENGTH = 2;
+    static final int DATA_HEADER = 3;
+    static final int ACK_LENGTH = 4;
+    static final int ABORT_LENGTH = 2;
+    static final int MAX_FRAMES = 0xffff;
+
+    private BleFrames() {
+    }
+
+    // Payload bytes per DATA frame at the given ATT MTU
+    static int chunkSize(int mtu) {
+        return Math.min(mtu, MAX_MTU) - ATT_HEADER - DATA_HEADER;
+    }
+
+    static int writeStart(byte[] out, int total, int chunk, int window, int codec) {
+        out[0] = TYPE_START;
+        out[1] = VERSION;
+        putInt(out, 2, total);
+        putShort(out, 6, chunk);
+        out[8] = (byte) window;
+        out[9] = (byte) codec;
+        return START_LENGTH;
+    }
+
+    static byte[] caps(int codecs) {
+        return new byte[] {VERSION, (byte) codecs};
+    }
+
+    // Codec mask of a CAPS value; 0 (uncompressed only) if it is missing or malformed
+    static int capsCodecs(byte[] value) {
+        return value != null && value.length >= CAPS_LENGTH ? value[1] & 0xff : 0;
+    }
+
+    static int writeAck(byte[] out, int nextSeq, int flags) {
+        out[0] = TYPE_ACK;
+        putShort(out, 1, nextSeq);
+        out[3] = (byte) flags;
+        return ACK_LENGTH;
+    }
+
+    static int writeAbort(byte[] out, int reason) {
+        out[0] = TYPE_ABORT;
+        out[1] = (byte) reason;
+        return ABORT_LENGTH;
+    }
+
+    static int getShort(byte[] in, int offset) {
+        return (in[offset] & 0xff) << 8 | (in[offset + 1] & 0xff);
+    }
+
+    static int getInt(byte[] in, int offset) {
+        return (in[offset] & 0xff) << 24 | (in[offset + 1] & 0xff) << 16
+            | (in[offset + 2] & 0xff) << 8 | (in[offset + 3] & 0xff);
+    }
+
+    static void putShort(byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >>> 8);
+        out[offset + 1] = (byte) value;
+    }
+
+    static void putInt(byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,193 @@
+package io.inji.verify;
+
+// Verifier side of a BLE transfer: reassembles DATA frames straight into a
+// buffer allocated once for the largest accepted payload, acknowledging every
+// half window. A missing or repeated frame gets one RESEND ack until the
+// expected frame shows up. Reusable across transfers; not thread-safe.
+final class BleReceiver {
+
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private final BleFrames.Channel channel;
+    private final byte[] reply = new byte[BleFrames.ACK_LENGTH];
+
+    private boolean started;
+    private boolean complete;
+    private int failure;
+    private int length;
+    private int chunk;
+    private int codec;
+    private int frameCount;
+    private int nextSeq;
+    private int ackInterval;
+    private int sinceAck;
+    private boolean resendRequested;
+    private TransferStats stats;
+
+    BleReceiver(int capacity, BleFrames.Channel channel) {
+        this.buffer = new byte[capacity];
+        this.channel = channel;
+    }
+
+    // A frame written by the sender; returns true when it completes the payload
+    boolean onFrame(byte[] in, int n) {
+        if (failure != 0 || n < 1) {
+            return false;
+        }
+        switch (in[0]) {
+            case BleFrames.TYPE_START:
+                return onStart(in, n);
+            case BleFrames.TYPE_DATA:
+                return onData(in, n);
+            case BleFrames.TYPE_ABORT:
+                failure = n >= BleFrames.ABORT_LENGTH ? Math.max(1, in[1] & 0xff) : BleFrames.REASON_CANCELLED;
+                return false;
+            default:
+                abort(BleFrames.REASON_PROTOCOL);
+                return false;
+        }
+    }
+
+    private boolean onStart(byte[] in, int n) {
+        if (n < BleFrames.MIN_START_LENGTH || in[1] != BleFrames.VERSION) {
+            abort(BleFrames.REASON_PROTOCOL);
+            return false;
+        }
+        int total = BleFrames.getInt(in, 2);
+        int chunkSize = BleFrames.getShort(in, 6);
+        int codecId = n >= BleFrames.START_LENGTH ? in[9] & 0xff : BleCompression.CODEC_NONE;
+        if (total < 0 || total > buffer.length) {
+            abort(BleFrames.REASON_TOO_LARGE);
+            return false;
+        }
+        if (chunkSize == 0 || (total + chunkSize - 1) / chunkSize > BleFrames.MAX_FRAMES
+                || !BleCompression.isSupported(codecId)) {
+            abort(BleFrames.REASON_PROTOCOL);
+            return false;
+        }
+        if (started && !complete && total == length && chunkSize == chunk && codecId == codec) {
+            // START resent after a lost ack; keep what already arrived
+            stats.frame(n, true);
+            return false;
+        }
+        started = true;
+        complete = false;
+        length = total;
+        chunk = chunkSize;
+        codec = codecId;
+        frameCount = (total + chunkSize - 1) / chunkSize;
+        nextSeq = 0;
+        sinceAck = 0;
+        resendRequested = false;
+        ackInterval = Math.max(1, (in[8] & 0xff) / 2);
+        stats = new TransferStats(total, chunkSize + BleFrames.DATA_HEADER + BleFrames.ATT_HEADER);
+        stats.setCodec(codecId);
+        stats.start(System.nanoTime());
+        stats.frame(n, false);
+        if (frameCount == 0) {
+            return finish();
+        }
+        return false;
+    }
+
+    private boolean onData(byte[] in, int n) {
+        if (!started) {
+            requestResend();
+            return false;
+        }
+        if (complete) {
+            // Our final ack was lost; repeat it
+            send(BleFrames.writeAck(reply, frameCount, 0));
+            return false;
+        }
+        if (n < BleFrames.DATA_HEADER) {
+            abort(BleFrames.REASON_PROTOCOL);
+            return false;
+        }
+        int seq = BleFrames.getShort(in, 1);
+        int size = n - BleFrames.DATA_HEADER;
+        if (seq != nextSeq) {
+            stats.frame(n, true);
+            requestResend();
+            return false;
+        }
+        int offset = seq * chunk;
+        if (size != Math.min(chunk, length - offset)) {
+            abort(BleFrames.REASON_PROTOCOL);
+            return false;
+        }
+        System.arraycopy(in, BleFrames.DATA_HEADER, buffer, offset, size);
+        stats.frame(n, false);
+        nextSeq++;
+        resendRequested = false;
+        if (nextSeq == frameCount) {
+            return finish();
+        }
+        if (++sinceAck >= ackInterval) {
+            sinceAck = 0;
+            send(BleFrames.writeAck(reply, nextSeq, 0));
+        }
+        return false;
+    }
+
+    private boolean finish() {
+        complete = true;
+        stats.finish(System.nanoTime());
+        send(BleFrames.writeAck(reply, frameCount, 0));
+        return true;
+    }
+
+    private void requestResend() {
+        if (!resendRequested) {
+            resendRequested = true;
+            send(BleFrames.writeAck(reply, nextSeq, BleFrames.FLAG_RESEND));
+        }
+    }
+
+    private void abort(int reason) {
+        failure = reason;
+        send(BleFrames.writeAbort(reply, reason));
+    }
+
+    // A lost ack is recovered by the sender's timeout, so a busy link is not retried
+    private void send(int n) {
+        channel.send(reply, n);
+    }
+
+    // Ready for a new transfer, keeping the buffer
+    void reset() {
+        started = false;
+        complete = false;
+        failure = 0;
+        length = 0;
+        stats = null;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    // 0 unless the transfer failed, else one of the BleFrames.REASON_ codes
+    int getFailure() {
+        return failure;
+    }
+
+    // Valid once started: how buffer() is compressed, a BleCompression.CODEC_ value
+    int codec() {
+        return codec;
+    }
+
+    // Valid once complete: the payload is buffer()[0, length())
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    TransferStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,169 @@
+package io.inji.verify;
+
+// Wallet side of a BLE transfer: splits the payload into MTU-sized DATA frames
+// and keeps up to a window of them unacknowledged. ACKs from the receiver are
+// cumulative; a RESEND ack, or an ack timeout without progress, rewinds to the
+// first unacknowledged frame (go-back-N). Frames are built in one reused buffer.
+// Not thread-safe: drive it from a single thread.
+final class BleSender {
+
+    static final int DEFAULT_WINDOW = 16;
+    // Consecutive ack timeouts without progress before giving up
+    static final int MAX_STALLS = 5;
+
+    private final byte[] payload;
+    private final int length;
+    private final int chunk;
+    private final int frameCount;
+    private final int window;
+    private final int codec;
+    private final BleFrames.Channel channel;
+    private final byte[] frame;
+    private final TransferStats stats;
+
+    private boolean startSent;
+    private boolean started;
+    // First unacknowledged frame, and the next one to write
+    private int base;
+    private int next;
+    // Frames written at least once; anything below this is a resend
+    private int highWater;
+    private boolean progressed;
+    private int stalls;
+    private boolean complete;
+    private int abortReason;
+
+    BleSender(byte[] payload, int length, int mtu, int window, BleFrames.Channel channel) {
+        this(payload, length, BleCompression.CODEC_NONE, mtu, window, channel);
+    }
+
+    // payload is already compressed with codec, a BleCompression.CODEC_ value
+    BleSender(byte[] payload, int length, int codec, int mtu, int window, BleFrames.Channel channel) {
+        this.payload = payload;
+        this.length = length;
+        this.chunk = BleFrames.chunkSize(mtu);
+        this.frameCount = (length + chunk - 1) / chunk;
+        if (frameCount > BleFrames.MAX_FRAMES) {
+            throw new IllegalArgumentException("Payload too large for MTU " + mtu + ": " + length);
+        }
+        this.window = Math.max(1, Math.min(window, 0xff));
+        this.codec = codec;
+        this.channel = channel;
+        this.frame = new byte[chunk + BleFrames.DATA_HEADER];
+        this.stats = new TransferStats(length, mtu);
+        stats.setCodec(codec);
+    }
+
+    // Writes as many frames as the window and the link allow. Call once to
+    // begin and again whenever the link reports it is writable.
+    void pump() {
+        if (isFinished()) {
+            return;
+        }
+        if (!startSent) {
+            int n = BleFrames.writeStart(frame, length, chunk, window, codec);
+            if (!channel.send(frame, n)) {
+                return;
+            }
+            if (!started) {
+                started = true;
+                stats.start(System.nanoTime());
+                stats.frame(n, false);
+            } else {
+                stats.frame(n, true);
+            }
+            startSent = true;
+        }
+        while (next < frameCount && next - base < window) {
+            int offset = next * chunk;
+            int n = Math.min(chunk, length - offset);
+            frame[0] = BleFrames.TYPE_DATA;
+            BleFrames.putShort(frame, 1, next);
+            System.arraycopy(payload, offset, frame, BleFrames.DATA_HEADER, n);
+            if (!channel.send(frame, n + BleFrames.DATA_HEADER)) {
+                return;
+            }
+            stats.frame(n + BleFrames.DATA_HEADER, next < highWater);
+            next++;
+            highWater = Math.max(highWater, next);
+        }
+    }
+
+    // A frame notified by the receiver; returns true once the payload is acknowledged
+    boolean onFrame(byte[] in, int n) {
+        if (isFinished() || n < 1) {
+            return complete;
+        }
+        if (in[0] == BleFrames.TYPE_ABORT) {
+            abortReason = n >= BleFrames.ABORT_LENGTH ? Math.max(1, in[1] & 0xff) : BleFrames.REASON_PROTOCOL;
+            return false;
+        }
+        if (in[0] != BleFrames.TYPE_ACK || n < BleFrames.ACK_LENGTH) {
+            return false;
+        }
+        int acked = BleFrames.getShort(in, 1);
+        if (acked > frameCount) {
+            abortReason = BleFrames.REASON_PROTOCOL;
+            return false;
+        }
+        if (acked > base) {
+            base = acked;
+            progressed = true;
+            stalls = 0;
+        }
+        if ((in[3] & BleFrames.FLAG_RESEND) != 0) {
+            next = base;
+            if (base == 0) {
+                // The receiver never saw START
+                startSent = false;
+            }
+        }
+        next = Math.max(next, base);
+        if (base == frameCount && startSent) {
+            complete = true;
+            stats.finish(System.nanoTime());
+            return true;
+        }
+        pump();
+        return false;
+    }
+
+    // Called every ack timeout. Resends the window if nothing was acknowledged
+    // since the last call; returns false once the transfer is given up.
+    boolean onTimeout() {
+        if (isFinished()) {
+            return false;
+        }
+        if (progressed) {
+            progressed = false;
+            return true;
+        }
+        if (++stalls > MAX_STALLS) {
+            abortReason = BleFrames.REASON_CANCELLED;
+            return false;
+        }
+        next = base;
+        if (base == 0) {
+            startSent = false;
+        }
+        pump();
+        return true;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    boolean isFinished() {
+        return complete || abortReason != 0;
+    }
+
+    // 0 unless aborted, else one of the BleFrames.REASON_ codes
+    int getAbortReason() {
+        return abortReason;
+    }
+
+    TransferStats getStats() {
+        return stats;
+    }
+}
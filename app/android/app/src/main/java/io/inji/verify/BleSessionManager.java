@@ -0,0 +1,184 @@
+package io.inji.verify;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Verifier-side BLE sessions, one per connected wallet. Each session borrows a
+// BleReceiver from a pool of at most maxSessions, so reassembly buffers are
+// allocated once per slot and then reused. A completed payload is decompressed
+// into a copy for verification, but its slot stays taken until verified() is
+// called: when every slot is busy, hasCapacity() turns false and the server
+// refuses new wallets instead of queuing unbounded work behind the verification pool.
+// Sessions idle past IDLE_TIMEOUT_MS, or open longer than MAX_SESSION_MS, are
+// aborted so a slow wallet only ever holds its own slot. Not thread-safe.
+final class BleSessionManager {
+
+    interface Listener {
+        void onPayload(String sessionId, byte[] payload, TransferStats stats);
+
+        void onSessionFailed(String sessionId, String message);
+    }
+
+    static final int DEFAULT_MAX_SESSIONS = 4;
+    static final long IDLE_TIMEOUT_MS = 5000;
+    static final long MAX_SESSION_MS = 30000;
+
+    private final int maxSessions;
+    private final int capacity;
+    private final Listener listener;
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private final ArrayDeque<Slot> freeSlots = new ArrayDeque<>();
+    private final byte[] abortFrame = new byte[BleFrames.ABORT_LENGTH];
+    private int allocatedSlots;
+    private int verifying;
+
+    BleSessionManager(int maxSessions, int capacity, Listener listener) {
+        this.maxSessions = maxSessions;
+        this.capacity = capacity;
+        this.listener = listener;
+    }
+
+    // Starts a session for a newly connected wallet; false if it must be refused
+    boolean open(String sessionId, BleFrames.Channel channel, long now) {
+        if (sessions.containsKey(sessionId)) {
+            return true;
+        }
+        if (!hasCapacity()) {
+            return false;
+        }
+        Slot slot = freeSlots.poll();
+        if (slot == null) {
+            slot = new Slot(capacity);
+            allocatedSlots++;
+        }
+        slot.receiver.reset();
+        slot.channel = channel;
+        sessions.put(sessionId, new Session(slot, now));
+        return true;
+    }
+
+    void onFrame(String sessionId, byte[] frame, int length, long now) {
+        Session session = sessions.get(sessionId);
+        if (session == null || session.complete) {
+            if (session != null) {
+                // Lets the receiver repeat a lost final ack
+                session.slot.receiver.onFrame(frame, length);
+            }
+            return;
+        }
+        session.lastActivity = now;
+        BleReceiver receiver = session.slot.receiver;
+        if (receiver.onFrame(frame, length)) {
+            byte[] payload;
+            try {
+                // Decompressing also makes the copy that frees the buffer for reuse
+                payload = BleCompression.decompress(receiver.buffer(), receiver.length(), receiver.codec(), capacity);
+            } catch (IllegalArgumentException e) {
+                release(sessionId);
+                listener.onSessionFailed(sessionId, "Corrupt payload");
+                return;
+            }
+            session.complete = true;
+            verifying++;
+            TransferStats stats = receiver.getStats();
+            stats.setOriginalBytes(payload.length);
+            listener.onPayload(sessionId, payload, stats);
+        } else if (receiver.getFailure() != 0) {
+            release(sessionId);
+            listener.onSessionFailed(sessionId, GattWalletClient.abortMessage(receiver.getFailure()));
+        }
+    }
+
+    // The wallet disconnected
+    void close(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        release(sessionId);
+        if (!session.complete) {
+            listener.onSessionFailed(sessionId, "Wallet disconnected");
+        }
+    }
+
+    // Aborts stalled sessions and drops finished ones whose wallet lingers.
+    // Returns the sessions removed, whose connections should be closed.
+    List<String> expire(long now) {
+        List<String> expired = new ArrayList<>();
+        Iterator<Map.Entry<String, Session>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Session> entry = it.next();
+            Session session = entry.getValue();
+            boolean idle = now - session.lastActivity >= IDLE_TIMEOUT_MS;
+            if (!idle && (session.complete || now - session.openedAt < MAX_SESSION_MS)) {
+                continue;
+            }
+            it.remove();
+            expired.add(entry.getKey());
+            Slot slot = session.slot;
+            if (!session.complete) {
+                slot.channel.send(abortFrame, BleFrames.writeAbort(abortFrame, BleFrames.REASON_CANCELLED));
+            }
+            slot.channel = null;
+            freeSlots.push(slot);
+            if (!session.complete) {
+                listener.onSessionFailed(entry.getKey(), "Wallet timed out");
+            }
+        }
+        return expired;
+    }
+
+    // A payload handed out by onPayload has been verified; frees its slot
+    void verified() {
+        if (verifying > 0) {
+            verifying--;
+        }
+    }
+
+    boolean hasCapacity() {
+        return sessions.size() + verifying < maxSessions;
+    }
+
+    int activeSessions() {
+        return sessions.size();
+    }
+
+    // Receivers (and their buffers) created so far; never more than maxSessions
+    int allocatedSlots() {
+        return allocatedSlots;
+    }
+
+    private void release(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            session.slot.channel = null;
+            freeSlots.push(session.slot);
+        }
+    }
+
+    private static final class Slot {
+        final BleReceiver receiver;
+        BleFrames.Channel channel;
+
+        Slot(int capacity) {
+            receiver = new BleReceiver(capacity, (frame, length) -> channel != null && channel.send(frame, length));
+        }
+    }
+
+    private static final class Session {
+        final Slot slot;
+        final long openedAt;
+        long lastActivity;
+        boolean complete;
+
+        Session(Slot slot, long now) {
+            this.slot = slot;
+            this.openedAt = now;
+            this.lastActivity = now;
+        }
+    }
+}
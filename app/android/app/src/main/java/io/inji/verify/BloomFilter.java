@@ -0,0 +1,108 @@
+package io.inji.verify;
+
+import java.nio.ByteBuffer;
+
+// Bloom filter over a byte region of a (possibly memory-mapped) buffer.
+// Probes use double hashing of one 64-bit MurmurHash64A value, so a lookup
+// costs one pass over the key plus hashCount bit reads.
+final class BloomFilter {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(ByteBuffer buffer, int offset, long bitCount, int hashCount) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    // Bits for the expected entry count at the given false-positive rate, rounded to whole bytes
+    static long optimalBitCount(long entries, double falsePositiveRate) {
+        long n = Math.max(1, entries);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        return Math.max(64, (bits + 7) & ~7L);
+    }
+
+    static int optimalHashCount(long entries, long bitCount) {
+        long n = Math.max(1, entries);
+        return Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void put(byte[] key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = probe(h1, h2, i);
+            int index = offset + (int) (bit >>> 3);
+            buffer.put(index, (byte) (buffer.get(index) | (1 << (bit & 7))));
+        }
+    }
+
+    boolean mightContain(byte[] key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = probe(h1, h2, i);
+            if ((buffer.get(offset + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long probe(int h1, int h2, int i) {
+        long combined = h1 + (long) i * h2;
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+    // MurmurHash64A; the tail switch falls through on purpose
+    @SuppressWarnings("fallthrough")
+    static long hash64(byte[] key) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        long h = 0x9747b28cL ^ (key.length * m);
+
+        int blocks = key.length / 8;
+        for (int i = 0; i < blocks; i++) {
+            int p = i * 8;
+            long k = (key[p] & 0xffL)
+                | (key[p + 1] & 0xffL) << 8
+                | (key[p + 2] & 0xffL) << 16
+                | (key[p + 3] & 0xffL) << 24
+                | (key[p + 4] & 0xffL) << 32
+                | (key[p + 5] & 0xffL) << 40
+                | (key[p + 6] & 0xffL) << 48
+                | (key[p + 7] & 0xffL) << 56;
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+
+        int tail = blocks * 8;
+        switch (key.length - tail) {
+            case 7: h ^= (key[tail + 6] & 0xffL) << 48; // fall through
+            case 6: h ^= (key[tail + 5] & 0xffL) << 40; // fall through
+            case 5: h ^= (key[tail + 4] & 0xffL) << 32; // fall through
+            case 4: h ^= (key[tail + 3] & 0xffL) << 24; // fall through
+            case 3: h ^= (key[tail + 2] & 0xffL) << 16; // fall through
+            case 2: h ^= (key[tail + 1] & 0xffL) << 8; // fall through
+            case 1: h ^= key[tail] & 0xffL;
+                h *= m;
+                // fall through
+            default:
+                break;
+        }
+
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        return h;
+    }
+}
@@ -0,0 +1,264 @@
+package io.inji.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Verifies a folder of credential files in one go, e.g. the VC JSON files a
+// supervisor collected from wallets that had no network. The files are split
+// across a ForkJoinPool, one worker per core; each worker reads and verifies its
+// share and hands every result to the Listener as soon as it is known, so a large
+// batch streams into the log store instead of being held until the end.
+// Sources are a directory of .json files or a zip of them; zip entries are read
+// through ZipFile, which lets every worker open its own entries concurrently.
+public class BulkVerifier {
+
+    // One credential file
+    public interface Item {
+        String name();
+
+        InputStream open() throws IOException;
+    }
+
+    public interface Listener {
+        // Called on pool threads, several at a time
+        void onResult(String name, VerificationResult result);
+    }
+
+    public static final class Summary {
+        public final int total;
+        public final int verified;
+        public final long elapsedNanos;
+
+        Summary(int total, int verified, long elapsedNanos) {
+            this.total = total;
+            this.verified = verified;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double credentialsPerSecond() {
+            return elapsedNanos > 0 ? total * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d of %d credentials verified in %d ms (%.1f/s)",
+                verified, total, elapsedNanos / 1000000, credentialsPerSecond());
+        }
+    }
+
+    static final String EXTENSION = ".json";
+    // A UTF-8 file longer than this has more than MAX_PAYLOAD_LENGTH chars, so is
+    // rejected without reading the rest of it
+    static final int MAX_FILE_BYTES = VerificationEngine.MAX_PAYLOAD_LENGTH * 3;
+    // Leaf tasks per worker; enough to even out files that take longer than others
+    private static final int TASKS_PER_WORKER = 8;
+
+    private final VerificationEngine engine;
+    private final ForkJoinPool pool;
+
+    public BulkVerifier(VerificationEngine engine, ForkJoinPool pool) {
+        // Every core already verifies a credential of its own, so overlapping the
+        // stages of one credential would only add hand-offs
+        this.engine = engine.withoutStageExecutor();
+        this.pool = pool;
+    }
+
+    // Verifies every .json file in a directory, or every .json entry in a zip
+    public Summary verify(File source, Listener listener) throws IOException {
+        if (source.isDirectory()) {
+            return verify(files(source), listener);
+        }
+        ZipFile zip = new ZipFile(source);
+        try {
+            return verify(entries(zip), listener);
+        } finally {
+            zip.close();
+        }
+    }
+
+    public Summary verify(List<? extends Item> items, Listener listener) {
+        return verify(items, listener, System.currentTimeMillis());
+    }
+
+    // Expiry is checked against now for the whole batch
+    Summary verify(List<? extends Item> items, Listener listener, long now) {
+        long start = System.nanoTime();
+        int grain = Math.max(1, items.size() / (pool.getParallelism() * TASKS_PER_WORKER));
+        int verified = pool.invoke(new Batch(items, 0, items.size(), grain, listener, now));
+        return new Summary(items.size(), verified, System.nanoTime() - start);
+    }
+
+    // Logs each result under the file it came from. Workers still running once the
+    // writer is closed (the activity was destroyed mid-batch) have their logs dropped.
+    public static Listener logTo(final LogWriter writer) {
+        return (name, result) -> writer.enqueue(new VerificationLog(result.getPayloadHash(),
+            result.isSuccess() ? "success" : "failure", name + ": " + result.getMessage(),
+            System.currentTimeMillis(), false));
+    }
+
+    // .json files directly inside dir, by name
+    public static List<Item> files(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + dir);
+        }
+        Arrays.sort(files);
+        List<Item> items = new ArrayList<>(files.length);
+        for (final File file : files) {
+            if (file.isFile() && file.getName().endsWith(EXTENSION)) {
+                items.add(new Item() {
+                    @Override
+                    public String name() {
+                        return file.getName();
+                    }
+
+                    @Override
+                    public InputStream open() throws IOException {
+                        return new FileInputStream(file);
+                    }
+                });
+            }
+        }
+        return items;
+    }
+
+    // .json entries anywhere in zip, in archive order
+    public static List<Item> entries(final ZipFile zip) {
+        List<Item> items = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && entry.getName().endsWith(EXTENSION)) {
+                items.add(new Item() {
+                    @Override
+                    public String name() {
+                        return entry.getName();
+                    }
+
+                    @Override
+                    public InputStream open() throws IOException {
+                        return zip.getInputStream(entry);
+                    }
+                });
+            }
+        }
+        return items;
+    }
+
+    private VerificationResult verifyItem(Item item, long now) {
+        String payload;
+        try {
+            payload = read(item);
+        } catch (IOException e) {
+            return VerificationResult.failure("Unreadable file: " + e.getMessage())
+                .withPayloadHash(HashingService.hashPayload(""));
+        }
+        if (payload == null) {
+            return VerificationResult.failure("Payload too large")
+                .withPayloadHash(HashingService.hashPayload(""));
+        }
+        return engine.verify(payload, now);
+    }
+
+    // The file as UTF-8, or null if it is over MAX_FILE_BYTES
+    private static String read(Item item) throws IOException {
+        InputStream in = item.open();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                if (out.size() > MAX_FILE_BYTES) {
+                    return null;
+                }
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    // Verifies items[from, to), splitting in halves down to grain; returns how many verified
+    private final class Batch extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends Item> items;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Listener listener;
+        private final long now;
+
+        Batch(List<? extends Item> items, int from, int to, int grain, Listener listener, long now) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.listener = listener;
+            this.now = now;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= grain) {
+                int verified = 0;
+                for (int i = from; i < to; i++) {
+                    Item item = items.get(i);
+                    VerificationResult result = verifyItem(item, now);
+                    if (result.isSuccess()) {
+                        verified++;
+                    }
+                    listener.onResult(item.name(), result);
+                }
+                return verified;
+            }
+            int mid = (from + to) >>> 1;
+            Batch right = new Batch(items, mid, to, grain, listener, now);
+            right.fork();
+            int verified = new Batch(items, from, mid, grain, listener, now).compute();
+            return verified + right.join();
+        }
+    }
+
+    // Plain-JVM entry point, for trying a batch without a device:
+    //   BulkVerifier <trust-bundle.json> <directory|zip> [revocation.json]
+    // Prints one line per credential and the throughput; exits 1 unless all verified.
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BulkVerifier <trust-bundle.json> <directory|zip> [revocation.json]");
+            System.exit(2);
+        }
+        File index = File.createTempFile("revocation", ".idx");
+        index.deleteOnExit();
+        InputStream bundle = new FileInputStream(args[0]);
+        InputStream revocation = args.length > 2 ? new FileInputStream(args[2]) : null;
+        VerificationEngine engine;
+        try {
+            engine = VerificationEngine.load(bundle, revocation, index);
+        } finally {
+            bundle.close();
+            if (revocation != null) {
+                revocation.close();
+            }
+        }
+        Summary summary = new BulkVerifier(engine, new ForkJoinPool()).verify(new File(args[1]),
+            (name, result) -> System.out.println((result.isSuccess() ? "OK    " : "FAIL  ")
+                + name + ": " + result.getMessage()));
+        System.out.println(summary);
+        System.exit(summary.verified == summary.total ? 0 : 1);
+    }
+}
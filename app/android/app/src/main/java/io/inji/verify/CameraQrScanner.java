@@ -0,0 +1,230 @@
+package io.inji.verify;
+
+import android.app.Activity;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.io.IOException;
+import java.util.List;
+
+// Back camera preview feeding a QrScanPipeline. The camera runs on its own
+// HandlerThread and fills a small FrameRing of callback buffers, so preview
+// frames never reach the UI thread and no frame is ever allocated while scanning.
+// Uses the android.hardware.Camera API for its zero-copy callback buffers on API 23.
+@SuppressWarnings("deprecation")
+public class CameraQrScanner implements SurfaceHolder.Callback {
+
+    public interface Listener {
+        // All called on the main thread
+        void onQrDecoded(String payload);
+
+        // The code was already scanned within the deduplicator window
+        void onQrRepeat(ScanDeduplicator.Repeat repeat);
+
+        void onCameraError(String message);
+    }
+
+    // One being filled by the camera, one waiting, one being decoded
+    private static final int FRAME_BUFFERS = 3;
+    // Large enough for dense VC codes, small enough to decode well inside a frame budget
+    private static final int TARGET_WIDTH = 1280;
+    private static final int TARGET_HEIGHT = 720;
+
+    private final Activity activity;
+    private final SurfaceHolder holder;
+    private final Listener listener;
+    private final ScanDeduplicator deduplicator;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private HandlerThread cameraThread;
+    // Also read by the decode thread when it recycles buffers
+    private volatile Handler cameraHandler;
+    private volatile boolean surfaceReady;
+
+    // Camera thread only
+    private Camera camera;
+    private FrameRing ring;
+    private QrScanPipeline pipeline;
+
+    public CameraQrScanner(Activity activity, SurfaceView preview, ScanDeduplicator deduplicator,
+                           Listener listener) {
+        this.activity = activity;
+        this.holder = preview.getHolder();
+        this.deduplicator = deduplicator;
+        this.listener = listener;
+        holder.addCallback(this);
+    }
+
+    // continuous: keep the camera and decoder running after each code (gate mode)
+    public void start(final boolean continuous) {
+        if (cameraThread != null) {
+            return;
+        }
+        final int rotation = activity.getWindowManager().getDefaultDisplay().getRotation();
+        cameraThread = new HandlerThread("camera");
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+        cameraHandler.post(() -> openCamera(rotation, continuous));
+    }
+
+    // Blocks until the camera is released, so the surface can go away right after
+    public void stop() {
+        if (cameraThread == null) {
+            return;
+        }
+        cameraHandler.post(this::closeCamera);
+        cameraThread.quitSafely();
+        try {
+            cameraThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cameraThread = null;
+        cameraHandler = null;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder surfaceHolder) {
+        surfaceReady = true;
+        if (cameraHandler != null) {
+            cameraHandler.post(this::startPreview);
+        }
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder surfaceHolder, int format, int width, int height) {
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
+        surfaceReady = false;
+        stop();
+    }
+
+    private void openCamera(int displayRotation, boolean continuous) {
+        try {
+            int cameraId = findBackCamera();
+            camera = Camera.open(cameraId);
+            Camera.Parameters parameters = camera.getParameters();
+            Camera.Size size = choosePreviewSize(parameters.getSupportedPreviewSizes());
+            parameters.setPreviewSize(size.width, size.height);
+            if (parameters.getSupportedFocusModes().contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+                parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+            }
+            camera.setParameters(parameters);
+            camera.setDisplayOrientation(displayOrientation(cameraId, displayRotation));
+
+            final Camera owner = camera;
+            ring = new FrameRing(FRAME_BUFFERS, size.width, size.height, buffer -> {
+                // Camera calls must come from the camera thread
+                Handler handler = cameraHandler;
+                if (handler != null) {
+                    handler.post(() -> {
+                        if (camera == owner) {
+                            owner.addCallbackBuffer(buffer);
+                        }
+                    });
+                }
+            });
+            for (byte[] buffer : ring.buffers()) {
+                camera.addCallbackBuffer(buffer);
+            }
+            final FrameRing frames = ring;
+            camera.setPreviewCallbackWithBuffer((data, cam) -> frames.publish(data));
+
+            pipeline = new QrScanPipeline(ring, new QrDecoder(), deduplicator, continuous,
+                new QrScanPipeline.Listener() {
+                    @Override
+                    public void onDecoded(String payload) {
+                        mainHandler.post(() -> listener.onQrDecoded(payload));
+                    }
+
+                    @Override
+                    public void onRepeat(ScanDeduplicator.Repeat repeat) {
+                        mainHandler.post(() -> listener.onQrRepeat(repeat));
+                    }
+                });
+            pipeline.start();
+            startPreview();
+        } catch (RuntimeException e) {
+            closeCamera();
+            mainHandler.post(() -> listener.onCameraError("Camera unavailable"));
+        }
+    }
+
+    private void startPreview() {
+        if (camera == null || !surfaceReady) {
+            return;
+        }
+        try {
+            camera.setPreviewDisplay(holder);
+            camera.startPreview();
+        } catch (IOException | RuntimeException e) {
+            mainHandler.post(() -> listener.onCameraError("Camera preview failed"));
+        }
+    }
+
+    private void closeCamera() {
+        if (pipeline != null) {
+            pipeline.stop();
+            pipeline = null;
+        }
+        if (camera != null) {
+            camera.setPreviewCallbackWithBuffer(null);
+            camera.stopPreview();
+            camera.release();
+            camera = null;
+        }
+        ring = null;
+    }
+
+    private static int findBackCamera() {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
+            Camera.getCameraInfo(i, info);
+            if (info.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    // Closest to TARGET_WIDTH x TARGET_HEIGHT by pixel count
+    private static Camera.Size choosePreviewSize(List<Camera.Size> sizes) {
+        long target = (long) TARGET_WIDTH * TARGET_HEIGHT;
+        Camera.Size best = sizes.get(0);
+        for (Camera.Size size : sizes) {
+            long area = (long) size.width * size.height;
+            long bestArea = (long) best.width * best.height;
+            if (Math.abs(area - target) < Math.abs(bestArea - target)) {
+                best = size;
+            }
+        }
+        return best;
+    }
+
+    private static int displayOrientation(int cameraId, int displayRotation) {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        Camera.getCameraInfo(cameraId, info);
+        int degrees;
+        switch (displayRotation) {
+            case Surface.ROTATION_90:
+                degrees = 90;
+                break;
+            case Surface.ROTATION_180:
+                degrees = 180;
+                break;
+            case Surface.ROTATION_270:
+                degrees = 270;
+                break;
+            default:
+                degrees = 0;
+        }
+        return (info.orientation - degrees + 360) % 360;
+    }
+}
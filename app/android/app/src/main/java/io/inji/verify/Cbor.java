@@ -0,0 +1,244 @@
+package io.inji.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Minimal CBOR (RFC 8949) for the BLE transfer format: definite-length items
+// only, integers up to 64 bits, doubles, simple values and tags. Indefinite
+// lengths and half/single floats are rejected rather than half supported.
+final class Cbor {
+
+    static final int MAJOR_UNSIGNED = 0;
+    static final int MAJOR_NEGATIVE = 1;
+    static final int MAJOR_BYTES = 2;
+    static final int MAJOR_TEXT = 3;
+    static final int MAJOR_ARRAY = 4;
+    static final int MAJOR_MAP = 5;
+    static final int MAJOR_TAG = 6;
+    static final int MAJOR_SIMPLE = 7;
+
+    static final int SIMPLE_FALSE = 20;
+    static final int SIMPLE_TRUE = 21;
+    static final int SIMPLE_NULL = 22;
+    private static final int ADDITIONAL_DOUBLE = 27;
+
+    private Cbor() {
+    }
+
+    static final class Writer {
+
+        private byte[] buffer;
+        private int length;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+        }
+
+        // Major type plus argument in the shortest form
+        Writer head(int major, long value) {
+            int type = major << 5;
+            if (value < 24) {
+                ensure(1);
+                buffer[length++] = (byte) (type | value);
+            } else if (value < 0x100) {
+                ensure(2);
+                buffer[length++] = (byte) (type | 24);
+                buffer[length++] = (byte) value;
+            } else if (value < 0x10000) {
+                ensure(3);
+                buffer[length++] = (byte) (type | 25);
+                putBigEndian(value, 2);
+            } else if (value < 0x100000000L) {
+                ensure(5);
+                buffer[length++] = (byte) (type | 26);
+                putBigEndian(value, 4);
+            } else {
+                ensure(9);
+                buffer[length++] = (byte) (type | 27);
+                putBigEndian(value, 8);
+            }
+            return this;
+        }
+
+        Writer integer(long value) {
+            // -1 - n is ~n, which also covers Long.MIN_VALUE
+            return value >= 0 ? head(MAJOR_UNSIGNED, value) : head(MAJOR_NEGATIVE, ~value);
+        }
+
+        Writer doubleValue(double value) {
+            ensure(9);
+            buffer[length++] = (byte) (MAJOR_SIMPLE << 5 | ADDITIONAL_DOUBLE);
+            putBigEndian(Double.doubleToLongBits(value), 8);
+            return this;
+        }
+
+        Writer bytes(byte[] value) {
+            head(MAJOR_BYTES, value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, length, value.length);
+            length += value.length;
+            return this;
+        }
+
+        Writer text(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            head(MAJOR_TEXT, utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buffer, length, utf8.length);
+            length += utf8.length;
+            return this;
+        }
+
+        Writer simple(int value) {
+            return head(MAJOR_SIMPLE, value);
+        }
+
+        int size() {
+            return length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private void putBigEndian(long value, int count) {
+            for (int shift = (count - 1) * 8; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    // Pull reader: peek at the next major type, then read it with the matching call
+    static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        boolean hasMore() {
+            return position < data.length;
+        }
+
+        int peekMajor() {
+            require(1);
+            return (data[position] & 0xff) >>> 5;
+        }
+
+        // Additional info of the next item; tells doubles and simple values apart
+        int peekAdditional() {
+            require(1);
+            return data[position] & 0x1f;
+        }
+
+        // Reads a head of the given major type and returns its argument
+        long head(int major) {
+            require(1);
+            int initial = data[position] & 0xff;
+            if (initial >>> 5 != major) {
+                throw new IllegalArgumentException("Expected major type " + major + ", got " + (initial >>> 5));
+            }
+            position++;
+            int additional = initial & 0x1f;
+            if (additional < 24) {
+                return additional;
+            }
+            int count;
+            switch (additional) {
+                case 24:
+                    count = 1;
+                    break;
+                case 25:
+                    count = 2;
+                    break;
+                case 26:
+                    count = 4;
+                    break;
+                case 27:
+                    count = 8;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported CBOR argument: " + additional);
+            }
+            return readBigEndian(count);
+        }
+
+        long integer() {
+            if (peekMajor() == MAJOR_NEGATIVE) {
+                long n = head(MAJOR_NEGATIVE);
+                if (n < 0) {
+                    throw new IllegalArgumentException("CBOR integer out of range");
+                }
+                return ~n;
+            }
+            long value = head(MAJOR_UNSIGNED);
+            if (value < 0) {
+                throw new IllegalArgumentException("CBOR integer out of range");
+            }
+            return value;
+        }
+
+        double doubleValue() {
+            require(1);
+            if ((data[position] & 0xff) != (MAJOR_SIMPLE << 5 | ADDITIONAL_DOUBLE)) {
+                throw new IllegalArgumentException("Expected a double");
+            }
+            position++;
+            return Double.longBitsToDouble(readBigEndian(8));
+        }
+
+        byte[] bytes() {
+            int count = length(head(MAJOR_BYTES));
+            byte[] value = Arrays.copyOfRange(data, position, position + count);
+            position += count;
+            return value;
+        }
+
+        String text() {
+            int count = length(head(MAJOR_TEXT));
+            String value = new String(data, position, count, StandardCharsets.UTF_8);
+            position += count;
+            return value;
+        }
+
+        // Item count of an array or map; bounded by the bytes left so a bogus
+        // header cannot trigger a huge allocation
+        int count(int major) {
+            long count = head(major);
+            if (count < 0 || count > data.length - position) {
+                throw new IllegalArgumentException("CBOR container too large");
+            }
+            return (int) count;
+        }
+
+        private int length(long count) {
+            if (count < 0 || count > data.length - position) {
+                throw new IllegalArgumentException("CBOR string runs past end of data");
+            }
+            return (int) count;
+        }
+
+        private long readBigEndian(int count) {
+            require(count);
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                value = (value << 8) | (data[position++] & 0xff);
+            }
+            return value;
+        }
+
+        private void require(int count) {
+            if (position + count > data.length) {
+                throw new IllegalArgumentException("Truncated CBOR data");
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.inji.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+// Reference face embeddings that survive restarts, so a holder seen last week
+// only needs the live capture run through the model. Entries are packed into
+// fixed slots of a memory-mapped file; a full store overwrites its least
+// recently used slot. Only a digest-to-slot map lives on the heap, and lookups
+// copy straight from the mapping into the caller's array.
+//
+// Layout (big-endian):
+//   int magic, int embeddingSize, int capacity, int reserved
+//   capacity slots of: byte[32] digest, long lastUsed (0 = empty), float[embeddingSize]
+//
+// A slot's lastUsed is cleared while it is rewritten, so a write cut short by
+// the process dying leaves an empty slot rather than a mismatched embedding.
+public class EmbeddingStore implements FaceMatchEngine.ReferenceCache {
+
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    private static final int MAGIC = 0x49464531; // "IFE1"
+    private static final int HEADER_SIZE = 16;
+    private static final int DIGEST_LENGTH = HashingService.HASH_LENGTH;
+
+    private final MappedByteBuffer buffer;
+    private final int embeddingSize;
+    private final int capacity;
+    private final int slotSize;
+    private final Map<ByteBuffer, Integer> slots = new HashMap<>();
+    private long clock;
+
+    private EmbeddingStore(MappedByteBuffer buffer, int embeddingSize, int capacity) {
+        this.buffer = buffer;
+        this.embeddingSize = embeddingSize;
+        this.capacity = capacity;
+        this.slotSize = DIGEST_LENGTH + 8 + embeddingSize * 4;
+        for (int slot = 0; slot < capacity; slot++) {
+            long lastUsed = buffer.getLong(offset(slot) + DIGEST_LENGTH);
+            if (lastUsed != 0) {
+                slots.put(ByteBuffer.wrap(readDigest(slot)), slot);
+                clock = Math.max(clock, lastUsed);
+            }
+        }
+    }
+
+    // Opens or creates the store; a file written for another model or capacity is started over
+    public static EmbeddingStore open(File file, int embeddingSize, int capacity) throws IOException {
+        long size = HEADER_SIZE + (long) capacity * (DIGEST_LENGTH + 8 + embeddingSize * 4);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            boolean valid = raf.length() == size && raf.readInt() == MAGIC
+                && raf.readInt() == embeddingSize && raf.readInt() == capacity;
+            if (!valid) {
+                // Truncating first zeroes every slot
+                raf.setLength(0);
+                raf.setLength(size);
+                raf.seek(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(embeddingSize);
+                raf.writeInt(capacity);
+                raf.writeInt(0);
+            }
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            return new EmbeddingStore(channel.map(FileChannel.MapMode.READ_WRITE, 0, size), embeddingSize, capacity);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public synchronized boolean get(byte[] digest, float[] embedding) {
+        Integer slot = slots.get(ByteBuffer.wrap(digest));
+        if (slot == null) {
+            return false;
+        }
+        int base = offset(slot);
+        buffer.putLong(base + DIGEST_LENGTH, ++clock);
+        base += DIGEST_LENGTH + 8;
+        for (int i = 0; i < embeddingSize; i++) {
+            embedding[i] = buffer.getFloat(base + i * 4);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void put(byte[] digest, float[] embedding) {
+        if (digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("Expected a SHA-256 digest");
+        }
+        Integer existing = slots.get(ByteBuffer.wrap(digest));
+        int slot = existing != null ? existing : freeSlot();
+        int base = offset(slot);
+        buffer.putLong(base + DIGEST_LENGTH, 0);
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            buffer.put(base + i, digest[i]);
+        }
+        int floats = base + DIGEST_LENGTH + 8;
+        for (int i = 0; i < embeddingSize; i++) {
+            buffer.putFloat(floats + i * 4, embedding[i]);
+        }
+        buffer.putLong(base + DIGEST_LENGTH, ++clock);
+        if (existing == null) {
+            slots.put(ByteBuffer.wrap(digest.clone()), slot);
+        }
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    // An unused slot, or the least recently used one, which is dropped from the map
+    private int freeSlot() {
+        if (slots.size() < capacity) {
+            for (int slot = 0; slot < capacity; slot++) {
+                if (buffer.getLong(offset(slot) + DIGEST_LENGTH) == 0) {
+                    return slot;
+                }
+            }
+        }
+        int oldest = 0;
+        long oldestUse = Long.MAX_VALUE;
+        for (int slot = 0; slot < capacity; slot++) {
+            long lastUsed = buffer.getLong(offset(slot) + DIGEST_LENGTH);
+            if (lastUsed < oldestUse) {
+                oldest = slot;
+                oldestUse = lastUsed;
+            }
+        }
+        slots.remove(ByteBuffer.wrap(readDigest(oldest)));
+        return oldest;
+    }
+
+    private byte[] readDigest(int slot) {
+        byte[] digest = new byte[DIGEST_LENGTH];
+        int base = offset(slot);
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            digest[i] = buffer.get(base + i);
+        }
+        return digest;
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+}
@@ -0,0 +1,155 @@
+package io.inji.verify;
+
+import java.io.ByteArrayOutputStream;
+
+// Base64 / Base58 helpers. java.util.Base64 needs API 26 and android.util.Base64
+// is not available on a plain JVM, so the verifier carries its own decoders.
+final class Encoding {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String BASE64URL_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final String BASE58_ALPHABET =
+        "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+    private static final int[] BASE64_INDEX = new int[128];
+    private static final int[] BASE58_INDEX = new int[128];
+
+    static {
+        for (int i = 0; i < 128; i++) {
+            BASE64_INDEX[i] = -1;
+            BASE58_INDEX[i] = -1;
+        }
+        for (int i = 0; i < BASE64URL_ALPHABET.length(); i++) {
+            BASE64_INDEX[BASE64URL_ALPHABET.charAt(i)] = i;
+        }
+        // Also accept the standard alphabet
+        BASE64_INDEX['+'] = 62;
+        BASE64_INDEX['/'] = 63;
+        for (int i = 0; i < BASE58_ALPHABET.length(); i++) {
+            BASE58_INDEX[BASE58_ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private Encoding() {
+    }
+
+    static byte[] decodeBase64(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length() * 3 / 4);
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '=' || Character.isWhitespace(c)) {
+                continue;
+            }
+            int value = c < 128 ? BASE64_INDEX[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid base64 character: " + c);
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out.write((buffer >> bits) & 0xff);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static String encodeBase64Url(byte[] bytes) {
+        StringBuilder sb = new StringBuilder((bytes.length * 4 + 2) / 3);
+        int buffer = 0;
+        int bits = 0;
+        for (byte b : bytes) {
+            buffer = (buffer << 8) | (b & 0xff);
+            bits += 8;
+            while (bits >= 6) {
+                bits -= 6;
+                sb.append(BASE64URL_ALPHABET.charAt((buffer >> bits) & 0x3f));
+            }
+        }
+        if (bits > 0) {
+            sb.append(BASE64URL_ALPHABET.charAt((buffer << (6 - bits)) & 0x3f));
+        }
+        return sb.toString();
+    }
+
+    // Standard alphabet with '=' padding, as in data: URIs
+    static String encodeBase64(byte[] bytes) {
+        String url = encodeBase64Url(bytes);
+        StringBuilder sb = new StringBuilder(url.length() + 2);
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            sb.append(c == '-' ? '+' : c == '_' ? '/' : c);
+        }
+        while (sb.length() % 4 != 0) {
+            sb.append('=');
+        }
+        return sb.toString();
+    }
+
+    static byte[] decodeBase58(String input) {
+        byte[] bytes = new byte[input.length()];
+        int length = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            int carry = c < 128 ? BASE58_INDEX[c] : -1;
+            if (carry < 0) {
+                throw new IllegalArgumentException("Invalid base58 character: " + c);
+            }
+            for (int j = 0; j < length; j++) {
+                carry += (bytes[j] & 0xff) * 58;
+                bytes[j] = (byte) carry;
+                carry >>= 8;
+            }
+            while (carry > 0) {
+                bytes[length++] = (byte) carry;
+                carry >>= 8;
+            }
+        }
+        // Leading '1's encode leading zero bytes
+        for (int i = 0; i < input.length() && input.charAt(i) == '1'; i++) {
+            bytes[length++] = 0;
+        }
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = bytes[length - 1 - i];
+        }
+        return result;
+    }
+
+    static String encodeBase58(byte[] input) {
+        // Little-endian base58 digits, built up one input byte at a time
+        byte[] digits = new byte[input.length * 138 / 100 + 1];
+        int length = 0;
+        for (byte b : input) {
+            int carry = b & 0xff;
+            for (int j = 0; j < length; j++) {
+                carry += (digits[j] & 0xff) << 8;
+                digits[j] = (byte) (carry % 58);
+                carry /= 58;
+            }
+            while (carry > 0) {
+                digits[length++] = (byte) (carry % 58);
+                carry /= 58;
+            }
+        }
+        StringBuilder sb = new StringBuilder(length + input.length);
+        for (int i = 0; i < input.length && input[i] == 0; i++) {
+            sb.append('1');
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            sb.append(BASE58_ALPHABET.charAt(digits[i]));
+        }
+        return sb.toString();
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
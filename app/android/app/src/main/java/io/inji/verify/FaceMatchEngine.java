@@ -0,0 +1,161 @@
+package io.inji.verify;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Compares a live capture against the photo in a credential by running both
+// through a face embedding model and taking the cosine similarity. The model
+// input and both embeddings live in buffers allocated once per engine, and the
+// credential side is computed once per credential subject digest and kept in a
+// ReferenceCache (a bounded in-memory LRU, or an EmbeddingStore that survives
+// restarts), so a repeat check only runs the model on the live capture. Images
+// come in as ARGB pixels already cropped to the face and scaled to inputSize().
+// Thread-safe; checks run one at a time since they share the buffers.
+public class FaceMatchEngine {
+
+    public interface Model {
+        // Square input, pixels per side
+        int inputSize();
+
+        int embeddingSize();
+
+        // input holds inputSize² RGB floats in [-1, 1], row-major
+        void run(ByteBuffer input, float[] embedding);
+    }
+
+    public interface Reference {
+        // Fills pixels with the credential photo; only called on a cache miss.
+        // Throws IllegalArgumentException if the photo cannot be used.
+        void read(int[] pixels);
+    }
+
+    public interface ReferenceCache {
+        // Copies the embedding stored for digest into embedding; false if there is none
+        boolean get(byte[] digest, float[] embedding);
+
+        // Stores a copy of embedding
+        void put(byte[] digest, float[] embedding);
+    }
+
+    public static final int DEFAULT_CACHE_SIZE = 64;
+    // Cosine similarity above which two faces are taken to be the same person;
+    // suits MobileFaceNet-style models with L2-normalized 128-d outputs
+    public static final float DEFAULT_THRESHOLD = 0.6f;
+
+    private final Model model;
+    private final int inputSize;
+    private final int embeddingSize;
+    private final ByteBuffer input;
+    private final int[] pixels;
+    private final float[] expected;
+    private final float[] live;
+    private final ReferenceCache references;
+
+    public FaceMatchEngine(Model model, int cacheSize) {
+        this(model, new MemoryCache(cacheSize, model.embeddingSize()));
+    }
+
+    public FaceMatchEngine(Model model, ReferenceCache references) {
+        this.model = model;
+        this.inputSize = model.inputSize();
+        this.embeddingSize = model.embeddingSize();
+        this.input = ByteBuffer.allocateDirect(inputSize * inputSize * 3 * 4).order(ByteOrder.nativeOrder());
+        this.pixels = new int[inputSize * inputSize];
+        this.expected = new float[embeddingSize];
+        this.live = new float[embeddingSize];
+        this.references = references;
+    }
+
+    public int inputSize() {
+        return inputSize;
+    }
+
+    // Similarity of livePixels to the photo of the credential subject with this digest, in [-1, 1]
+    public synchronized float match(byte[] subjectDigest, Reference reference, int[] livePixels) {
+        loadReference(subjectDigest, reference);
+        embed(livePixels, live);
+        return cosineSimilarity(expected, live, embeddingSize);
+    }
+
+    // Computes and caches the reference embedding ahead of the live capture
+    public synchronized void prepare(byte[] subjectDigest, Reference reference) {
+        loadReference(subjectDigest, reference);
+    }
+
+    private void loadReference(byte[] subjectDigest, Reference reference) {
+        if (!references.get(subjectDigest, expected)) {
+            reference.read(pixels);
+            embed(pixels, expected);
+            references.put(subjectDigest, expected);
+        }
+    }
+
+    private void embed(int[] argb, float[] out) {
+        input.clear();
+        for (int i = 0; i < inputSize * inputSize; i++) {
+            int p = argb[i];
+            input.putFloat(((p >> 16 & 0xff) - 127.5f) / 127.5f);
+            input.putFloat(((p >> 8 & 0xff) - 127.5f) / 127.5f);
+            input.putFloat(((p & 0xff) - 127.5f) / 127.5f);
+        }
+        input.rewind();
+        model.run(input, out);
+    }
+
+    // Evicted arrays are reused for the next entry
+    private static final class MemoryCache implements ReferenceCache {
+        private final int embeddingSize;
+        private final LinkedHashMap<ByteBuffer, float[]> entries;
+        private float[] spare;
+
+        MemoryCache(final int maxEntries, int embeddingSize) {
+            this.embeddingSize = embeddingSize;
+            this.entries = new LinkedHashMap<ByteBuffer, float[]>(maxEntries * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, float[]> eldest) {
+                    if (size() > maxEntries) {
+                        spare = eldest.getValue();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public boolean get(byte[] digest, float[] embedding) {
+            float[] stored = entries.get(ByteBuffer.wrap(digest));
+            if (stored == null) {
+                return false;
+            }
+            System.arraycopy(stored, 0, embedding, 0, embeddingSize);
+            return true;
+        }
+
+        @Override
+        public void put(byte[] digest, float[] embedding) {
+            float[] stored = spare != null ? spare : new float[embeddingSize];
+            spare = null;
+            System.arraycopy(embedding, 0, stored, 0, embeddingSize);
+            entries.put(ByteBuffer.wrap(digest.clone()), stored);
+        }
+    }
+
+    // Cosine of the angle between a[0, n) and b[0, n); 0 if either is all zeros
+    static float cosineSimilarity(float[] a, float[] b, int n) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < n; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) {
+            return 0;
+        }
+        return (float) (dot / Math.sqrt(normA * normB));
+    }
+}
@@ -0,0 +1,193 @@
+package io.inji.verify;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.media.FaceDetector;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+
+// Face check for verified credentials that carry a photo: finds the face in the
+// credential photo and in the live capture with the platform FaceDetector, crops
+// each into a reused input-sized bitmap and hands the pixels to FaceMatchEngine.
+// Reference embeddings persist in an EmbeddingStore keyed by the digest of the
+// credential subject, so a returning holder, even under a re-issued credential,
+// costs one model run instead of a photo decode, a detection and two runs.
+// Everything runs on the CPU; the budget for one check is LATENCY_BUDGET_MS.
+public class FaceMatcher {
+
+    // The parts of a credential the face check needs
+    public static final class Holder {
+        public final String photo;
+        // SHA-256 of the canonical credentialSubject
+        public final byte[] subjectDigest;
+
+        Holder(String photo, byte[] subjectDigest) {
+            this.photo = photo;
+            this.subjectDigest = subjectDigest;
+        }
+    }
+
+    public static final class Result {
+        public final boolean matched;
+        public final float similarity;
+        public final long elapsedMillis;
+        // Set when no comparison could be made
+        public final String error;
+
+        Result(boolean matched, float similarity, long elapsedMillis, String error) {
+            this.matched = matched;
+            this.similarity = similarity;
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+    }
+
+    private static final String TAG = "FaceMatcher";
+    static final String MODEL_ASSET = "public/models/face_match.tflite";
+    static final String EMBEDDING_STORE_FILE = "face-embeddings.bin";
+    static final long LATENCY_BUDGET_MS = 300;
+    // credentialSubject fields that may hold the holder's photo as a data: URI
+    private static final String[] PHOTO_FIELDS = {"face", "photo", "image", "picture"};
+    // The detector box spans the eyes; a face crop is about this many eye distances wide
+    private static final float CROP_EYE_DISTANCES = 2.4f;
+
+    private final FaceMatchEngine engine;
+    private final float threshold;
+    private final Bitmap input;
+    private final Canvas canvas;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect source = new Rect();
+    private final Rect target;
+    private final PointF midPoint = new PointF();
+    private final int[] livePixels;
+
+    FaceMatcher(FaceMatchEngine engine, float threshold) {
+        this.engine = engine;
+        this.threshold = threshold;
+        int size = engine.inputSize();
+        this.input = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        this.canvas = new Canvas(input);
+        this.target = new Rect(0, 0, size, size);
+        this.livePixels = new int[size * size];
+    }
+
+    // Throws IOException if the model is not bundled with the app
+    public static FaceMatcher open(Context context) throws IOException {
+        TfliteFaceModel model = TfliteFaceModel.open(context.getAssets(), MODEL_ASSET);
+        FaceMatchEngine engine;
+        try {
+            engine = new FaceMatchEngine(model, EmbeddingStore.open(new File(context.getFilesDir(),
+                EMBEDDING_STORE_FILE), model.embeddingSize(), EmbeddingStore.DEFAULT_CAPACITY));
+        } catch (IOException e) {
+            Log.w(TAG, "Embedding store unavailable, caching in memory", e);
+            engine = new FaceMatchEngine(model, FaceMatchEngine.DEFAULT_CACHE_SIZE);
+        }
+        return new FaceMatcher(engine, FaceMatchEngine.DEFAULT_THRESHOLD);
+    }
+
+    // The holder of a credential, or null if it carries no data: URI photo
+    public static Holder findHolder(String credential) {
+        try {
+            JSONObject subject = new JSONObject(credential).optJSONObject("credentialSubject");
+            if (subject == null) {
+                return null;
+            }
+            for (String field : PHOTO_FIELDS) {
+                String value = subject.optString(field, null);
+                if (value != null && value.startsWith("data:image/")) {
+                    return new Holder(value, HashingService.sha256(JsonCanonicalizer.canonicalize(subject)));
+                }
+            }
+        } catch (JSONException e) {
+            // Not a credential
+        }
+        return null;
+    }
+
+    // Embeds the holder's photo now, e.g. while the credential is still being
+    // verified, so the check after the live capture only runs the model once
+    public synchronized void prepare(final Holder holder) {
+        try {
+            engine.prepare(holder.subjectDigest, pixels -> readPhoto(holder.photo, pixels));
+        } catch (IllegalArgumentException e) {
+            // Reported by match()
+        }
+    }
+
+    // Compares live against the holder's photo; the photo is only decoded the
+    // first time this subject is seen on this device
+    public synchronized Result match(final Holder holder, Bitmap live) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            cropFace(live, livePixels);
+            float similarity = engine.match(holder.subjectDigest, pixels -> readPhoto(holder.photo, pixels),
+                livePixels);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            if (elapsed > LATENCY_BUDGET_MS) {
+                Log.w(TAG, "Face check took " + elapsed + " ms");
+            }
+            return new Result(similarity >= threshold, similarity, elapsed, null);
+        } catch (IllegalArgumentException e) {
+            return new Result(false, 0, SystemClock.elapsedRealtime() - start, e.getMessage());
+        }
+    }
+
+    private void readPhoto(String dataUri, int[] pixels) {
+        Bitmap bitmap = decodePhoto(dataUri);
+        cropFace(bitmap, pixels);
+        bitmap.recycle();
+    }
+
+    private static Bitmap decodePhoto(String dataUri) {
+        int comma = dataUri.indexOf(',');
+        if (comma < 0 || !dataUri.substring(0, comma).endsWith(";base64")) {
+            throw new IllegalArgumentException("Unsupported credential photo");
+        }
+        byte[] bytes = Encoding.decodeBase64(dataUri.substring(comma + 1));
+        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        if (bitmap == null) {
+            throw new IllegalArgumentException("Unreadable credential photo");
+        }
+        return bitmap;
+    }
+
+    // Scales the face in image, or its centre square if no face is found, into pixels
+    private void cropFace(Bitmap image, int[] pixels) {
+        int width = image.getWidth() & ~1;
+        int height = image.getHeight();
+        FaceDetector.Face[] faces = new FaceDetector.Face[1];
+        // FaceDetector wants RGB_565 and an even width
+        Bitmap detectable = image.getConfig() == Bitmap.Config.RGB_565 && width == image.getWidth()
+            ? image : Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        if (detectable != image) {
+            new Canvas(detectable).drawBitmap(image, 0, 0, null);
+        }
+        if (new FaceDetector(width, height, 1).findFaces(detectable, faces) > 0) {
+            faces[0].getMidPoint(midPoint);
+            int half = (int) (faces[0].eyesDistance() * CROP_EYE_DISTANCES / 2);
+            // Eyes sit above the centre of a face
+            int centerY = (int) (midPoint.y + half * 0.25f);
+            source.set((int) midPoint.x - half, centerY - half, (int) midPoint.x + half, centerY + half);
+        } else {
+            int side = Math.min(width, height);
+            source.set((width - side) / 2, (height - side) / 2, (width + side) / 2, (height + side) / 2);
+        }
+        if (detectable != image) {
+            detectable.recycle();
+        }
+        input.eraseColor(0);
+        canvas.drawBitmap(image, source, target, paint);
+        input.getPixels(pixels, 0, input.getWidth(), 0, 0, input.getWidth(), input.getHeight());
+    }
+}
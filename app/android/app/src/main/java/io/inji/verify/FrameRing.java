@@ -0,0 +1,93 @@
+package io.inji.verify;
+
+// Fixed set of preview buffers shared by the camera and the QR decode worker.
+// The camera fills free buffers; at most one filled frame waits for the worker,
+// and a newer frame replaces it (the stale one goes straight back to the camera).
+// The worker therefore always decodes the freshest frame and never a backlog.
+final class FrameRing {
+
+    interface Recycler {
+        // Hands a buffer back to the producer to be filled again
+        void recycle(byte[] buffer);
+    }
+
+    final int width;
+    final int height;
+
+    private final byte[][] buffers;
+    private final Recycler recycler;
+
+    // Guarded by this
+    private byte[] pending;
+    private boolean closed;
+    private long published;
+    private long dropped;
+
+    // NV21 frames: width * height luminance bytes followed by interleaved chroma
+    FrameRing(int capacity, int width, int height, Recycler recycler) {
+        this.width = width;
+        this.height = height;
+        this.recycler = recycler;
+        this.buffers = new byte[capacity][width * height * 3 / 2];
+    }
+
+    // Every buffer, to be handed to the producer once up front
+    byte[][] buffers() {
+        return buffers;
+    }
+
+    // Producer: a filled frame. Replaces (and recycles) any frame not yet taken.
+    void publish(byte[] frame) {
+        byte[] stale;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            published++;
+            stale = pending;
+            pending = frame;
+            if (stale != null) {
+                dropped++;
+            } else {
+                notifyAll();
+            }
+        }
+        if (stale != null) {
+            recycler.recycle(stale);
+        }
+    }
+
+    // Consumer: blocks for the next frame; null once closed
+    synchronized byte[] take() throws InterruptedException {
+        while (pending == null && !closed) {
+            wait();
+        }
+        byte[] frame = pending;
+        pending = null;
+        return closed ? null : frame;
+    }
+
+    // Consumer: done with a frame taken from take()
+    void release(byte[] frame) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        recycler.recycle(frame);
+    }
+
+    synchronized void close() {
+        closed = true;
+        pending = null;
+        notifyAll();
+    }
+
+    synchronized long getPublishedCount() {
+        return published;
+    }
+
+    synchronized long getDroppedCount() {
+        return dropped;
+    }
+}
@@ -0,0 +1,360 @@
+package io.inji.verify;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattServer;
+import android.bluetooth.BluetoothGattServerCallback;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.le.AdvertiseCallback;
+import android.bluetooth.le.AdvertiseData;
+import android.bluetooth.le.AdvertiseSettings;
+import android.bluetooth.le.BluetoothLeAdvertiser;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Verifier role: hosts the transfer service and accepts several wallets at
+// once, one BleSessionManager session per connection, keyed by device address.
+// It advertises while the manager has a free slot and stops while it is full,
+// so excess wallets wait in their own scan instead of on a verifier slot. ACKs
+// go back as notifications. As in GattWalletClient, all GATT callbacks are
+// handled on a "ble" HandlerThread.
+@SuppressWarnings({"deprecation", "MissingPermission"})
+public class GattVerifierServer {
+
+    public interface Listener {
+        // All called on the main thread
+        void onStatus(String status);
+
+        // Call onVerified() once the payload has been verified
+        void onReceived(String sessionId, byte[] payload, TransferStats stats);
+
+        void onSessionFailed(String sessionId, String message);
+
+        // The server itself could not start or stopped working
+        void onFailed(String message);
+    }
+
+    private static final String TAG = "GattVerifierServer";
+    static final long EXPIRE_INTERVAL_MS = 1000;
+
+    private final Context context;
+    private final Listener listener;
+    private final int maxSessions;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private HandlerThread bleThread;
+    private volatile Handler bleHandler;
+
+    // Also answers write requests on binder threads
+    private volatile BluetoothGattServer server;
+
+    // BLE thread only
+    private BluetoothLeAdvertiser advertiser;
+    private BluetoothGattCharacteristic ackCharacteristic;
+    private BleSessionManager sessions;
+    private final Map<String, BluetoothDevice> wallets = new HashMap<>();
+    private boolean advertising;
+    private boolean failed;
+    private String lastStatus;
+
+    public GattVerifierServer(Context context, int maxSessions, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.maxSessions = maxSessions;
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (bleThread != null) {
+            return;
+        }
+        BluetoothManager manager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
+        BluetoothAdapter adapter = manager != null ? manager.getAdapter() : null;
+        if (adapter == null || !adapter.isEnabled()) {
+            listener.onFailed("Bluetooth is off");
+            return;
+        }
+        bleThread = new HandlerThread("ble");
+        bleThread.start();
+        bleHandler = new Handler(bleThread.getLooper());
+        bleHandler.post(() -> openServer(manager, adapter));
+    }
+
+    public void stop() {
+        if (bleThread == null) {
+            return;
+        }
+        bleHandler.post(this::close);
+        bleThread.quitSafely();
+        bleThread = null;
+        bleHandler = null;
+    }
+
+    // Safe from any thread; frees the slot of a payload passed to onReceived
+    public void onVerified() {
+        post(() -> {
+            if (sessions != null) {
+                sessions.verified();
+                updateAdvertising();
+            }
+        });
+    }
+
+    private void openServer(BluetoothManager manager, BluetoothAdapter adapter) {
+        advertiser = adapter.getBluetoothLeAdvertiser();
+        if (advertiser == null) {
+            fail("BLE advertising not supported");
+            return;
+        }
+        server = manager.openGattServer(context, serverCallback);
+        if (server == null) {
+            fail("Bluetooth is off");
+            return;
+        }
+        sessions = new BleSessionManager(maxSessions, BleReceiver.DEFAULT_CAPACITY, sessionListener);
+
+        BluetoothGattCharacteristic data = new BluetoothGattCharacteristic(BleFrames.DATA_UUID,
+            BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE, BluetoothGattCharacteristic.PERMISSION_WRITE);
+        ackCharacteristic = new BluetoothGattCharacteristic(BleFrames.ACK_UUID,
+            BluetoothGattCharacteristic.PROPERTY_NOTIFY, BluetoothGattCharacteristic.PERMISSION_READ);
+        ackCharacteristic.addDescriptor(new BluetoothGattDescriptor(BleFrames.CCCD_UUID,
+            BluetoothGattDescriptor.PERMISSION_READ | BluetoothGattDescriptor.PERMISSION_WRITE));
+        // Read by wallets before START to pick a compression codec
+        BluetoothGattCharacteristic caps = new BluetoothGattCharacteristic(BleFrames.CAPS_UUID,
+            BluetoothGattCharacteristic.PROPERTY_READ, BluetoothGattCharacteristic.PERMISSION_READ);
+        caps.setValue(BleFrames.caps(BleCompression.SUPPORTED_CODECS));
+        BluetoothGattService service =
+            new BluetoothGattService(BleFrames.SERVICE_UUID, BluetoothGattService.SERVICE_TYPE_PRIMARY);
+        service.addCharacteristic(data);
+        service.addCharacteristic(ackCharacteristic);
+        service.addCharacteristic(caps);
+        server.addService(service);
+    }
+
+    // Advertises exactly while a new wallet could be accepted
+    private void updateAdvertising() {
+        if (advertiser == null || failed) {
+            return;
+        }
+        boolean wanted = sessions.hasCapacity();
+        if (wanted && !advertising) {
+            AdvertiseSettings settings = new AdvertiseSettings.Builder()
+                .setAdvertiseMode(AdvertiseSettings.ADVERTISE_MODE_LOW_LATENCY)
+                .setConnectable(true)
+                .setTimeout(0)
+                .build();
+            AdvertiseData data = new AdvertiseData.Builder()
+                .addServiceUuid(new ParcelUuid(BleFrames.SERVICE_UUID))
+                .setIncludeDeviceName(false)
+                .build();
+            advertiser.startAdvertising(settings, data, advertiseCallback);
+        } else if (!wanted && advertising) {
+            advertiser.stopAdvertising(advertiseCallback);
+        }
+        advertising = wanted;
+        int active = sessions.activeSessions();
+        String status = active == 0 ? "Waiting for wallets..."
+            : "Receiving from " + active + (active == 1 ? " wallet" : " wallets") + (wanted ? "" : " (full)");
+        if (!status.equals(lastStatus)) {
+            lastStatus = status;
+            status(status);
+        }
+    }
+
+    private final AdvertiseCallback advertiseCallback = new AdvertiseCallback() {
+        @Override
+        public void onStartFailure(int errorCode) {
+            // Already advertising is fine; anything else leaves no way for wallets to connect
+            if (errorCode != ADVERTISE_FAILED_ALREADY_STARTED) {
+                post(() -> fail("Advertising failed (" + errorCode + ")"));
+            }
+        }
+    };
+
+    private final BluetoothGattServerCallback serverCallback = new BluetoothGattServerCallback() {
+        @Override
+        public void onServiceAdded(int status, BluetoothGattService service) {
+            post(() -> {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    updateAdvertising();
+                    post(expireTask);
+                } else {
+                    fail("Could not start the verifier service");
+                }
+            });
+        }
+
+        @Override
+        public void onConnectionStateChange(BluetoothDevice device, int status, int newState) {
+            post(() -> {
+                if (sessions == null || failed) {
+                    return;
+                }
+                String id = device.getAddress();
+                if (newState == BluetoothProfile.STATE_CONNECTED) {
+                    if (sessions.open(id, (frame, length) -> notifyWallet(device, frame, length),
+                            SystemClock.elapsedRealtime())) {
+                        wallets.put(id, device);
+                    } else {
+                        // Full: the wallet retries once advertising resumes
+                        server.cancelConnection(device);
+                    }
+                } else if (wallets.remove(id) != null) {
+                    sessions.close(id);
+                }
+                updateAdvertising();
+            });
+        }
+
+        @Override
+        public void onCharacteristicWriteRequest(BluetoothDevice device, int requestId,
+                                                 BluetoothGattCharacteristic characteristic, boolean preparedWrite,
+                                                 boolean responseNeeded, int offset, byte[] value) {
+            respond(device, requestId, responseNeeded);
+            if (BleFrames.DATA_UUID.equals(characteristic.getUuid()) && value != null) {
+                post(() -> {
+                    if (sessions != null) {
+                        sessions.onFrame(device.getAddress(), value, value.length, SystemClock.elapsedRealtime());
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void onCharacteristicReadRequest(BluetoothDevice device, int requestId, int offset,
+                                                BluetoothGattCharacteristic characteristic) {
+            BluetoothGattServer gattServer = server;
+            if (gattServer == null) {
+                return;
+            }
+            byte[] value = characteristic.getValue();
+            if (value == null || offset > value.length) {
+                gattServer.sendResponse(device, requestId, BluetoothGatt.GATT_INVALID_OFFSET, offset, null);
+            } else {
+                gattServer.sendResponse(device, requestId, BluetoothGatt.GATT_SUCCESS, offset,
+                    Arrays.copyOfRange(value, offset, value.length));
+            }
+        }
+
+        @Override
+        public void onDescriptorWriteRequest(BluetoothDevice device, int requestId, BluetoothGattDescriptor descriptor,
+                                             boolean preparedWrite, boolean responseNeeded, int offset, byte[] value) {
+            // Notification subscription for the ACK characteristic
+            respond(device, requestId, responseNeeded);
+        }
+    };
+
+    private final BleSessionManager.Listener sessionListener = new BleSessionManager.Listener() {
+        @Override
+        public void onPayload(String sessionId, byte[] payload, TransferStats stats) {
+            Log.i(TAG, Build.MANUFACTURER + " " + Build.MODEL + " received " + stats);
+            mainHandler.post(() -> listener.onReceived(sessionId, payload, stats));
+        }
+
+        @Override
+        public void onSessionFailed(String sessionId, String message) {
+            Log.w(TAG, sessionId + ": " + message);
+            disconnect(sessionId);
+            mainHandler.post(() -> listener.onSessionFailed(sessionId, message));
+        }
+    };
+
+    private final Runnable expireTask = new Runnable() {
+        @Override
+        public void run() {
+            if (sessions == null || failed) {
+                return;
+            }
+            for (String id : sessions.expire(SystemClock.elapsedRealtime())) {
+                disconnect(id);
+            }
+            updateAdvertising();
+            Handler handler = bleHandler;
+            if (handler != null) {
+                handler.postDelayed(this, EXPIRE_INTERVAL_MS);
+            }
+        }
+    };
+
+    private void respond(BluetoothDevice device, int requestId, boolean responseNeeded) {
+        BluetoothGattServer gattServer = server;
+        if (responseNeeded && gattServer != null) {
+            gattServer.sendResponse(device, requestId, BluetoothGatt.GATT_SUCCESS, 0, null);
+        }
+    }
+
+    // BleFrames.Channel for one wallet's ACK and ABORT frames
+    private boolean notifyWallet(BluetoothDevice device, byte[] frame, int length) {
+        if (server == null) {
+            return false;
+        }
+        ackCharacteristic.setValue(Arrays.copyOf(frame, length));
+        return server.notifyCharacteristicChanged(device, ackCharacteristic, false);
+    }
+
+    private void disconnect(String sessionId) {
+        BluetoothDevice device = wallets.remove(sessionId);
+        if (device != null && server != null) {
+            server.cancelConnection(device);
+        }
+    }
+
+    private void fail(String message) {
+        if (failed) {
+            return;
+        }
+        failed = true;
+        Log.w(TAG, message);
+        close();
+        mainHandler.post(() -> listener.onFailed(message));
+    }
+
+    private void status(String status) {
+        mainHandler.post(() -> listener.onStatus(status));
+    }
+
+    private void post(Runnable task) {
+        Handler handler = bleHandler;
+        if (handler != null) {
+            handler.post(task);
+        }
+    }
+
+    private void close() {
+        Handler handler = bleHandler;
+        if (handler != null) {
+            handler.removeCallbacks(expireTask);
+        }
+        if (advertiser != null) {
+            try {
+                advertiser.stopAdvertising(advertiseCallback);
+            } catch (IllegalStateException e) {
+                // Adapter already off
+            }
+            advertiser = null;
+        }
+        if (server != null) {
+            for (BluetoothDevice device : wallets.values()) {
+                server.cancelConnection(device);
+            }
+            server.close();
+            server = null;
+        }
+        wallets.clear();
+        sessions = null;
+    }
+}
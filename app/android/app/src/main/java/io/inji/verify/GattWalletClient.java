@@ -0,0 +1,354 @@
+package io.inji.verify;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+// Wallet role: scans for a verifier advertising the transfer service, connects,
+// negotiates the largest MTU, reads the verifier's codecs from CAPS and streams
+// one payload, compressed when that helps, through a BleSender using
+// write-without-response. GATT callbacks arrive on binder threads and are moved
+// onto a "ble" HandlerThread, so the sender is only ever touched from there.
+// Callers hold the BLE runtime permissions before start().
+@SuppressWarnings({"deprecation", "MissingPermission"})
+public class GattWalletClient {
+
+    public interface Listener {
+        // All called on the main thread
+        void onStatus(String status);
+
+        void onSent(TransferStats stats);
+
+        void onFailed(String message);
+    }
+
+    private static final String TAG = "GattWalletClient";
+    static final long SCAN_TIMEOUT_MS = 30000;
+    static final long ACK_TIMEOUT_MS = 1000;
+
+    private final Context context;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private HandlerThread bleThread;
+    private volatile Handler bleHandler;
+
+    // BLE thread only
+    private BluetoothLeScanner scanner;
+    private BluetoothGatt gatt;
+    private BluetoothGattCharacteristic dataCharacteristic;
+    private BluetoothGattCharacteristic capsCharacteristic;
+    private BleSender sender;
+    private byte[] payload;
+    private int mtu = BleFrames.DEFAULT_MTU;
+    private boolean writing;
+    private boolean finished;
+
+    public GattWalletClient(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    public void start(final byte[] payload) {
+        if (bleThread != null) {
+            return;
+        }
+        BluetoothManager manager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
+        final BluetoothAdapter adapter = manager != null ? manager.getAdapter() : null;
+        if (adapter == null || !adapter.isEnabled()) {
+            listener.onFailed("Bluetooth is off");
+            return;
+        }
+        bleThread = new HandlerThread("ble");
+        bleThread.start();
+        bleHandler = new Handler(bleThread.getLooper());
+        bleHandler.post(() -> startScan(adapter, payload));
+    }
+
+    public void stop() {
+        if (bleThread == null) {
+            return;
+        }
+        bleHandler.post(this::close);
+        bleThread.quitSafely();
+        bleThread = null;
+        bleHandler = null;
+    }
+
+    private void startScan(BluetoothAdapter adapter, byte[] payload) {
+        this.payload = payload;
+        scanner = adapter.getBluetoothLeScanner();
+        if (scanner == null) {
+            fail("Bluetooth is off");
+            return;
+        }
+        ScanFilter filter = new ScanFilter.Builder()
+            .setServiceUuid(new ParcelUuid(BleFrames.SERVICE_UUID))
+            .build();
+        ScanSettings settings = new ScanSettings.Builder()
+            .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+            .build();
+        scanner.startScan(Collections.singletonList(filter), settings, scanCallback);
+        postDelayed(scanTimeout, SCAN_TIMEOUT_MS);
+    }
+
+    private final Runnable scanTimeout = () -> fail("No verifier found");
+
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            post(() -> connect(result.getDevice()));
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            post(() -> fail("Scan failed (" + errorCode + ")"));
+        }
+    };
+
+    private void connect(BluetoothDevice device) {
+        if (gatt != null || finished) {
+            return;
+        }
+        Handler handler = bleHandler;
+        if (handler != null) {
+            handler.removeCallbacks(scanTimeout);
+        }
+        stopScan();
+        status("Verifier found, connecting...");
+        gatt = device.connectGatt(context, false, gattCallback, BluetoothDevice.TRANSPORT_LE);
+    }
+
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt g, int status, int newState) {
+            post(() -> {
+                if (newState == BluetoothProfile.STATE_CONNECTED && status == BluetoothGatt.GATT_SUCCESS) {
+                    g.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+                    if (!g.requestMtu(BleFrames.MAX_MTU)) {
+                        g.discoverServices();
+                    }
+                } else {
+                    fail("Verifier disconnected");
+                }
+            });
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt g, int negotiated, int status) {
+            post(() -> {
+                mtu = status == BluetoothGatt.GATT_SUCCESS ? negotiated : BleFrames.DEFAULT_MTU;
+                g.discoverServices();
+            });
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt g, int status) {
+            post(() -> subscribe(g));
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor descriptor, int status) {
+            post(() -> {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    readCaps(g);
+                } else {
+                    fail("Verifier refused the connection");
+                }
+            });
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt g, BluetoothGattCharacteristic characteristic, int status) {
+            byte[] value = status == BluetoothGatt.GATT_SUCCESS ? characteristic.getValue() : null;
+            int codecs = BleFrames.capsCodecs(value);
+            post(() -> beginTransfer(BleCompression.choose(codecs)));
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt g, BluetoothGattCharacteristic characteristic, int status) {
+            post(() -> {
+                writing = false;
+                if (sender != null) {
+                    sender.pump();
+                }
+            });
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic characteristic) {
+            // The characteristic value is overwritten by the next notification; copy it here
+            byte[] value = characteristic.getValue();
+            if (value != null) {
+                final byte[] frame = value.clone();
+                post(() -> onFrame(frame));
+            }
+        }
+    };
+
+    private void subscribe(BluetoothGatt g) {
+        BluetoothGattService service = g.getService(BleFrames.SERVICE_UUID);
+        BluetoothGattCharacteristic ack = service != null ? service.getCharacteristic(BleFrames.ACK_UUID) : null;
+        BluetoothGattDescriptor cccd = ack != null ? ack.getDescriptor(BleFrames.CCCD_UUID) : null;
+        dataCharacteristic = service != null ? service.getCharacteristic(BleFrames.DATA_UUID) : null;
+        capsCharacteristic = service != null ? service.getCharacteristic(BleFrames.CAPS_UUID) : null;
+        if (dataCharacteristic == null || cccd == null) {
+            fail("Device is not a verifier");
+            return;
+        }
+        g.setCharacteristicNotification(ack, true);
+        cccd.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+        if (!g.writeDescriptor(cccd)) {
+            fail("Verifier refused the connection");
+        }
+    }
+
+    // A verifier without CAPS predates compression and gets the payload as is
+    private void readCaps(BluetoothGatt g) {
+        if (capsCharacteristic == null || !g.readCharacteristic(capsCharacteristic)) {
+            beginTransfer(BleCompression.CODEC_NONE);
+        }
+    }
+
+    private void beginTransfer(int codec) {
+        if (sender != null || finished) {
+            return;
+        }
+        status("Sending credential...");
+        byte[] wire = BleCompression.compress(payload, codec);
+        if (wire.length >= payload.length) {
+            codec = BleCompression.CODEC_NONE;
+            wire = payload;
+        }
+        dataCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+        sender = new BleSender(wire, wire.length, codec, mtu, BleSender.DEFAULT_WINDOW, this::write);
+        sender.getStats().setOriginalBytes(payload.length);
+        sender.pump();
+        postDelayed(ackTimeout, ACK_TIMEOUT_MS);
+    }
+
+    // BleFrames.Channel: one write in flight at a time; onCharacteristicWrite frees the link
+    private boolean write(byte[] frame, int length) {
+        if (writing || gatt == null) {
+            return false;
+        }
+        dataCharacteristic.setValue(Arrays.copyOf(frame, length));
+        writing = gatt.writeCharacteristic(dataCharacteristic);
+        return writing;
+    }
+
+    private void onFrame(byte[] frame) {
+        if (sender == null || finished) {
+            return;
+        }
+        if (sender.onFrame(frame, frame.length)) {
+            finished = true;
+            TransferStats stats = sender.getStats();
+            Log.i(TAG, Build.MANUFACTURER + " " + Build.MODEL + " sent " + stats);
+            close();
+            mainHandler.post(() -> listener.onSent(stats));
+        } else if (sender.getAbortReason() != 0) {
+            fail(abortMessage(sender.getAbortReason()));
+        }
+    }
+
+    private final Runnable ackTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (sender == null || finished) {
+                return;
+            }
+            if (sender.onTimeout()) {
+                postDelayed(this, ACK_TIMEOUT_MS);
+            } else {
+                fail("Verifier stopped responding");
+            }
+        }
+    };
+
+    static String abortMessage(int reason) {
+        switch (reason) {
+            case BleFrames.REASON_TOO_LARGE:
+                return "Credential too large for verifier";
+            case BleFrames.REASON_CANCELLED:
+                return "Transfer cancelled";
+            default:
+                return "Transfer failed";
+        }
+    }
+
+    private void fail(String message) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        Log.w(TAG, message + (sender != null ? " after " + sender.getStats() : ""));
+        close();
+        mainHandler.post(() -> listener.onFailed(message));
+    }
+
+    private void status(String status) {
+        mainHandler.post(() -> listener.onStatus(status));
+    }
+
+    private void post(Runnable task) {
+        Handler handler = bleHandler;
+        if (handler != null) {
+            handler.post(task);
+        }
+    }
+
+    private void postDelayed(Runnable task, long delayMillis) {
+        Handler handler = bleHandler;
+        if (handler != null) {
+            handler.postDelayed(task, delayMillis);
+        }
+    }
+
+    private void stopScan() {
+        if (scanner != null) {
+            try {
+                scanner.stopScan(scanCallback);
+            } catch (IllegalStateException e) {
+                // Adapter already off
+            }
+            scanner = null;
+        }
+    }
+
+    private void close() {
+        Handler handler = bleHandler;
+        if (handler != null) {
+            handler.removeCallbacks(scanTimeout);
+            handler.removeCallbacks(ackTimeout);
+        }
+        stopScan();
+        if (gatt != null) {
+            gatt.disconnect();
+            gatt.close();
+            gatt = null;
+        }
+        sender = null;
+    }
+}
@@ -0,0 +1,105 @@
+package io.inji.verify;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// SHA-256 content hashes for payloads and logs. The payload is sanitized and
+// UTF-8 encoded on the fly into a per-thread chunk buffer and fed to a per-thread
+// MessageDigest, so hashing allocates nothing but the 32-byte result.
+public final class HashingService {
+
+    public static final int HASH_LENGTH = 32;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 unavailable", e);
+            }
+        }
+    };
+
+    private static final ThreadLocal<byte[]> CHUNK = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
+        }
+    };
+
+    private HashingService() {
+    }
+
+    public static byte[] sha256(byte[] data) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return digest.digest(data);
+    }
+
+    // SHA-256 of VerificationEngine.sanitize(payload) without materializing the
+    // sanitized string: '<' and '>' dropped, first MAX_PAYLOAD_LENGTH kept chars, trimmed.
+    public static byte[] hashPayload(String payload) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+
+        // First pass: bounds of the trimmed, length-limited sanitized text
+        int start = -1;
+        int end = -1;
+        int kept = 0;
+        for (int i = 0; i < payload.length() && kept < VerificationEngine.MAX_PAYLOAD_LENGTH; i++) {
+            char c = payload.charAt(i);
+            if (c == '<' || c == '>') {
+                continue;
+            }
+            kept++;
+            if (c > ' ') {
+                if (start < 0) {
+                    start = i;
+                }
+                end = i + 1;
+            }
+        }
+        if (start < 0) {
+            return digest.digest();
+        }
+
+        // Second pass: encode the kept chars as UTF-8 straight into the chunk buffer
+        byte[] chunk = CHUNK.get();
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (n > CHUNK_SIZE - 4) {
+                digest.update(chunk, 0, n);
+                n = 0;
+            }
+            char c = payload.charAt(i);
+            if (c == '<' || c == '>') {
+                continue;
+            }
+            if (c < 0x80) {
+                chunk[n++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[n++] = (byte) (0xc0 | (c >> 6));
+                chunk[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(payload.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, payload.charAt(++i));
+                chunk[n++] = (byte) (0xf0 | (cp >> 18));
+                chunk[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                chunk[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                chunk[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, encoded as '?' like String.getBytes(UTF_8)
+                chunk[n++] = '?';
+            } else {
+                chunk[n++] = (byte) (0xe0 | (c >> 12));
+                chunk[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                chunk[n++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        digest.update(chunk, 0, n);
+        return digest.digest();
+    }
+}
@@ -0,0 +1,100 @@
+package io.inji.verify;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+// Minimal ISO-8601 parser for VC dates ("2025-01-02T05:16:46.176Z",
+// "2024-09-17T16:31:52+05:30", "1975-08-22") and UTC formatter for exports.
+// java.time needs API 26.
+final class Iso8601 {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private Iso8601() {
+    }
+
+    static long parse(String s) {
+        try {
+            Calendar calendar = Calendar.getInstance(UTC);
+            calendar.clear();
+            int year = Integer.parseInt(s.substring(0, 4));
+            int month = Integer.parseInt(s.substring(5, 7));
+            int day = Integer.parseInt(s.substring(8, 10));
+            calendar.set(year, month - 1, day);
+            long offsetMillis = 0;
+            int pos = 10;
+            if (s.length() > 10 && (s.charAt(10) == 'T' || s.charAt(10) == ' ')) {
+                calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(s.substring(11, 13)));
+                calendar.set(Calendar.MINUTE, Integer.parseInt(s.substring(14, 16)));
+                pos = 16;
+                if (s.length() > 16 && s.charAt(16) == ':') {
+                    calendar.set(Calendar.SECOND, Integer.parseInt(s.substring(17, 19)));
+                    pos = 19;
+                }
+                if (pos < s.length() && s.charAt(pos) == '.') {
+                    int start = ++pos;
+                    while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                        pos++;
+                    }
+                    String fraction = (s.substring(start, pos) + "000").substring(0, 3);
+                    calendar.set(Calendar.MILLISECOND, Integer.parseInt(fraction));
+                }
+                if (pos < s.length()) {
+                    char zone = s.charAt(pos);
+                    if (zone == '+' || zone == '-') {
+                        int hours = Integer.parseInt(s.substring(pos + 1, pos + 3));
+                        int minutes = s.length() >= pos + 6
+                            ? Integer.parseInt(s.substring(pos + 4, pos + 6)) : 0;
+                        offsetMillis = (hours * 60L + minutes) * 60000L;
+                        if (zone == '-') {
+                            offsetMillis = -offsetMillis;
+                        }
+                    } else if (zone != 'Z') {
+                        throw new IllegalArgumentException("Invalid zone in date: " + s);
+                    }
+                }
+            }
+            return calendar.getTimeInMillis() - offsetMillis;
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid date: " + s, e);
+        }
+    }
+
+    // Appends millis as "yyyy-MM-ddTHH:mm:ss.SSSZ" (Date.toISOString) without allocating
+    static void format(long millis, StringBuilder out) {
+        long days = millis / 86400000L;
+        long msOfDay = millis % 86400000L;
+        if (msOfDay < 0) {
+            msOfDay += 86400000L;
+            days--;
+        }
+        // Civil-from-days over 400-year eras, counted from 0000-03-01
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int ms = (int) msOfDay;
+        pad(out, year, 4).append('-');
+        pad(out, month, 2).append('-');
+        pad(out, day, 2).append('T');
+        pad(out, ms / 3600000, 2).append(':');
+        pad(out, ms / 60000 % 60, 2).append(':');
+        pad(out, ms / 1000 % 60, 2).append('.');
+        pad(out, ms % 1000, 3).append('Z');
+    }
+
+    private static StringBuilder pad(StringBuilder out, long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        return out.append(value);
+    }
+}
@@ -0,0 +1,103 @@
+package io.inji.verify;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+// Deterministic JSON serialization (JCS-style) used as the proof signing input; not
+// URDNA2015, so it does not reproduce the input of real LD proofs:
+// object keys sorted, no insignificant whitespace, minimal string escaping.
+final class JsonCanonicalizer {
+
+    private JsonCanonicalizer() {
+    }
+
+    static byte[] canonicalize(Object value) throws JSONException {
+        StringBuilder sb = new StringBuilder(256);
+        write(value, sb);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(Object value, StringBuilder sb) throws JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            sb.append("null");
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            List<String> keys = new ArrayList<>(object.length());
+            Iterator<String> it = object.keys();
+            while (it.hasNext()) {
+                keys.add(it.next());
+            }
+            Collections.sort(keys);
+            sb.append('{');
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                writeString(keys.get(i), sb);
+                sb.append(':');
+                write(object.get(keys.get(i)), sb);
+            }
+            sb.append('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            sb.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                write(array.get(i), sb);
+            }
+            sb.append(']');
+        } else if (value instanceof Number) {
+            sb.append(JSONObject.numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            sb.append(value.toString());
+        } else {
+            writeString(value.toString(), sb);
+        }
+    }
+
+    private static void writeString(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,129 @@
+package io.inji.verify;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Streams the whole log table to an output stream as CSV or JSON, in the same
+// layouts as export.ts. Rows are read in keyset pages and written through one
+// buffered writer, so memory use does not grow with the number of logs.
+public class LogExporter {
+
+    public interface Source {
+        // Newest first: rows with id < beforeId
+        List<VerificationLog> readPage(long beforeId, int limit);
+    }
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON("application/json", "json");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    static final int PAGE_SIZE = 1000;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CSV_HEADER = "\"Time\",\"Hash\",\"Status\",\"Synced\",\"Details\"";
+
+    private final Source source;
+    // Reused for every timestamp and details field
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    public LogExporter(Source source) {
+        this.source = source;
+    }
+
+    // Returns the number of rows written. Does not close the stream.
+    public long export(Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long rows = 0;
+        writer.write(format == Format.CSV ? CSV_HEADER : "[");
+        long beforeId = Long.MAX_VALUE;
+        while (true) {
+            List<VerificationLog> page = source.readPage(beforeId, PAGE_SIZE);
+            for (VerificationLog log : page) {
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, log);
+                } else {
+                    writeJsonRow(writer, log, rows == 0);
+                }
+                rows++;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            beforeId = page.get(page.size() - 1).getId();
+        }
+        writer.write(format == Format.CSV ? "\n" : "\n]\n");
+        writer.flush();
+        return rows;
+    }
+
+    private void writeCsvRow(Writer writer, VerificationLog log) throws IOException {
+        writer.write('\n');
+        scratch.setLength(0);
+        Iso8601.format(log.getTimestamp(), scratch);
+        writeCsvField(writer, scratch);
+        writer.write(',');
+        writeCsvField(writer, log.getHashHex());
+        writer.write(',');
+        writeCsvField(writer, log.getStatus());
+        writer.write(',');
+        writeCsvField(writer, log.isSynced() ? "Yes" : "No");
+        writer.write(',');
+        scratch.setLength(0);
+        appendDetails(log, scratch);
+        writeCsvField(writer, scratch);
+    }
+
+    // Every field quoted, embedded quotes doubled
+    private static void writeCsvField(Writer writer, CharSequence field) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    // Same fields as a db.ts row: { id, vcHash, status, details, timestamp, synced }
+    private void writeJsonRow(Writer writer, VerificationLog log, boolean first) throws IOException {
+        writer.write(first ? "\n  {\"id\":" : ",\n  {\"id\":");
+        writer.write(Long.toString(log.getId()));
+        writer.write(",\"vcHash\":\"");
+        writer.write(log.getHashHex());
+        writer.write("\",\"status\":");
+        writer.write(JSONObject.quote(log.getStatus()));
+        writer.write(",\"details\":");
+        scratch.setLength(0);
+        appendDetails(log, scratch);
+        writer.append(scratch);
+        writer.write(",\"timestamp\":");
+        writer.write(Long.toString(log.getTimestamp()));
+        writer.write(log.isSynced() ? ",\"synced\":true}" : ",\"synced\":false}");
+    }
+
+    private static void appendDetails(VerificationLog log, StringBuilder out) {
+        if (log.getMessage() == null) {
+            out.append("{}");
+        } else {
+            out.append("{\"message\":").append(JSONObject.quote(log.getMessage())).append('}');
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.inji.verify;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Durable verification log store (SQLite in WAL mode). Mirrors the IndexedDB
+// schema of db.ts: a logs table indexed by synced flag and by timestamp. Reads
+// are keyset-paged on the row id so no query ever materializes the whole table.
+public class LogStore extends SQLiteOpenHelper implements LogWriter.Sink, LogSyncEngine.Source,
+        LogExporter.Source, LogWindow.Source {
+
+    private static final String DATABASE_NAME = "verification_logs.db";
+    private static final int DATABASE_VERSION = 1;
+
+    static final String TABLE_LOGS = "logs";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_HASH = "vc_hash";
+    static final String COLUMN_STATUS = "status";
+    static final String COLUMN_MESSAGE = "message";
+    static final String COLUMN_TIMESTAMP = "timestamp";
+    static final String COLUMN_SYNCED = "synced";
+
+    private static final String[] COLUMNS = {
+        COLUMN_ID, COLUMN_HASH, COLUMN_STATUS, COLUMN_MESSAGE, COLUMN_TIMESTAMP, COLUMN_SYNCED
+    };
+
+    private static final String SQL_INSERT = "INSERT INTO " + TABLE_LOGS + " ("
+        + COLUMN_HASH + ", " + COLUMN_STATUS + ", " + COLUMN_MESSAGE + ", "
+        + COLUMN_TIMESTAMP + ", " + COLUMN_SYNCED + ") VALUES (?, ?, ?, ?, ?)";
+
+    // Compiled once and reused for every insert; guarded by this
+    private SQLiteStatement insertStatement;
+
+    public LogStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.enableWriteAheadLogging();
+        // WAL + NORMAL only fsyncs at checkpoints, keeping commits well under a millisecond
+        db.execSQL("PRAGMA synchronous = NORMAL");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LOGS + " ("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + COLUMN_HASH + " BLOB NOT NULL, "
+            + COLUMN_STATUS + " TEXT NOT NULL, "
+            + COLUMN_MESSAGE + " TEXT, "
+            + COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+            + COLUMN_SYNCED + " INTEGER NOT NULL DEFAULT 0)");
+        // Index entries carry the rowid, so "synced = 0 ORDER BY id" is an index range scan
+        db.execSQL("CREATE INDEX logs_by_synced ON " + TABLE_LOGS + " (" + COLUMN_SYNCED + ")");
+        db.execSQL("CREATE INDEX logs_by_timestamp ON " + TABLE_LOGS + " (" + COLUMN_TIMESTAMP + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // No migrations yet
+    }
+
+    public void insert(VerificationLog log) {
+        insertBatch(Collections.singletonList(log));
+    }
+
+    // Inserts all logs in one transaction and assigns their row ids
+    @Override
+    public synchronized void insertBatch(List<VerificationLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        if (insertStatement == null) {
+            insertStatement = db.compileStatement(SQL_INSERT);
+        }
+        db.beginTransactionNonExclusive();
+        try {
+            for (VerificationLog log : batch) {
+                insertStatement.clearBindings();
+                insertStatement.bindBlob(1, log.getHash());
+                insertStatement.bindString(2, log.getStatus());
+                if (log.getMessage() != null) {
+                    insertStatement.bindString(3, log.getMessage());
+                } else {
+                    insertStatement.bindNull(3);
+                }
+                insertStatement.bindLong(4, log.getTimestamp());
+                insertStatement.bindLong(5, log.isSynced() ? 1 : 0);
+                log.setId(insertStatement.executeInsert());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Rewrites the outcome of a committed row, e.g. once the face check of its scan
+    // finishes. A row already synced is left as it was uploaded: sync resumes after
+    // its checkpoint id, so a changed row would never reach the server. Returns
+    // whether the row was updated.
+    public synchronized boolean updateOutcome(long id, String status, String message) {
+        SQLiteStatement update = getWritableDatabase().compileStatement("UPDATE " + TABLE_LOGS + " SET "
+            + COLUMN_STATUS + " = ?, " + COLUMN_MESSAGE + " = ? WHERE " + COLUMN_ID + " = ? AND "
+            + COLUMN_SYNCED + " = 0");
+        try {
+            update.bindString(1, status);
+            update.bindString(2, message);
+            update.bindLong(3, id);
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            update.close();
+        }
+    }
+
+    // Newest first: rows with id < beforeId (use Long.MAX_VALUE for the first page)
+    @Override
+    public List<VerificationLog> readPage(long beforeId, int limit) {
+        Cursor cursor = getReadableDatabase().query(TABLE_LOGS, COLUMNS,
+            COLUMN_ID + " < ?", new String[]{Long.toString(beforeId)},
+            null, null, COLUMN_ID + " DESC", Integer.toString(limit));
+        return readAll(cursor, limit);
+    }
+
+    // Newest first: the rows just above afterId, for scrolling back up
+    @Override
+    public List<VerificationLog> readNewer(long afterId, int limit) {
+        Cursor cursor = getReadableDatabase().query(TABLE_LOGS, COLUMNS,
+            COLUMN_ID + " > ?", new String[]{Long.toString(afterId)},
+            null, null, COLUMN_ID + " ASC", Integer.toString(limit));
+        List<VerificationLog> logs = readAll(cursor, limit);
+        Collections.reverse(logs);
+        return logs;
+    }
+
+    // Oldest first: unsynced rows with id > afterId
+    @Override
+    public List<VerificationLog> readUnsynced(long afterId, int limit) {
+        Cursor cursor = getReadableDatabase().query(TABLE_LOGS, COLUMNS,
+            COLUMN_SYNCED + " = 0 AND " + COLUMN_ID + " > ?", new String[]{Long.toString(afterId)},
+            null, null, COLUMN_ID + " ASC", Integer.toString(limit));
+        return readAll(cursor, limit);
+    }
+
+    // Ids are assigned in insert order, so an acknowledged batch is exactly the
+    // unsynced rows up to its last id
+    @Override
+    public synchronized void markSyncedThrough(long maxId) {
+        getWritableDatabase().execSQL("UPDATE " + TABLE_LOGS + " SET " + COLUMN_SYNCED + " = 1 WHERE "
+            + COLUMN_SYNCED + " = 0 AND " + COLUMN_ID + " <= ?", new Object[]{maxId});
+    }
+
+    public long count() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_LOGS);
+    }
+
+    public long countUnsynced() {
+        return DatabaseUtils.queryNumEntries(
+            getReadableDatabase(), TABLE_LOGS, COLUMN_SYNCED + " = 0");
+    }
+
+    private static List<VerificationLog> readAll(Cursor cursor, int capacity) {
+        List<VerificationLog> logs = new ArrayList<>(Math.min(capacity, cursor.getCount()));
+        try {
+            while (cursor.moveToNext()) {
+                logs.add(fromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return logs;
+    }
+
+    static VerificationLog fromCursor(Cursor cursor) {
+        VerificationLog log = new VerificationLog(
+            cursor.getBlob(1),
+            cursor.getString(2),
+            cursor.getLong(4),
+            cursor.getInt(5) != 0);
+        log.setId(cursor.getLong(0));
+        log.setMessage(cursor.getString(3));
+        return log;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (insertStatement != null) {
+            insertStatement.close();
+            insertStatement = null;
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,200 @@
+package io.inji.verify;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Uploads unsynced logs to the server's POST /api/logs in gzip-compressed pages.
+// Rows are only marked synced after a 2xx for their batch; the highest
+// acknowledged row id is kept as a checkpoint so an interrupted sync resumes
+// after the last acknowledged batch instead of starting over.
+public class LogSyncEngine {
+
+    public interface Source {
+        List<VerificationLog> readUnsynced(long afterId, int limit);
+
+        void markSyncedThrough(long maxId);
+    }
+
+    public interface Checkpoint {
+        long load();
+
+        void save(long lastAcknowledgedId);
+    }
+
+    public interface Transport {
+        // POSTs a gzip-encoded JSON body and returns the HTTP status
+        int post(byte[] body, int length) throws IOException;
+    }
+
+    public static class Result {
+        public final int uploaded;
+        public final boolean complete;
+        public final String error;
+
+        Result(int uploaded, boolean complete, String error) {
+            this.uploaded = uploaded;
+            this.complete = complete;
+            this.error = error;
+        }
+    }
+
+    static final int BATCH_SIZE = 500;
+    static final int MAX_ATTEMPTS = 3;
+    static final long INITIAL_BACKOFF_MS = 1000;
+
+    private final Source source;
+    private final Checkpoint checkpoint;
+    private final Transport transport;
+    // Reused for every batch; grows to the largest compressed batch only
+    private final ReusableBuffer buffer = new ReusableBuffer(32 * 1024);
+
+    public LogSyncEngine(Source source, Checkpoint checkpoint, Transport transport) {
+        this.source = source;
+        this.checkpoint = checkpoint;
+        this.transport = transport;
+    }
+
+    public static Transport httpTransport(String endpoint) throws IOException {
+        final URL url = new URL(endpoint.replaceAll("/$", "") + "/api/logs");
+        return new Transport() {
+            @Override
+            public int post(byte[] body, int length) throws IOException {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                try {
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    connection.setConnectTimeout(15000);
+                    connection.setReadTimeout(30000);
+                    connection.setFixedLengthStreamingMode(length);
+                    connection.setRequestProperty("Content-Type", "application/json");
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                    OutputStream out = connection.getOutputStream();
+                    try {
+                        out.write(body, 0, length);
+                    } finally {
+                        out.close();
+                    }
+                    return connection.getResponseCode();
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        };
+    }
+
+    public synchronized Result sync() {
+        long lastId = checkpoint.load();
+        // Batches acknowledged before a crash may not have been marked yet
+        if (lastId > 0) {
+            source.markSyncedThrough(lastId);
+        }
+
+        int uploaded = 0;
+        while (true) {
+            List<VerificationLog> batch = source.readUnsynced(lastId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return new Result(uploaded, true, null);
+            }
+            try {
+                encode(batch);
+            } catch (IOException e) {
+                return new Result(uploaded, false, e.getMessage());
+            }
+
+            String error = postWithRetry();
+            if (error != null) {
+                return new Result(uploaded, false, error);
+            }
+
+            lastId = batch.get(batch.size() - 1).getId();
+            checkpoint.save(lastId);
+            source.markSyncedThrough(lastId);
+            uploaded += batch.size();
+        }
+    }
+
+    // Returns null on success, otherwise the reason the batch was not accepted
+    private String postWithRetry() {
+        long backoff = INITIAL_BACKOFF_MS;
+        String error = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                int status = transport.post(buffer.array(), buffer.size());
+                if (status >= 200 && status < 300) {
+                    return null;
+                }
+                error = "Sync failed: " + status;
+                if (status >= 400 && status < 500) {
+                    // Rejected payload; retrying the same bytes cannot succeed
+                    return error;
+                }
+            } catch (IOException e) {
+                error = "Sync failed: " + e.getMessage();
+            }
+            if (attempt < MAX_ATTEMPTS) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return "Sync interrupted";
+                }
+                backoff *= 2;
+            }
+        }
+        return error;
+    }
+
+    // Same row shape as sync.ts: { vcHash, status, details, timestamp, source }
+    private void encode(List<VerificationLog> batch) throws IOException {
+        buffer.reset();
+        Writer writer = new OutputStreamWriter(new GZIPOutputStream(buffer, 8192), StandardCharsets.UTF_8);
+        try {
+            writer.write('[');
+            for (int i = 0; i < batch.size(); i++) {
+                VerificationLog log = batch.get(i);
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write("{\"vcHash\":\"");
+                writer.write(log.getHashHex());
+                writer.write("\",\"status\":\"");
+                writer.write(log.getStatus());
+                writer.write("\",\"details\":");
+                if (log.getMessage() != null) {
+                    writer.write("{\"message\":");
+                    writer.write(JSONObject.quote(log.getMessage()));
+                    writer.write('}');
+                } else {
+                    writer.write("null");
+                }
+                writer.write(",\"timestamp\":");
+                writer.write(Long.toString(log.getTimestamp()));
+                writer.write(",\"source\":\"device\"}");
+            }
+            writer.write(']');
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static class ReusableBuffer extends ByteArrayOutputStream {
+        ReusableBuffer(int size) {
+            super(size);
+        }
+
+        // Backing array without the copy toByteArray() makes
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.inji.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Immutable, contiguous window over the log table, newest first. Scrolling grows
+// it a page at a time at either end and trims the far end, so the heap holds at
+// most maxSize logs however many are stored. Every change returns a new window,
+// which lets LogsAdapter diff old against new off the main thread.
+final class LogWindow {
+
+    interface Source {
+        // Newest first: rows with id < beforeId
+        List<VerificationLog> readPage(long beforeId, int limit);
+
+        // Newest first: the `limit` rows immediately newer than afterId
+        List<VerificationLog> readNewer(long afterId, int limit);
+    }
+
+    static final LogWindow EMPTY = new LogWindow(Collections.<VerificationLog>emptyList(), false, false);
+
+    final List<VerificationLog> items;
+    // More rows exist above / below the window
+    final boolean hasNewer;
+    final boolean hasOlder;
+
+    private LogWindow(List<VerificationLog> items, boolean hasNewer, boolean hasOlder) {
+        this.items = Collections.unmodifiableList(items);
+        this.hasNewer = hasNewer;
+        this.hasOlder = hasOlder;
+    }
+
+    static LogWindow head(Source source, int pageSize) {
+        List<VerificationLog> page = source.readPage(Long.MAX_VALUE, pageSize);
+        return new LogWindow(page, false, page.size() == pageSize);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    LogWindow loadOlder(Source source, int pageSize, int maxSize) {
+        if (!hasOlder || items.isEmpty()) {
+            return this;
+        }
+        List<VerificationLog> page = source.readPage(oldestId(), pageSize);
+        List<VerificationLog> merged = new ArrayList<>(items.size() + page.size());
+        merged.addAll(items);
+        merged.addAll(page);
+        int drop = Math.max(0, merged.size() - maxSize);
+        return new LogWindow(merged.subList(drop, merged.size()), hasNewer || drop > 0, page.size() == pageSize);
+    }
+
+    LogWindow loadNewer(Source source, int pageSize, int maxSize) {
+        if (!hasNewer || items.isEmpty()) {
+            return this;
+        }
+        List<VerificationLog> page = source.readNewer(items.get(0).getId(), pageSize);
+        List<VerificationLog> merged = new ArrayList<>(page.size() + items.size());
+        merged.addAll(page);
+        merged.addAll(items);
+        int keep = Math.min(merged.size(), maxSize);
+        return new LogWindow(merged.subList(0, keep), page.size() == pageSize, hasOlder || keep < merged.size());
+    }
+
+    // A log just recorded; only visible when the window is at the head
+    LogWindow withHead(VerificationLog log, int maxSize) {
+        if (hasNewer) {
+            return this;
+        }
+        List<VerificationLog> merged = new ArrayList<>(items.size() + 1);
+        merged.add(log);
+        merged.addAll(items);
+        int keep = Math.min(merged.size(), maxSize);
+        return new LogWindow(merged.subList(0, keep), false, hasOlder || keep < merged.size());
+    }
+
+    // Re-reads the same span from storage, e.g. after rows were marked synced
+    LogWindow refresh(Source source) {
+        if (items.isEmpty()) {
+            return this;
+        }
+        if (hasNewer) {
+            List<VerificationLog> page = source.readPage(items.get(0).getId() + 1, items.size());
+            return new LogWindow(page, true, hasOlder || page.size() < items.size());
+        }
+        // Logs still queued in LogWriter have no row yet; keep them on top
+        List<VerificationLog> pending = new ArrayList<>();
+        for (VerificationLog log : items) {
+            if (log.getId() == 0) {
+                pending.add(log);
+            }
+        }
+        List<VerificationLog> page = source.readPage(Long.MAX_VALUE, items.size() - pending.size());
+        Set<Long> stored = new HashSet<>();
+        for (VerificationLog log : page) {
+            stored.add(log.getId());
+        }
+        List<VerificationLog> merged = new ArrayList<>(items.size());
+        for (VerificationLog log : pending) {
+            // Committed between the read and now
+            if (!stored.contains(log.getId())) {
+                merged.add(log);
+            }
+        }
+        merged.addAll(page);
+        return new LogWindow(merged, false, hasOlder);
+    }
+
+    private long oldestId() {
+        for (int i = items.size() - 1; i >= 0; i--) {
+            long id = items.get(i).getId();
+            if (id != 0) {
+                return id;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
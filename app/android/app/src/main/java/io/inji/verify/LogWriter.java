@@ -0,0 +1,152 @@
+package io.inji.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Write-behind queue for verification logs. The UI thread only enqueues; a single
+// writer thread drains the queue in group commits of up to MAX_BATCH records, or
+// whatever arrived within MAX_DELAY_MS of the first one, in one transaction.
+public class LogWriter {
+
+    public interface Sink {
+        void insertBatch(List<VerificationLog> batch);
+    }
+
+    static final int MAX_BATCH = 50;
+    static final long MAX_DELAY_MS = 20;
+
+    private final Sink sink;
+    private final LinkedBlockingQueue<VerificationLog> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    // Guarded by this: records handed to enqueue() / records committed (or dropped)
+    private long enqueued;
+    private long completed;
+    private volatile boolean closed;
+    private volatile boolean flushRequested;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile RuntimeException lastError;
+
+    public LogWriter(Sink sink) {
+        this.sink = sink;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Never blocks; safe to call from the UI thread. After close() the record is
+    // dropped and false returned, so callbacks still queued behind onDestroy are harmless.
+    public boolean enqueue(VerificationLog log) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        synchronized (this) {
+            enqueued++;
+        }
+        queue.offer(log);
+        return true;
+    }
+
+    // Blocks until everything enqueued before the call is committed, or the timeout passes.
+    // Returns false on timeout.
+    public boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            long target = enqueued;
+            while (completed < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Never blocks: the writer commits what it has gathered now instead of waiting
+    // out the rest of MAX_DELAY_MS. For onPause, where the process may be killed next.
+    public void requestFlush() {
+        flushRequested = true;
+        writer.interrupt();
+    }
+
+    public void close(long timeoutMs) {
+        flush(timeoutMs);
+        closed = true;
+        writer.interrupt();
+    }
+
+    // Records handed to enqueue() after close()
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Last failed commit, if any; the failed batch is dropped so flush() cannot hang
+    public RuntimeException getLastError() {
+        return lastError;
+    }
+
+    private void drainLoop() {
+        List<VerificationLog> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MS);
+                while (batch.size() < MAX_BATCH) {
+                    // Take whatever is already queued without waiting, then wait out the window
+                    if (queue.drainTo(batch, MAX_BATCH - batch.size()) > 0) {
+                        continue;
+                    }
+                    if (flushRequested) {
+                        flushRequested = false;
+                        // Records enqueued before the request are visible now
+                        queue.drainTo(batch, MAX_BATCH - batch.size());
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    VerificationLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<VerificationLog> batch) {
+        try {
+            sink.insertBatch(batch);
+        } catch (RuntimeException e) {
+            lastError = e;
+        }
+        synchronized (this) {
+            completed += batch.size();
+            notifyAll();
+        }
+    }
+}
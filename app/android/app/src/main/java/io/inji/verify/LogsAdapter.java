@@ -1,5 +1,8 @@
 package io.inji.verify;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,16 +11,94 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
+// Shows a LogWindow paged in from LogStore. Window changes (page loads, new logs,
+// refreshes) are applied and diffed on a single worker thread, then the diff is
+// dispatched on the main thread, so binding never touches the database.
 public class LogsAdapter extends RecyclerView.Adapter<LogsAdapter.LogViewHolder> {
     
-    private List<VerificationLog> logs;
+    static final int PAGE_SIZE = 100;
+    static final int MAX_WINDOW = 5 * PAGE_SIZE;
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
     
-    public LogsAdapter(List<VerificationLog> logs) {
-        this.logs = logs;
+    private interface Update {
+        LogWindow apply(LogWindow current);
+    }
+    
+    private final LogWindow.Source source;
+    private final Executor worker;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    // Rebind payload that refreshes only the relative timestamp
+    private static final Object PAYLOAD_TIME = new Object();
+    private final Runnable timeTick = this::onTimeTick;
+    private final Choreographer.FrameCallback endOfFrame = frameTimeNanos -> frameTime = 0;
+    private long frameTime;
+    private long nextTimeChange = Long.MAX_VALUE;
+    private RecyclerView recyclerView;
+    
+    // Bound to the views; main thread only
+    private LogWindow displayed = LogWindow.EMPTY;
+    private boolean pageLoadPending;
+    // Last window handed to the main thread; worker thread only
+    private LogWindow latest = LogWindow.EMPTY;
+    
+    // worker must be single-threaded so updates are diffed in submission order
+    public LogsAdapter(LogWindow.Source source, Executor worker) {
+        this.source = source;
+        this.worker = worker;
+    }
+    
+    public void loadInitial() {
+        submit(current -> LogWindow.head(source, PAGE_SIZE), false);
+    }
+    
+    public void addLog(VerificationLog log) {
+        submit(current -> current.withHead(log, MAX_WINDOW), false);
+    }
+    
+    // Re-reads the visible span, e.g. after a sync changed the synced flags
+    public void refresh() {
+        submit(current -> current.refresh(source), false);
+    }
+    
+    private void submit(Update update, boolean pageLoad) {
+        worker.execute(() -> {
+            LogWindow previous = latest;
+            LogWindow next = update.apply(previous);
+            DiffUtil.DiffResult diff = next == previous
+                ? null : DiffUtil.calculateDiff(new WindowDiff(previous.items, next.items));
+            latest = next;
+            mainHandler.post(() -> {
+                if (pageLoad) {
+                    pageLoadPending = false;
+                }
+                if (diff != null) {
+                    displayed = next;
+                    diff.dispatchUpdatesTo(this);
+                }
+            });
+        });
+    }
+    
+    // Called while binding; loads the next page before the user reaches the edge
+    private void prefetch(int position) {
+        if (pageLoadPending) {
+            return;
+        }
+        if (displayed.hasOlder && position >= displayed.size() - PREFETCH_DISTANCE) {
+            pageLoadPending = true;
+            submit(current -> current.loadOlder(source, PAGE_SIZE, MAX_WINDOW), true);
+        } else if (displayed.hasNewer && position < PREFETCH_DISTANCE) {
+            pageLoadPending = true;
+            submit(current -> current.loadNewer(source, PAGE_SIZE, MAX_WINDOW), true);
+        }
     }
     
     @NonNull
@@ -28,41 +109,144 @@ public class LogsAdapter extends RecyclerView.Adapter<LogsAdapter.LogViewHolder>
         return new LogViewHolder(view);
     }
     
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+    }
+    
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = null;
+        mainHandler.removeCallbacks(timeTick);
+        nextTimeChange = Long.MAX_VALUE;
+    }
+    
+    @Override
+    public void onBindViewHolder(@NonNull LogViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.size() == 1 && payloads.get(0) == PAYLOAD_TIME) {
+            bindTimestamp(holder, displayed.items.get(position));
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+    
     @Override
     public void onBindViewHolder(@NonNull LogViewHolder holder, int position) {
-        VerificationLog log = logs.get(position);
+        VerificationLog log = displayed.items.get(position);
+        prefetch(position);
         
         holder.hashText.setText(log.getShortHash());
-        holder.timestampText.setText(log.getFormattedTimestamp());
+        bindTimestamp(holder, log);
         
-        // Set status icon and color
-        if ("success".equals(log.getStatus())) {
-            holder.statusIcon.setImageResource(R.drawable.ic_checkmark);
-            holder.statusIcon.setColorFilter(ContextCompat.getColor(
-                holder.itemView.getContext(), R.color.verification_success));
-        } else {
-            holder.statusIcon.setImageResource(R.drawable.ic_cross);
-            holder.statusIcon.setColorFilter(ContextCompat.getColor(
-                holder.itemView.getContext(), R.color.verification_failure));
+        // Icons and tints only change with the state; skip the drawable and filter work otherwise
+        boolean success = "success".equals(log.getStatus());
+        if (holder.boundState != (success ? 1 : 0) + (log.isSynced() ? 2 : 0)) {
+            holder.boundState = (success ? 1 : 0) + (log.isSynced() ? 2 : 0);
+            
+            // Set status icon and color
+            if (success) {
+                holder.statusIcon.setImageResource(R.drawable.ic_checkmark);
+                holder.statusIcon.setColorFilter(ContextCompat.getColor(
+                    holder.itemView.getContext(), R.color.verification_success));
+            } else {
+                holder.statusIcon.setImageResource(R.drawable.ic_cross);
+                holder.statusIcon.setColorFilter(ContextCompat.getColor(
+                    holder.itemView.getContext(), R.color.verification_failure));
+            }
+            
+            // Set sync status
+            if (log.isSynced()) {
+                holder.syncIcon.setVisibility(View.VISIBLE);
+                holder.syncIcon.setImageResource(R.drawable.ic_sync_done);
+                holder.syncIcon.setColorFilter(ContextCompat.getColor(
+                    holder.itemView.getContext(), R.color.success));
+            } else {
+                holder.syncIcon.setVisibility(View.VISIBLE);
+                holder.syncIcon.setImageResource(R.drawable.ic_sync_pending);
+                holder.syncIcon.setColorFilter(ContextCompat.getColor(
+                    holder.itemView.getContext(), R.color.warning));
+            }
         }
-        
-        // Set sync status
-        if (log.isSynced()) {
-            holder.syncIcon.setVisibility(View.VISIBLE);
-            holder.syncIcon.setImageResource(R.drawable.ic_sync_done);
-            holder.syncIcon.setColorFilter(ContextCompat.getColor(
-                holder.itemView.getContext(), R.color.success));
-        } else {
-            holder.syncIcon.setVisibility(View.VISIBLE);
-            holder.syncIcon.setImageResource(R.drawable.ic_sync_pending);
-            holder.syncIcon.setColorFilter(ContextCompat.getColor(
-                holder.itemView.getContext(), R.color.warning));
+    }
+    
+    private void bindTimestamp(LogViewHolder holder, VerificationLog log) {
+        long now = frameTime();
+        holder.timestampText.setText(RelativeTimeFormatter.format(log.getTimestamp(), now));
+        scheduleTimeTick(RelativeTimeFormatter.nextChange(log.getTimestamp(), now));
+    }
+    
+    // Wall clock read once per frame and shared by every bind in it
+    private long frameTime() {
+        if (frameTime == 0) {
+            frameTime = System.currentTimeMillis();
+            Choreographer.getInstance().postFrameCallback(endOfFrame);
+        }
+        return frameTime;
+    }
+    
+    private void scheduleTimeTick(long at) {
+        if (at < nextTimeChange) {
+            nextTimeChange = at;
+            mainHandler.removeCallbacks(timeTick);
+            mainHandler.postDelayed(timeTick, Math.max(0, at - System.currentTimeMillis()));
+        }
+    }
+    
+    // Rebinds just the timestamps of the visible rows once the earliest label expires
+    private void onTimeTick() {
+        nextTimeChange = Long.MAX_VALUE;
+        if (recyclerView == null || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first >= 0 && last >= first) {
+            // Rebinding reschedules the tick from the new labels
+            notifyItemRangeChanged(first, last - first + 1, PAYLOAD_TIME);
         }
     }
     
     @Override
     public int getItemCount() {
-        return logs.size();
+        return displayed.size();
+    }
+    
+    private static class WindowDiff extends DiffUtil.Callback {
+        private final List<VerificationLog> oldItems;
+        private final List<VerificationLog> newItems;
+        
+        WindowDiff(List<VerificationLog> oldItems, List<VerificationLog> newItems) {
+            this.oldItems = oldItems;
+            this.newItems = newItems;
+        }
+        
+        @Override
+        public int getOldListSize() {
+            return oldItems.size();
+        }
+        
+        @Override
+        public int getNewListSize() {
+            return newItems.size();
+        }
+        
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            VerificationLog a = oldItems.get(oldPosition);
+            VerificationLog b = newItems.get(newPosition);
+            // Logs not yet committed by LogWriter have no row id
+            return a == b || (a.getId() != 0 && a.getId() == b.getId());
+        }
+        
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            VerificationLog a = oldItems.get(oldPosition);
+            VerificationLog b = newItems.get(newPosition);
+            return a.isSynced() == b.isSynced()
+                && a.getTimestamp() == b.getTimestamp()
+                && a.getStatus().equals(b.getStatus());
+        }
     }
     
     static class LogViewHolder extends RecyclerView.ViewHolder {
@@ -70,6 +254,8 @@ public class LogsAdapter extends RecyclerView.Adapter<LogsAdapter.LogViewHolder>
         TextView hashText;
         TextView timestampText;
         ImageView syncIcon;
+        // Status/synced combination the icons currently show, -1 before the first bind
+        int boundState = -1;
         
         public LogViewHolder(@NonNull View itemView) {
             super(itemView);
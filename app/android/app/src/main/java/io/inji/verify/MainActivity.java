@@ -1,17 +1,29 @@
 package io.inji.verify;
 
 import android.Manifest;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.view.SurfaceView;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.core.content.FileProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -22,11 +34,29 @@ import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
 
 public class MainActivity extends BridgeActivity {
     
+    private static final String TAG = "MainActivity";
+    
     // UI Components
     private MaterialButtonToggleGroup modeToggleGroup;
     private MaterialButtonToggleGroup roleToggleGroup;
@@ -34,10 +64,13 @@ public class MainActivity extends BridgeActivity {
     private MaterialCardView bleVerificationCard;
     private MaterialCardView resultCard;
     private RecyclerView logsRecycler;
+    private SurfaceView cameraPreview;
     
     private MaterialButton scanButton;
     private MaterialButton bleActionButton;
     private MaterialButton faceMatchToggle;
+    private MaterialButton gateModeToggle;
+    private MaterialButton bulkVerifyButton;
     private MaterialButton syncButton;
     private MaterialButton exportButton;
     
@@ -56,16 +89,80 @@ public class MainActivity extends BridgeActivity {
     private boolean isScanning = false;
     private boolean isBLEActive = false;
     private boolean faceMatchEnabled = true;
+    // Camera stays open between people; results are shown briefly and logged in the background
+    private boolean gateMode = false;
     private String currentMode = "qr";
     private String currentRole = "verifier";
     
+    // QR scanning
+    private CameraQrScanner qrScanner;
+    private ScanDeduplicator scanDeduplicator;
+    
     // Data
-    private List<VerificationLog> logs = new ArrayList<>();
     private LogsAdapter logsAdapter;
+    // Page loads and list diffs for logsAdapter
+    private final ExecutorService logPagingExecutor = Executors.newSingleThreadExecutor();
+    private LogStore logStore;
+    private LogWriter logWriter;
+    private LogSyncEngine logSyncEngine;
+    // Sync and export; kept off the verification thread
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private long totalLogCount;
+    
+    private static final long LOG_FLUSH_TIMEOUT_MS = 2000;
+    private static final long STORE_CLOSE_TIMEOUT_MS = 250;
+    
+    // Sync settings
+    private static final String PREFS_NAME = "inji_verify";
+    private static final String PREF_SYNC_ENDPOINT = "sync_endpoint";
+    private static final String PREF_SYNC_CHECKPOINT = "sync_checkpoint";
+    private static final String DEFAULT_SYNC_ENDPOINT = "http://10.0.2.2:4000";
+    
+    // Scan settings
+    private static final String PREF_SCAN_DEDUPE_WINDOW_MS = "scan_dedupe_window_ms";
+    private static final long GATE_RESULT_DISPLAY_MS = 1500;
+    private final Runnable hideResultCard = () -> resultCard.setVisibility(View.GONE);
+    
+    // Export settings
+    private static final String EXPORT_DIR = "exports";
+    
+    // Verification
+    private volatile VerificationEngine verificationEngine;
+    // Shared by QR scans and concurrent BLE sessions; the engine is safe to call in parallel
+    private static final int VERIFICATION_THREADS =
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private final ExecutorService verificationExecutor = Executors.newFixedThreadPool(VERIFICATION_THREADS);
+    // Proof canonicalization and face reference embedding, run alongside the rest of a verification
+    private final ExecutorService stageExecutor = Executors.newFixedThreadPool(VERIFICATION_THREADS);
+    // Bulk verification of a credential folder or zip, one worker per core
+    private final ForkJoinPool bulkPool = new ForkJoinPool();
+    private static final String BULK_ZIP_FILE = "bulk-verify.zip";
+    
+    // Trust material bundled with the web assets
+    private static final String TRUST_BUNDLE_ASSET = "public/trust/trust-bundle.json";
+    private static final String REVOCATION_ASSET = "public/trust/revocation.json";
+    private static final String REVOCATION_INDEX_FILE = "revocation.idx";
+    private static final String SAMPLE_BLE_VC_ASSET = "public/trust/test-vcs/mosip-farmer-vc.json";
+    
+    // BLE transfer
+    private static final int BLE_NONCE_LENGTH = 16;
+    private final SecureRandom nonceRandom = new SecureRandom();
+    private GattWalletClient walletClient;
+    private GattVerifierServer verifierServer;
+    private byte[] blePayloadHash;
+    
+    // Face match; null until the model is loaded, and stays null if it is not bundled
+    private volatile FaceMatcher faceMatcher;
+    // Log of the verified credential waiting for its live capture; the face outcome is stored on it
+    private VerificationLog pendingFaceLog;
+    private FaceMatcher.Holder pendingFaceHolder;
     
     // Permissions
     private static final int CAMERA_PERMISSION_REQUEST = 1001;
     private static final int BLUETOOTH_PERMISSION_REQUEST = 1002;
+    private static final int FACE_CAPTURE_REQUEST = 1003;
+    private static final int BULK_FOLDER_REQUEST = 1004;
+    private static final int BULK_ZIP_REQUEST = 1005;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,7 +171,10 @@ public class MainActivity extends BridgeActivity {
         
         initializeViews();
         setupClickListeners();
+        loadLogs();
         setupRecyclerView();
+        loadVerificationEngine();
+        loadFaceMatcher();
         updateUI();
         
         // Request permissions
@@ -95,6 +195,8 @@ public class MainActivity extends BridgeActivity {
         scanButton = findViewById(R.id.scan_button);
         bleActionButton = findViewById(R.id.ble_action_button);
         faceMatchToggle = findViewById(R.id.face_match_toggle);
+        gateModeToggle = findViewById(R.id.gate_mode_toggle);
+        bulkVerifyButton = findViewById(R.id.bulk_verify_button);
         syncButton = findViewById(R.id.sync_button);
         exportButton = findViewById(R.id.export_button);
         fabSettings = findViewById(R.id.fab_settings);
@@ -114,6 +216,37 @@ public class MainActivity extends BridgeActivity {
         
         // RecyclerView
         logsRecycler = findViewById(R.id.logs_recycler);
+        
+        // Camera
+        cameraPreview = findViewById(R.id.camera_preview);
+        scanDeduplicator = new ScanDeduplicator(getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
+            .getLong(PREF_SCAN_DEDUPE_WINDOW_MS, ScanDeduplicator.DEFAULT_WINDOW_MS));
+        qrScanner = new CameraQrScanner(this, cameraPreview, scanDeduplicator, new CameraQrScanner.Listener() {
+            @Override
+            public void onQrDecoded(String payload) {
+                if (isScanning) {
+                    if (!gateMode) {
+                        stopScanning();
+                    }
+                    verifyCredential(payload);
+                }
+            }
+            
+            @Override
+            public void onQrRepeat(ScanDeduplicator.Repeat repeat) {
+                // In gate mode a repeat is the same person still holding up their code
+                if (isScanning && !gateMode) {
+                    stopScanning();
+                    showRepeatedResult(repeat);
+                }
+            }
+            
+            @Override
+            public void onCameraError(String message) {
+                stopScanning();
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     private void setupClickListeners() {
@@ -132,6 +265,9 @@ public class MainActivity extends BridgeActivity {
         // Role Toggle
         roleToggleGroup.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
             if (isChecked) {
+                if (isBLEActive) {
+                    stopBLEOperation();
+                }
                 if (checkedId == R.id.wallet_role_button) {
                     currentRole = "wallet";
                 } else if (checkedId == R.id.verifier_role_button) {
@@ -165,6 +301,18 @@ public class MainActivity extends BridgeActivity {
             updateFaceMatchToggle();
         });
         
+        // Gate Mode Toggle
+        gateModeToggle.setOnClickListener(v -> {
+            if (isScanning) {
+                stopScanning();
+            }
+            gateMode = !gateMode;
+            updateGateModeToggle();
+        });
+        
+        // Bulk Verify Button
+        bulkVerifyButton.setOnClickListener(v -> pickBulkSource());
+        
         // Sync Button
         syncButton.setOnClickListener(v -> syncLogs());
         
@@ -176,9 +324,61 @@ public class MainActivity extends BridgeActivity {
     }
     
     private void setupRecyclerView() {
-        logsAdapter = new LogsAdapter(logs);
+        logsAdapter = new LogsAdapter(logStore, logPagingExecutor);
         logsRecycler.setLayoutManager(new LinearLayoutManager(this));
         logsRecycler.setAdapter(logsAdapter);
+        logsAdapter.loadInitial();
+    }
+    
+    private void loadLogs() {
+        logStore = new LogStore(this);
+        logWriter = new LogWriter(logStore);
+        logPagingExecutor.execute(() -> {
+            long count = logStore.count();
+            runOnUiThread(() -> {
+                totalLogCount = count;
+                updateLogsCount();
+            });
+        });
+    }
+    
+    private void loadVerificationEngine() {
+        verificationExecutor.execute(() -> {
+            try {
+                JSONObject bundle = readAssetJson(TRUST_BUNDLE_ASSET);
+                File indexFile = new File(getFilesDir(), REVOCATION_INDEX_FILE);
+                if (isRevocationIndexStale(indexFile)) {
+                    RevocationIndex.build(indexFile, VerificationEngine.revokedCredentials(
+                        bundle, readAssetJson(REVOCATION_ASSET)));
+                }
+                verificationEngine = new VerificationEngine(
+                    TrustStore.fromJson(bundle), RevocationIndex.open(indexFile), stageExecutor);
+            } catch (IOException | JSONException e) {
+                runOnUiThread(() -> Toast.makeText(this, "Trust bundle error", Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+    
+    private void loadFaceMatcher() {
+        verificationExecutor.execute(() -> {
+            try {
+                faceMatcher = FaceMatcher.open(this);
+            } catch (IOException | RuntimeException e) {
+                // No model in this build; credentials are still verified without the face check
+            }
+        });
+    }
+    
+    // The index is rebuilt from the bundled lists only when missing or older than the installed app
+    private boolean isRevocationIndexStale(File indexFile) {
+        if (!indexFile.exists()) {
+            return true;
+        }
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime > indexFile.lastModified();
+        } catch (PackageManager.NameNotFoundException e) {
+            return true;
+        }
     }
     
     private void updateUI() {
@@ -186,6 +386,7 @@ public class MainActivity extends BridgeActivity {
             qrScannerCard.setVisibility(View.VISIBLE);
             bleVerificationCard.setVisibility(View.GONE);
             scanButton.setText(isScanning ? "Stop Scan" : "Start Scan");
+            updateGateModeToggle();
         } else {
             qrScannerCard.setVisibility(View.GONE);
             bleVerificationCard.setVisibility(View.VISIBLE);
@@ -196,12 +397,13 @@ public class MainActivity extends BridgeActivity {
     }
     
     private void updateBLEUI() {
+        // The verifier hosts the GATT service; the wallet finds it and writes the credential
         if ("wallet".equals(currentRole)) {
-            bleActionButton.setText(isBLEActive ? "Stop Advertising" : "Start Advertising");
-            bleStatusText.setText(isBLEActive ? "Advertising VC..." : "Ready to advertise");
-        } else {
             bleActionButton.setText(isBLEActive ? "Stop Scanning" : "Start Scanning");
-            bleStatusText.setText(isBLEActive ? "Scanning for VCs..." : "Ready to scan");
+            bleStatusText.setText(isBLEActive ? "Scanning for verifier..." : "Ready to scan");
+        } else {
+            bleActionButton.setText(isBLEActive ? "Stop Advertising" : "Start Advertising");
+            bleStatusText.setText(isBLEActive ? "Advertising..." : "Ready to advertise");
         }
         
         updateFaceMatchToggle();
@@ -217,8 +419,12 @@ public class MainActivity extends BridgeActivity {
         }
     }
     
+    private void updateGateModeToggle() {
+        gateModeToggle.setText(gateMode ? "Gate Mode: ON" : "Gate Mode: OFF");
+    }
+    
     private void updateLogsCount() {
-        int count = logs.size();
+        long count = totalLogCount;
         if (count == 0) {
             logsCount.setText("No logs yet");
         } else {
@@ -235,71 +441,338 @@ public class MainActivity extends BridgeActivity {
         }
         
         isScanning = true;
-        statusText.setText("Scanning QR code...");
+        statusText.setText(gateMode ? "Gate mode: scanning continuously..." : "Scanning QR code...");
         scanButton.setText("Stop Scan");
-        
-        // TODO: Implement actual QR scanning
-        simulateQRScan();
+        qrScanner.start(gateMode);
     }
     
     private void stopScanning() {
+        qrScanner.stop();
         isScanning = false;
         statusText.setText("Ready to verify");
         scanButton.setText("Start Scan");
     }
     
     private void startBLEOperation() {
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH) 
-                != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this, 
-                new String[]{Manifest.permission.BLUETOOTH}, BLUETOOTH_PERMISSION_REQUEST);
+        String[] missing = missingBlePermissions();
+        if (missing.length > 0) {
+            ActivityCompat.requestPermissions(this, missing, BLUETOOTH_PERMISSION_REQUEST);
             return;
         }
         
         isBLEActive = true;
         bleStatusIcon.setImageResource(R.drawable.ic_bluetooth_connected);
+        updateBLEUI();
         
         if ("wallet".equals(currentRole)) {
-            bleStatusText.setText("Advertising VC...");
-            bleActionButton.setText("Stop Advertising");
+            String shared = readAsset(SAMPLE_BLE_VC_ASSET);
+            byte[] packet = encodeBlePacket(shared);
+            if (packet == null) {
+                stopBLEOperation();
+                showVerificationResult(false, "Invalid credential",
+                    HashingService.hashPayload(shared != null ? shared : ""));
+                return;
+            }
+            blePayloadHash = HashingService.hashPayload(shared);
+            walletClient = new GattWalletClient(this, walletListener);
+            walletClient.start(packet);
         } else {
-            bleStatusText.setText("Scanning for VCs...");
-            bleActionButton.setText("Stop Scanning");
+            verifierServer = new GattVerifierServer(this, BleSessionManager.DEFAULT_MAX_SESSIONS, verifierListener);
+            verifierServer.start();
         }
-        
-        // TODO: Implement actual BLE operations
-        simulateBLEOperation();
     }
     
     private void stopBLEOperation() {
+        if (walletClient != null) {
+            walletClient.stop();
+            walletClient = null;
+        }
+        if (verifierServer != null) {
+            verifierServer.stop();
+            verifierServer = null;
+        }
         isBLEActive = false;
         bleStatusIcon.setImageResource(R.drawable.ic_bluetooth_disconnected);
         bleStatusText.setText("Disconnected");
-        bleActionButton.setText("wallet".equals(currentRole) ? "Start Advertising" : "Start Scanning");
+        bleActionButton.setText("wallet".equals(currentRole) ? "Start Scanning" : "Start Advertising");
     }
     
-    private void simulateQRScan() {
-        // Simulate QR scan result after 2 seconds
-        new android.os.Handler().postDelayed(() -> {
-            if (isScanning) {
-                stopScanning();
-                showVerificationResult(true, "QR Code verified successfully!");
+    private final GattWalletClient.Listener walletListener = new GattWalletClient.Listener() {
+        @Override
+        public void onStatus(String status) {
+            bleStatusText.setText(status);
+        }
+        
+        @Override
+        public void onSent(TransferStats stats) {
+            stopBLEOperation();
+            bleStatusText.setText("Sent " + stats);
+            showVerificationResult(true, "BLE credential shared (" + stats.payloadBytes + " bytes)", blePayloadHash);
+        }
+        
+        @Override
+        public void onFailed(String message) {
+            stopBLEOperation();
+            bleStatusText.setText(message);
+        }
+    };
+    
+    // Keeps accepting wallets until stopped; each payload is verified on the shared pool
+    private final GattVerifierServer.Listener verifierListener = new GattVerifierServer.Listener() {
+        @Override
+        public void onStatus(String status) {
+            bleStatusText.setText(status);
+        }
+        
+        @Override
+        public void onReceived(String sessionId, byte[] payload, TransferStats stats) {
+            GattVerifierServer server = verifierServer;
+            receiveBlePacket(payload, () -> {
+                if (server != null) {
+                    server.onVerified();
+                }
+            });
+        }
+        
+        @Override
+        public void onSessionFailed(String sessionId, String message) {
+            Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+        }
+        
+        @Override
+        public void onFailed(String message) {
+            stopBLEOperation();
+            bleStatusText.setText(message);
+        }
+    };
+    
+    // Runtime permissions the BLE roles still need; scanning needs location before API 31
+    private String[] missingBlePermissions() {
+        String[] required = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+            ? new String[]{Manifest.permission.BLUETOOTH_SCAN, Manifest.permission.BLUETOOTH_CONNECT,
+                Manifest.permission.BLUETOOTH_ADVERTISE}
+            : new String[]{Manifest.permission.ACCESS_FINE_LOCATION};
+        List<String> missing = new ArrayList<>();
+        for (String permission : required) {
+            if (ContextCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
+                missing.add(permission);
             }
-        }, 2000);
+        }
+        return missing.toArray(new String[0]);
     }
     
-    private void simulateBLEOperation() {
-        // Simulate BLE operation result after 3 seconds
-        new android.os.Handler().postDelayed(() -> {
-            if (isBLEActive) {
-                stopBLEOperation();
-                showVerificationResult(true, "BLE verification successful!");
+    // Wallet side: the credential as a VcCodec packet, or null if it is not valid JSON
+    private byte[] encodeBlePacket(String credential) {
+        if (credential == null) {
+            return null;
+        }
+        try {
+            byte[] nonce = new byte[BLE_NONCE_LENGTH];
+            nonceRandom.nextBytes(nonce);
+            return VcCodec.encode(new JSONObject(credential), nonce, System.currentTimeMillis());
+        } catch (JSONException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    // Verifier side: decodes the packet and verifies the credential it carries
+    private void receiveBlePacket(byte[] packet, Runnable onVerified) {
+        VcCodec.Packet received;
+        try {
+            received = VcCodec.decode(packet);
+        } catch (IllegalArgumentException e) {
+            showVerificationResult(false, "Invalid BLE packet", HashingService.hashPayload(""));
+            onVerified.run();
+            return;
+        }
+        verifyCredential(received.credential.toString(), onVerified);
+    }
+    
+    // Runs the native engine off the UI thread and renders the outcome
+    private void verifyCredential(String payload) {
+        verifyCredential(payload, null);
+    }
+    
+    // onVerified runs on the UI thread after the result is shown
+    private void verifyCredential(String payload, Runnable onVerified) {
+        verificationExecutor.execute(() -> {
+            VerificationResult result;
+            FaceMatcher.Holder holder = null;
+            if (payload == null) {
+                result = VerificationResult.failure("Invalid QR code")
+                    .withPayloadHash(HashingService.hashPayload(""));
+            } else if (verificationEngine == null) {
+                result = VerificationResult.failure("Trust bundle not loaded")
+                    .withPayloadHash(HashingService.hashPayload(payload));
+            } else {
+                holder = faceMatchEnabled ? FaceMatcher.findHolder(payload) : null;
+                Future<?> facePreparation = prepareFace(holder);
+                result = verificationEngine.verify(payload);
+                if (!result.isSuccess() && facePreparation != null) {
+                    facePreparation.cancel(true);
+                }
             }
-        }, 3000);
+            scanDeduplicator.remember(result.getPayloadHash(), result);
+            FaceMatcher.Holder faceHolder = result.isSuccess() ? holder : null;
+            runOnUiThread(() -> {
+                VerificationLog log = showVerificationResult(
+                    result.isSuccess(), result.getMessage(), result.getPayloadHash());
+                if (onVerified != null) {
+                    onVerified.run();
+                }
+                if (faceHolder != null && log != null) {
+                    requestFaceCapture(log, faceHolder);
+                }
+            });
+        });
+    }
+    
+    // Embeds the credential photo while the credential is verified; null if no capture will follow
+    private Future<?> prepareFace(FaceMatcher.Holder holder) {
+        FaceMatcher matcher = faceMatcher;
+        if (holder == null || matcher == null || (gateMode && isScanning)) {
+            return null;
+        }
+        return stageExecutor.submit(() -> matcher.prepare(holder));
     }
     
-    private void showVerificationResult(boolean success, String message) {
+    // Asks for a picture of the holder to compare with the credential photo
+    private void requestFaceCapture(VerificationLog log, FaceMatcher.Holder holder) {
+        if (gateMode && isScanning) {
+            // Nobody is there to take the picture in gate mode
+            return;
+        }
+        if (faceMatcher == null) {
+            Toast.makeText(this, "Face match unavailable", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (pendingFaceHolder != null) {
+            return;
+        }
+        Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+        if (intent.resolveActivity(getPackageManager()) == null) {
+            Toast.makeText(this, "No camera app for face match", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        pendingFaceLog = log;
+        pendingFaceHolder = holder;
+        startActivityForResult(intent, FACE_CAPTURE_REQUEST);
+    }
+    
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == BULK_FOLDER_REQUEST || requestCode == BULK_ZIP_REQUEST) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                verifyBulk(data.getData(), requestCode == BULK_FOLDER_REQUEST);
+            }
+            return;
+        }
+        if (requestCode != FACE_CAPTURE_REQUEST) {
+            return;
+        }
+        VerificationLog log = pendingFaceLog;
+        FaceMatcher.Holder holder = pendingFaceHolder;
+        pendingFaceLog = null;
+        pendingFaceHolder = null;
+        // The capture app returns a thumbnail, which is all the model needs
+        Bitmap live = resultCode == RESULT_OK && data != null && data.getExtras() != null
+            ? thumbnail(data.getExtras()) : null;
+        if (live == null || holder == null) {
+            return;
+        }
+        FaceMatcher matcher = faceMatcher;
+        verificationExecutor.execute(() -> {
+            FaceMatcher.Result result = matcher.match(holder, live);
+            String message = result.error != null ? "Face match failed: " + result.error
+                : String.format(Locale.US, "Face %s (%.2f, %d ms)",
+                    result.matched ? "matched" : "did not match", result.similarity, result.elapsedMillis);
+            runOnUiThread(() -> showFaceResult(log, result.matched, message));
+        });
+    }
+    
+    // Completes the credential's own log row rather than adding a second one for the same scan
+    private void showFaceResult(VerificationLog log, boolean matched, String message) {
+        if (isDestroyed()) {
+            return;
+        }
+        renderResult(matched, message);
+        String status = matched ? log.getStatus() : "failure";
+        String details = log.getMessage() + "; " + message;
+        ioExecutor.execute(() -> {
+            // The row was committed long before the capture finished; this only waits if the writer is stuck
+            logWriter.flush(LOG_FLUSH_TIMEOUT_MS);
+            if (log.getId() == 0) {
+                return;
+            }
+            if (logStore.updateOutcome(log.getId(), status, details)) {
+                runOnUiThread(() -> logsAdapter.refresh());
+            } else {
+                Log.d(TAG, "Log " + log.getId() + " already synced, face result not stored: " + message);
+            }
+        });
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static Bitmap thumbnail(Bundle extras) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            return extras.getParcelable("data", Bitmap.class);
+        }
+        return extras.getParcelable("data");
+    }
+    
+    private String readAsset(String path) {
+        try {
+            return VerificationEngine.readFully(getAssets().open(path));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private JSONObject readAssetJson(String path) throws IOException, JSONException {
+        return new JSONObject(VerificationEngine.readFully(getAssets().open(path)));
+    }
+    
+    // Returns the new log, or null if it was dropped
+    private VerificationLog showVerificationResult(boolean success, String message, byte[] payloadHash) {
+        renderResult(success, message);
+        
+        // Add to logs
+        VerificationLog log = new VerificationLog(
+            payloadHash,
+            success ? "success" : "failure",
+            message,
+            System.currentTimeMillis(),
+            false
+        );
+        if (!logWriter.enqueue(log)) {
+            // A callback that was already queued when the activity was destroyed
+            Log.d(TAG, "Activity destroyed, dropping log: " + message);
+            return null;
+        }
+        totalLogCount++;
+        logsAdapter.addLog(log);
+        updateLogsCount();
+        return log;
+    }
+    
+    // Same code again within the dedupe window: no re-verification and no new log
+    private void showRepeatedResult(ScanDeduplicator.Repeat repeat) {
+        if (repeat.result == null) {
+            Toast.makeText(this, "Already scanned, still verifying", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        renderResult(repeat.result.isSuccess(),
+            repeat.result.getMessage() + " (scanned " + repeat.count + " times)");
+    }
+    
+    private void renderResult(boolean success, String message) {
         resultCard.setVisibility(View.VISIBLE);
+        resultCard.removeCallbacks(hideResultCard);
+        if (gateMode && isScanning) {
+            // Transient overlay; the next person is already being scanned
+            resultCard.postDelayed(hideResultCard, GATE_RESULT_DISPLAY_MS);
+        }
         
         if (success) {
             resultIcon.setImageResource(R.drawable.ic_checkmark);
@@ -310,27 +783,223 @@ public class MainActivity extends BridgeActivity {
             resultText.setText(message);
             resultText.setTextColor(ContextCompat.getColor(this, R.color.verification_failure));
         }
-        
-        // Add to logs
-        VerificationLog log = new VerificationLog(
-            "hash_" + System.currentTimeMillis(),
-            success ? "success" : "failure",
-            System.currentTimeMillis(),
-            false
-        );
-        logs.add(0, log);
-        logsAdapter.notifyItemInserted(0);
-        updateLogsCount();
     }
     
     private void syncLogs() {
         Toast.makeText(this, "Syncing logs...", Toast.LENGTH_SHORT).show();
-        // TODO: Implement actual sync
+        ioExecutor.execute(() -> {
+            // Include results still waiting in the write-behind queue
+            logWriter.flush(LOG_FLUSH_TIMEOUT_MS);
+            LogSyncEngine.Result result;
+            try {
+                result = getLogSyncEngine().sync();
+            } catch (IOException e) {
+                result = null;
+            }
+            LogSyncEngine.Result outcome = result;
+            runOnUiThread(() -> onSyncFinished(outcome));
+        });
+    }
+    
+    private LogSyncEngine getLogSyncEngine() throws IOException {
+        if (logSyncEngine == null) {
+            final SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            logSyncEngine = new LogSyncEngine(logStore, new LogSyncEngine.Checkpoint() {
+                @Override
+                public long load() {
+                    return prefs.getLong(PREF_SYNC_CHECKPOINT, 0);
+                }
+                
+                @Override
+                public void save(long lastAcknowledgedId) {
+                    prefs.edit().putLong(PREF_SYNC_CHECKPOINT, lastAcknowledgedId).commit();
+                }
+            }, LogSyncEngine.httpTransport(prefs.getString(PREF_SYNC_ENDPOINT, DEFAULT_SYNC_ENDPOINT)));
+        }
+        return logSyncEngine;
+    }
+    
+    private void onSyncFinished(LogSyncEngine.Result result) {
+        if (result == null) {
+            Toast.makeText(this, "Invalid sync endpoint", Toast.LENGTH_LONG).show();
+            return;
+        }
+        logsAdapter.refresh();
+        if (result.complete) {
+            Toast.makeText(this, "Synced " + result.uploaded + " logs", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, result.error + " (" + result.uploaded + " logs synced)", Toast.LENGTH_LONG).show();
+        }
     }
     
     private void exportLogs() {
+        new AlertDialog.Builder(this)
+            .setTitle("Export logs")
+            .setItems(new String[]{"CSV", "JSON"}, (dialog, which) ->
+                exportLogs(which == 0 ? LogExporter.Format.CSV : LogExporter.Format.JSON))
+            .show();
+    }
+    
+    private void exportLogs(LogExporter.Format format) {
         Toast.makeText(this, "Exporting logs...", Toast.LENGTH_SHORT).show();
-        // TODO: Implement actual export
+        ioExecutor.execute(() -> {
+            logWriter.flush(LOG_FLUSH_TIMEOUT_MS);
+            File dir = new File(getCacheDir(), EXPORT_DIR);
+            // Only the latest export is kept; earlier ones were already shared
+            File[] previous = dir.listFiles();
+            if (previous != null) {
+                for (File file : previous) {
+                    file.delete();
+                }
+            }
+            dir.mkdirs();
+            File file = new File(dir, "inji-verify-logs-" + System.currentTimeMillis() + "." + format.extension);
+            try {
+                long rows;
+                OutputStream out = new FileOutputStream(file);
+                try {
+                    rows = new LogExporter(logStore).export(format, out);
+                } finally {
+                    out.close();
+                }
+                runOnUiThread(() -> shareExport(file, format, rows));
+            } catch (IOException e) {
+                file.delete();
+                runOnUiThread(() -> Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+    
+    private void shareExport(File file, LogExporter.Format format, long rows) {
+        Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".fileprovider", file);
+        Intent intent = new Intent(Intent.ACTION_SEND)
+            .setType(format.mimeType)
+            .putExtra(Intent.EXTRA_STREAM, uri)
+            .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        Toast.makeText(this, "Exported " + rows + " logs", Toast.LENGTH_SHORT).show();
+        startActivity(Intent.createChooser(intent, "Export logs"));
+    }
+    
+    private void pickBulkSource() {
+        new AlertDialog.Builder(this)
+            .setTitle("Verify credentials")
+            .setItems(new String[]{"Folder", "Zip file"}, (dialog, which) -> {
+                if (which == 0) {
+                    startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE), BULK_FOLDER_REQUEST);
+                } else {
+                    Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType("application/zip");
+                    startActivityForResult(intent, BULK_ZIP_REQUEST);
+                }
+            })
+            .show();
+    }
+    
+    // Verifies every .json credential in the picked folder or zip; each result is
+    // logged as soon as it is known
+    private void verifyBulk(Uri source, boolean folder) {
+        VerificationEngine engine = verificationEngine;
+        if (engine == null) {
+            Toast.makeText(this, "Trust bundle not loaded", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Toast.makeText(this, "Verifying credentials...", Toast.LENGTH_SHORT).show();
+        ioExecutor.execute(() -> {
+            BulkVerifier verifier = new BulkVerifier(engine, bulkPool);
+            BulkVerifier.Listener listener = BulkVerifier.logTo(logWriter);
+            BulkVerifier.Summary summary;
+            try {
+                if (folder) {
+                    summary = verifier.verify(listDocuments(source), listener);
+                } else {
+                    // ZipFile needs a file to open entries on several workers at once
+                    File file = new File(getCacheDir(), BULK_ZIP_FILE);
+                    copy(source, file);
+                    ZipFile zip = new ZipFile(file);
+                    try {
+                        summary = verifier.verify(BulkVerifier.entries(zip), listener);
+                    } finally {
+                        zip.close();
+                        file.delete();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // RuntimeException: e.g. bulkPool rejecting the batch after onDestroy
+                runOnUiThread(() -> Toast.makeText(this, "Bulk verification failed: " + e.getMessage(),
+                    Toast.LENGTH_LONG).show());
+                return;
+            }
+            logWriter.flush(LOG_FLUSH_TIMEOUT_MS);
+            BulkVerifier.Summary outcome = summary;
+            runOnUiThread(() -> {
+                totalLogCount += outcome.total;
+                updateLogsCount();
+                logsAdapter.refresh();
+                renderResult(outcome.verified == outcome.total, outcome.toString());
+            });
+        });
+    }
+    
+    // .json documents directly inside a picked folder
+    private List<BulkVerifier.Item> listDocuments(Uri tree) throws IOException {
+        Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(tree,
+            DocumentsContract.getTreeDocumentId(tree));
+        Cursor cursor = getContentResolver().query(children, new String[]{
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_DISPLAY_NAME},
+            null, null, null);
+        if (cursor == null) {
+            throw new IOException("Cannot list folder");
+        }
+        List<BulkVerifier.Item> items = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(1);
+                if (name == null || !name.endsWith(BulkVerifier.EXTENSION)) {
+                    continue;
+                }
+                Uri document = DocumentsContract.buildDocumentUriUsingTree(tree, cursor.getString(0));
+                items.add(new BulkVerifier.Item() {
+                    @Override
+                    public String name() {
+                        return name;
+                    }
+                    
+                    @Override
+                    public InputStream open() throws IOException {
+                        InputStream in = getContentResolver().openInputStream(document);
+                        if (in == null) {
+                            throw new IOException("Cannot open " + name);
+                        }
+                        return in;
+                    }
+                });
+            }
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+    
+    private void copy(Uri source, File target) throws IOException {
+        InputStream in = getContentResolver().openInputStream(source);
+        if (in == null) {
+            throw new IOException("Cannot open zip file");
+        }
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
     }
     
     private void openSettings() {
@@ -357,6 +1026,44 @@ public class MainActivity extends BridgeActivity {
         }
     }
     
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (isScanning) {
+            stopScanning();
+        }
+        // Commit queued logs now, before the process may be killed in the background
+        logWriter.requestFlush();
+    }
+    
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (isBLEActive) {
+            stopBLEOperation();
+        }
+        verificationExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+        bulkPool.shutdownNow();
+        ioExecutor.shutdownNow();
+        logPagingExecutor.shutdownNow();
+        logWriter.close(LOG_FLUSH_TIMEOUT_MS);
+        // A page read, sync or export may still be using the store; if one outlives
+        // the wait the store is left for the process to clean up rather than closed under it
+        if (awaitTermination(logPagingExecutor) && awaitTermination(ioExecutor)) {
+            logStore.close();
+        }
+    }
+    
+    private static boolean awaitTermination(ExecutorService executor) {
+        try {
+            return executor.awaitTermination(STORE_CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, 
                                          @NonNull int[] grantResults) {
@@ -371,7 +1078,7 @@ public class MainActivity extends BridgeActivity {
         }
         
         if (requestCode == BLUETOOTH_PERMISSION_REQUEST) {
-            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+            if (grantResults.length > 0 && missingBlePermissions().length == 0) {
                 Toast.makeText(this, "Bluetooth permission granted", Toast.LENGTH_SHORT).show();
             } else {
                 Toast.makeText(this, "Bluetooth permission denied", Toast.LENGTH_SHORT).show();
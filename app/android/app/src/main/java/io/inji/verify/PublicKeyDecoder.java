@@ -0,0 +1,78 @@
+package io.inji.verify;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+
+// Turns the publicKey strings of a trust bundle into java.security keys.
+// Accepted forms: PEM, base64/base64url DER SubjectPublicKeyInfo, raw 32-byte
+// Ed25519 keys (base64) and multibase base58btc Ed25519 keys ("z6Mk...").
+final class PublicKeyDecoder {
+
+    // DER prefix of an Ed25519 SubjectPublicKeyInfo, followed by the 32 raw key bytes
+    private static final byte[] ED25519_SPKI_PREFIX = {
+        0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00
+    };
+    // Multicodec prefix for ed25519-pub
+    private static final int ED25519_MULTICODEC_0 = 0xed;
+    private static final int ED25519_MULTICODEC_1 = 0x01;
+
+    private PublicKeyDecoder() {
+    }
+
+    static PublicKey decode(String type, String encoded) throws GeneralSecurityException {
+        if (encoded == null || encoded.isEmpty()) {
+            throw new GeneralSecurityException("Empty public key");
+        }
+        String algorithm = keyAlgorithm(type);
+        byte[] der;
+        try {
+            der = toDer(algorithm, encoded.trim());
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Malformed public key: " + e.getMessage(), e);
+        }
+        return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(der));
+    }
+
+    static String keyAlgorithm(String type) throws GeneralSecurityException {
+        if ("RSA".equals(type)) {
+            return "RSA";
+        } else if ("Ed25519".equals(type)) {
+            return "Ed25519";
+        } else if ("ECDSA".equals(type) || "EC".equals(type)) {
+            return "EC";
+        }
+        throw new GeneralSecurityException("Unsupported key type: " + type);
+    }
+
+    private static byte[] toDer(String algorithm, String encoded) {
+        if (encoded.startsWith("-----BEGIN")) {
+            String body = encoded
+                .replaceAll("-----BEGIN [A-Z ]+-----", "")
+                .replaceAll("-----END [A-Z ]+-----", "");
+            return Encoding.decodeBase64(body);
+        }
+        if ("Ed25519".equals(algorithm) && encoded.startsWith("z")) {
+            byte[] multicodec = Encoding.decodeBase58(encoded.substring(1));
+            if (multicodec.length == 34
+                    && (multicodec[0] & 0xff) == ED25519_MULTICODEC_0
+                    && (multicodec[1] & 0xff) == ED25519_MULTICODEC_1) {
+                return wrapEd25519(multicodec, 2);
+            }
+            throw new IllegalArgumentException("not an ed25519-pub multikey");
+        }
+        byte[] bytes = Encoding.decodeBase64(encoded);
+        if ("Ed25519".equals(algorithm) && bytes.length == 32) {
+            return wrapEd25519(bytes, 0);
+        }
+        return bytes;
+    }
+
+    private static byte[] wrapEd25519(byte[] raw, int offset) {
+        byte[] der = new byte[ED25519_SPKI_PREFIX.length + 32];
+        System.arraycopy(ED25519_SPKI_PREFIX, 0, der, 0, ED25519_SPKI_PREFIX.length);
+        System.arraycopy(raw, offset, der, ED25519_SPKI_PREFIX.length, 32);
+        return der;
+    }
+}
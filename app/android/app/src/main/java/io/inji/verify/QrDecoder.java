@@ -0,0 +1,176 @@
+package io.inji.verify;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// QR decoding from the luminance plane of an NV21 preview frame. Each frame is
+// first tried on a region of interest, the last place a code was found or else a
+// centre square, at half resolution only when the region is larger than the
+// decoder needs. Full-frame, full-resolution decoding is a fallback, run on the
+// first miss after a hit (a new code has likely come into view) and then on every
+// FULL_FRAME_INTERVAL-th miss; its hits become the next region. Not thread-safe:
+// one per worker.
+final class QrDecoder {
+
+    // Regions whose shorter side is at most this are decoded as they are; ZXing's
+    // detector needs no more, so only larger ones are halved
+    static final int MAX_UNSCALED_SIDE = 640;
+    // Full-frame fallback on the first and then every Nth consecutive miss
+    static final int FULL_FRAME_INTERVAL = 3;
+    // Consecutive misses after which a learned region is forgotten
+    static final int REGION_MISS_LIMIT = 30;
+    // Margin around the finder-pattern centres, relative to their spread; covers
+    // the outer modules and some movement between frames
+    private static final float REGION_MARGIN = 0.6f;
+    private static final int MIN_REGION_SIDE = 64;
+
+    private final QRCodeReader reader = new QRCodeReader();
+    private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+
+    // Reused half-resolution copy of the region
+    private byte[] scaled = new byte[0];
+
+    // Learned region in frame coordinates, and the scale it decoded at
+    private boolean hasRegion;
+    private int regionLeft;
+    private int regionTop;
+    private int regionWidth;
+    private int regionHeight;
+    private int regionScale;
+    private int misses;
+
+    QrDecoder() {
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+    }
+
+    // Returns the QR text, or null if the frame holds no readable code
+    String decode(byte[] frame, int width, int height) {
+        int left;
+        int top;
+        int regionW;
+        int regionH;
+        int scale;
+        if (hasRegion) {
+            left = regionLeft;
+            top = regionTop;
+            regionW = regionWidth;
+            regionH = regionHeight;
+            scale = regionScale;
+        } else {
+            int side = Math.min(width, height);
+            left = (width - side) / 2;
+            top = (height - side) / 2;
+            regionW = side;
+            regionH = side;
+            scale = side > MAX_UNSCALED_SIDE ? 2 : 1;
+        }
+
+        Result result = decodeRegion(frame, width, height, left, top, regionW, regionH, scale);
+        if (result == null) {
+            misses++;
+            if (hasRegion && misses >= REGION_MISS_LIMIT) {
+                hasRegion = false;
+            }
+            if (misses != 1 && misses % FULL_FRAME_INTERVAL != 0) {
+                return null;
+            }
+            left = 0;
+            top = 0;
+            scale = 1;
+            result = decode(new PlanarYUVLuminanceSource(frame, width, height, 0, 0, width, height, false));
+            if (result == null) {
+                return null;
+            }
+        }
+        misses = 0;
+        learnRegion(result.getResultPoints(), left, top, scale, width, height);
+        return result.getText();
+    }
+
+    boolean hasRegion() {
+        return hasRegion;
+    }
+
+    private Result decodeRegion(byte[] frame, int width, int height,
+                                int left, int top, int regionW, int regionH, int scale) {
+        if (scale == 1) {
+            return decode(new PlanarYUVLuminanceSource(frame, width, height, left, top, regionW, regionH, false));
+        }
+        int scaledW = regionW / 2;
+        int scaledH = regionH / 2;
+        if (scaled.length < scaledW * scaledH) {
+            scaled = new byte[scaledW * scaledH];
+        }
+        // 2x2 box filter; keeps module edges better than dropping pixels
+        for (int y = 0; y < scaledH; y++) {
+            int row = (top + 2 * y) * width + left;
+            int out = y * scaledW;
+            for (int x = 0; x < scaledW; x++) {
+                int i = row + 2 * x;
+                int sum = (frame[i] & 0xff) + (frame[i + 1] & 0xff)
+                    + (frame[i + width] & 0xff) + (frame[i + width + 1] & 0xff);
+                scaled[out + x] = (byte) (sum >> 2);
+            }
+        }
+        return decode(new PlanarYUVLuminanceSource(scaled, scaledW, scaledH, 0, 0, scaledW, scaledH, false));
+    }
+
+    private Result decode(LuminanceSource source) {
+        try {
+            return reader.decode(new BinaryBitmap(new HybridBinarizer(source)), hints);
+        } catch (NotFoundException | ChecksumException | FormatException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    // Points are in the decoded image's coordinates: scaled, relative to the region
+    private void learnRegion(ResultPoint[] points, int offsetX, int offsetY, int scale, int width, int height) {
+        if (points == null || points.length < 3) {
+            return;
+        }
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            float x = offsetX + point.getX() * scale;
+            float y = offsetY + point.getY() * scale;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        float margin = Math.max(maxX - minX, maxY - minY) * REGION_MARGIN;
+        int left = Math.max(0, (int) (minX - margin));
+        int top = Math.max(0, (int) (minY - margin));
+        int right = Math.min(width, (int) Math.ceil(maxX + margin));
+        int bottom = Math.min(height, (int) Math.ceil(maxY + margin));
+        if (right - left < MIN_REGION_SIDE || bottom - top < MIN_REGION_SIDE) {
+            return;
+        }
+        regionLeft = left;
+        regionTop = top;
+        regionWidth = right - left;
+        regionHeight = bottom - top;
+        // Keep the resolution that worked; a code only found at full resolution is too dense to halve
+        regionScale = scale == 2 && Math.min(regionWidth, regionHeight) > MAX_UNSCALED_SIDE ? 2 : 1;
+        hasRegion = true;
+    }
+}
@@ -0,0 +1,81 @@
+package io.inji.verify;
+
+// Decode worker for camera frames. Takes the newest frame from a FrameRing,
+// decodes it off the UI thread and stops at the first readable QR code, or in
+// continuous (gate) mode keeps decoding until stopped. Codes already seen within
+// the ScanDeduplicator window are reported as repeats.
+public class QrScanPipeline {
+
+    public interface Listener {
+        // Called on the decode thread; once in total unless continuous
+        void onDecoded(String payload);
+
+        void onRepeat(ScanDeduplicator.Repeat repeat);
+    }
+
+    private final FrameRing ring;
+    private final QrDecoder decoder;
+    private final ScanDeduplicator deduplicator;
+    private final Listener listener;
+    private final boolean continuous;
+    private final Thread worker;
+    private volatile boolean running;
+
+    QrScanPipeline(FrameRing ring, QrDecoder decoder, ScanDeduplicator deduplicator,
+                   boolean continuous, Listener listener) {
+        this.ring = ring;
+        this.decoder = decoder;
+        this.deduplicator = deduplicator;
+        this.listener = listener;
+        this.continuous = continuous;
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                decodeLoop();
+            }
+        }, "qr-decoder");
+        worker.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        worker.start();
+    }
+
+    // Safe from any thread; frames still in flight are discarded
+    public void stop() {
+        running = false;
+        ring.close();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void decodeLoop() {
+        try {
+            while (running) {
+                byte[] frame = ring.take();
+                if (frame == null) {
+                    return;
+                }
+                String payload = decoder.decode(frame, ring.width, ring.height);
+                ring.release(frame);
+                if (payload != null && running) {
+                    if (!continuous) {
+                        stop();
+                    }
+                    ScanDeduplicator.Repeat repeat =
+                        deduplicator.record(HashingService.hashPayload(payload), System.currentTimeMillis());
+                    if (repeat == null) {
+                        listener.onDecoded(payload);
+                    } else {
+                        listener.onRepeat(repeat);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
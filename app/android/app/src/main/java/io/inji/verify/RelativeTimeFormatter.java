@@ -0,0 +1,56 @@
+package io.inji.verify;
+
+// "Just now" / "N minutes ago" / "N hours ago" / "N days ago" labels for the log
+// list. Every label for the first year is built once and shared, so formatting
+// a row returns a cached String instead of concatenating a new one.
+final class RelativeTimeFormatter {
+
+    static final long MINUTE_MS = 60000;
+    static final long HOUR_MS = 3600000;
+    static final long DAY_MS = 86400000;
+
+    private static final String JUST_NOW = "Just now";
+    private static final String[] MINUTES = labels(60, " minutes ago");
+    private static final String[] HOURS = labels(24, " hours ago");
+    private static final String[] DAYS = labels(366, " days ago");
+
+    private RelativeTimeFormatter() {
+    }
+
+    static String format(long timestamp, long now) {
+        long diff = now - timestamp;
+        if (diff < MINUTE_MS) {
+            return JUST_NOW;
+        } else if (diff < HOUR_MS) {
+            return MINUTES[(int) (diff / MINUTE_MS)];
+        } else if (diff < DAY_MS) {
+            return HOURS[(int) (diff / HOUR_MS)];
+        }
+        long days = diff / DAY_MS;
+        return days < DAYS.length ? DAYS[(int) days] : days + " days ago";
+    }
+
+    // First instant after `now` at which format(timestamp, ...) returns a different label
+    static long nextChange(long timestamp, long now) {
+        long diff = now - timestamp;
+        long unit;
+        if (diff < MINUTE_MS) {
+            return timestamp + MINUTE_MS;
+        } else if (diff < HOUR_MS) {
+            unit = MINUTE_MS;
+        } else if (diff < DAY_MS) {
+            unit = HOUR_MS;
+        } else {
+            unit = DAY_MS;
+        }
+        return timestamp + (diff / unit + 1) * unit;
+    }
+
+    private static String[] labels(int count, String suffix) {
+        String[] labels = new String[count];
+        for (int i = 1; i < count; i++) {
+            labels[i] = i + suffix;
+        }
+        return labels;
+    }
+}
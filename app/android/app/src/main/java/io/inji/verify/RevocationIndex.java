@@ -0,0 +1,169 @@
+package io.inji.verify;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Revoked credential ids as a memory-mapped file: a Bloom filter in front of a
+// sorted id table. Negative lookups (nearly all of them) cost a few bit probes;
+// only Bloom hits fall through to a binary search. Nothing is loaded on the heap,
+// so 10M+ entry lists stay cheap on low-memory devices.
+//
+// Layout (big-endian):
+//   int magic, int count, int hashCount, int reserved, long bloomBits
+//   byte[bloomBits / 8]   Bloom filter
+//   int[count + 1]        offsets of each id into the data section
+//   byte[]                UTF-8 ids, sorted by unsigned byte order
+public class RevocationIndex {
+
+    private static final int MAGIC = 0x49525631; // "IRV1"
+    private static final int HEADER_SIZE = 24;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private static final Comparator<byte[]> UNSIGNED_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (a[i] & 0xff) - (b[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final BloomFilter bloomFilter;
+    private final int offsetsStart;
+    private final int dataStart;
+
+    private RevocationIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a revocation index");
+        }
+        this.buffer = buffer;
+        this.count = buffer.getInt(4);
+        int hashCount = buffer.getInt(8);
+        long bloomBits = buffer.getLong(16);
+        this.bloomFilter = new BloomFilter(buffer, HEADER_SIZE, bloomBits, hashCount);
+        this.offsetsStart = HEADER_SIZE + (int) (bloomBits / 8);
+        this.dataStart = offsetsStart + (count + 1) * 4;
+    }
+
+    public static RevocationIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed
+            return new RevocationIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    // Writes a new index next to the target and swaps it in, so readers of the
+    // previous file are never exposed to a partial write.
+    public static void build(File target, Collection<String> credentialIds) throws IOException {
+        List<byte[]> keys = new ArrayList<>(credentialIds.size());
+        for (String id : credentialIds) {
+            keys.add(id.getBytes(StandardCharsets.UTF_8));
+        }
+        Collections.sort(keys, UNSIGNED_ORDER);
+        List<byte[]> unique = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            if (unique.isEmpty() || UNSIGNED_ORDER.compare(unique.get(unique.size() - 1), key) != 0) {
+                unique.add(key);
+            }
+        }
+
+        long bloomBits = BloomFilter.optimalBitCount(unique.size(), FALSE_POSITIVE_RATE);
+        int hashCount = BloomFilter.optimalHashCount(unique.size(), bloomBits);
+        byte[] bloomBytes = new byte[(int) (bloomBits / 8)];
+        BloomFilter bloomFilter = new BloomFilter(ByteBuffer.wrap(bloomBytes), 0, bloomBits, hashCount);
+        for (byte[] key : unique) {
+            bloomFilter.put(key);
+        }
+
+        File temp = new File(target.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(unique.size());
+            out.writeInt(hashCount);
+            out.writeInt(0);
+            out.writeLong(bloomBits);
+            out.write(bloomBytes);
+            int offset = 0;
+            for (byte[] key : unique) {
+                out.writeInt(offset);
+                offset += key.length;
+            }
+            out.writeInt(offset);
+            for (byte[] key : unique) {
+                out.write(key);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Could not replace " + target);
+        }
+    }
+
+    public boolean isRevoked(String credentialId) {
+        if (count == 0) {
+            return false;
+        }
+        byte[] key = credentialId.getBytes(StandardCharsets.UTF_8);
+        return bloomFilter.mightContain(key) && binarySearch(key);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private boolean binarySearch(byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int compareAt(int index, byte[] key) {
+        int start = dataStart + buffer.getInt(offsetsStart + index * 4);
+        int end = dataStart + buffer.getInt(offsetsStart + (index + 1) * 4);
+        int length = Math.min(end - start, key.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (end - start) - key.length;
+    }
+}
@@ -0,0 +1,87 @@
+package io.inji.verify;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Coalesces repeat scans of the same payload. A code seen again within the window
+// of its last sighting is reported as a repeat with a running count and the result
+// of its first verification, instead of being verified and logged again. Keyed
+// by the payload digest (HashingService.hashPayload).
+public class ScanDeduplicator {
+
+    public static final long DEFAULT_WINDOW_MS = 3000;
+    private static final int MAX_ENTRIES = 64;
+
+    // Outcome of ScanDeduplicator.record for a repeat sighting
+    public static class Repeat {
+        // Sightings within the window, including the first
+        public final int count;
+        // Result of the first sighting; null while it is still being verified
+        public final VerificationResult result;
+
+        Repeat(int count, VerificationResult result) {
+            this.count = count;
+            this.result = result;
+        }
+    }
+
+    private final long windowMillis;
+    // Ordered by lastSeen: record() re-inserts an entry it updates, and nothing else
+    // reorders, so the head is always the entry seen least recently
+    private final LinkedHashMap<ByteBuffer, Entry> entries =
+        new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    public ScanDeduplicator(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    // Null for a payload not seen within the window, which should be verified
+    public synchronized Repeat record(byte[] digest, long now) {
+        evictExpired(now);
+        ByteBuffer key = ByteBuffer.wrap(digest);
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            entries.put(key, new Entry(now));
+            return null;
+        }
+        entry.lastSeen = now;
+        entry.count++;
+        entries.put(key, entry);
+        return new Repeat(entry.count, entry.result);
+    }
+
+    // Result of verifying a payload passed by record(); ignored once the entry expired
+    public synchronized void remember(byte[] digest, VerificationResult result) {
+        Entry entry = entries.get(ByteBuffer.wrap(digest));
+        if (entry != null) {
+            entry.result = result;
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().lastSeen + windowMillis > now) {
+                return;
+            }
+            it.remove();
+        }
+    }
+
+    private static class Entry {
+        long lastSeen;
+        int count = 1;
+        VerificationResult result;
+
+        Entry(long lastSeen) {
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.inji.verify;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Signature objects already initialized for verification, pooled per (JCA
+// algorithm, issuer key) so a proof check skips the provider lookup of
+// Signature.getInstance and the key setup of initVerify. A Signature goes back to
+// the state of its last initVerify after every verify(), so one that finished a
+// check can serve the next check against the same key.
+//
+// Each (algorithm, key) has a few slots striped by thread id: acquire empties the
+// caller's slot, and release refills it if it is still empty, so verifiers on
+// different threads rarely meet and never block. Unlike thread-locals, nothing is
+// left behind on the verification, stage and bulk pool threads.
+//
+// A pool belongs to one TrustStore: reloading the trust bundle builds a new store,
+// which drops every Signature initialized with the old keys.
+public class SignaturePool {
+
+    // Power of two at least the number of cores, so concurrent verifiers get slots of their own
+    static final int STRIPES = Integer.highestOneBit(
+        Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+    private final ConcurrentHashMap<Key, Slots> slots = new ConcurrentHashMap<>();
+
+    // Slots for algorithm with publicKey; keys are matched by identity, as a
+    // TrustStore decodes each key once
+    public Slots slots(String algorithm, PublicKey publicKey) {
+        Key key = new Key(algorithm, publicKey);
+        Slots existing = slots.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        Slots created = new Slots(algorithm, publicKey);
+        existing = slots.putIfAbsent(key, created);
+        return existing != null ? existing : created;
+    }
+
+    public void invalidateAll() {
+        slots.clear();
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public static final class Slots {
+        private final String algorithm;
+        private final PublicKey publicKey;
+        private final AtomicReferenceArray<Signature> stripes = new AtomicReferenceArray<>(STRIPES);
+
+        Slots(String algorithm, PublicKey publicKey) {
+            this.algorithm = algorithm;
+            this.publicKey = publicKey;
+        }
+
+        // A Signature ready for update(); a new one if the caller's slot is empty
+        public Signature acquire() throws GeneralSecurityException {
+            Signature signature = stripes.getAndSet(stripe(), null);
+            if (signature == null) {
+                signature = Signature.getInstance(algorithm);
+                signature.initVerify(publicKey);
+            }
+            return signature;
+        }
+
+        // Only for a Signature whose verify() returned normally; one that threw or
+        // was abandoned mid-update may hold a partial input and is dropped instead
+        public void release(Signature signature) {
+            stripes.compareAndSet(stripe(), null, signature);
+        }
+
+        private static int stripe() {
+            return (int) Thread.currentThread().getId() & (STRIPES - 1);
+        }
+    }
+
+    private static final class Key {
+        final String algorithm;
+        final PublicKey publicKey;
+
+        Key(String algorithm, PublicKey publicKey) {
+            this.algorithm = algorithm;
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return publicKey == other.publicKey && algorithm.equals(other.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(publicKey) + algorithm.hashCode();
+        }
+    }
+}
@@ -0,0 +1,811 @@
+package io.inji.verify;
+
+import org.json.JSONException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Canonical JSON, in the same form as JsonCanonicalizer (keys sorted by UTF-16
+// code unit, no insignificant whitespace, minimal string escaping), hashed
+// straight from a UTF-8 payload without building a JSONObject tree or a String
+// per value. Numbers are written as ECMAScript does, per RFC 8785.
+//
+// One strict pass over the bytes records where every value starts and ends on an
+// int tape, and decodes object keys into a shared char arena; the members of an
+// object have to be seen before any can be written in sorted order. Writing then
+// walks the tape, copying or re-escaping string and number bytes from the payload
+// into a fixed buffer that is fed to the digest. Nothing is resolved or fetched:
+// @context values are hashed as the JSON they are.
+//
+// Instances reuse their buffers and are not thread-safe; forCurrentThread() hands
+// out one per thread.
+final class StreamingCanonicalizer {
+
+    static final int MAX_DEPTH = 64;
+
+    // Tape records: type, then two type-specific ints, then the index after the subtree
+    private static final int RECORD = 4;
+    private static final int STRING = 1; // start, end of the raw bytes inside the quotes
+    private static final int NUMBER = 2; // start, end of the token
+    private static final int LITERAL = 3; // start, end of true / false / null
+    private static final int OBJECT = 4; // member count, unused
+    private static final int ARRAY = 5; // element count, unused
+    private static final int KEY = 6; // offset, length in the key arena; the value record follows
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<StreamingCanonicalizer> INSTANCE = new ThreadLocal<StreamingCanonicalizer>() {
+        @Override
+        protected StreamingCanonicalizer initialValue() {
+            return new StreamingCanonicalizer();
+        }
+    };
+
+    private final MessageDigest digest;
+    private final byte[] out = new byte[4096];
+    private int outLength;
+
+    private byte[] in;
+    private int pos;
+    private int[] tape = new int[64 * RECORD];
+    private int tapeLength;
+    private char[] keys = new char[256];
+    private int keysLength;
+    // (key record, value record) pairs of the objects being written; each nested
+    // object sorts its members above those of the objects enclosing it
+    private int[] members = new int[64];
+
+    private StreamingCanonicalizer() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static StreamingCanonicalizer forCurrentThread() {
+        return INSTANCE.get();
+    }
+
+    // Reads a UTF-8 JSON object; returns its record. Earlier records are discarded.
+    int parse(byte[] utf8) throws JSONException {
+        in = utf8;
+        pos = 0;
+        tapeLength = 0;
+        keysLength = 0;
+        skipWhitespace();
+        if (pos >= in.length || in[pos] != '{') {
+            throw error("Expected an object");
+        }
+        int root = readValue(0);
+        skipWhitespace();
+        if (pos != in.length) {
+            throw error("Unexpected data after the object");
+        }
+        return root;
+    }
+
+    // The value of the member named key of an object record, or -1
+    int member(int object, String key) {
+        if (tape[object] != OBJECT) {
+            return -1;
+        }
+        int record = object + RECORD;
+        int end = tape[object + 3];
+        while (record < end) {
+            if (keyEquals(record, key)) {
+                return record + RECORD;
+            }
+            record = tape[record + RECORD + 3];
+        }
+        return -1;
+    }
+
+    boolean isObject(int record) {
+        return record >= 0 && tape[record] == OBJECT;
+    }
+
+    // SHA-256 of the canonical form of an object record, leaving out the members
+    // named in excluded and, if extraValue is a record, adding it as extraKey.
+    // Written to hash[offset, offset + 32). Throws on duplicate keys, which
+    // JSON parsers resolve differently.
+    void digestObject(int object, String[] excluded, String extraKey, int extraValue, byte[] hash, int offset)
+            throws JSONException {
+        digest.reset();
+        outLength = 0;
+        writeObject(object, excluded, extraKey, extraValue, 0);
+        flush();
+        try {
+            digest.digest(hash, offset, HashingService.HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---- Parsing
+
+    private int readValue(int depth) throws JSONException {
+        if (depth > MAX_DEPTH) {
+            throw error("Too deeply nested");
+        }
+        skipWhitespace();
+        if (pos >= in.length) {
+            throw error("Unexpected end of data");
+        }
+        int record = addRecord();
+        byte b = in[pos];
+        if (b == '{') {
+            pos++;
+            int count = 0;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    if (peek() != '"') {
+                        throw error("Expected a key");
+                    }
+                    readKey();
+                    skipWhitespace();
+                    expect(':');
+                    readValue(depth + 1);
+                    count++;
+                    skipWhitespace();
+                    if (peek() == ',') {
+                        pos++;
+                    } else {
+                        expect('}');
+                        break;
+                    }
+                }
+            }
+            setRecord(record, OBJECT, count, 0);
+        } else if (b == '[') {
+            pos++;
+            int count = 0;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+            } else {
+                while (true) {
+                    readValue(depth + 1);
+                    count++;
+                    skipWhitespace();
+                    if (peek() == ',') {
+                        pos++;
+                    } else {
+                        expect(']');
+                        break;
+                    }
+                }
+            }
+            setRecord(record, ARRAY, count, 0);
+        } else if (b == '"') {
+            int start = ++pos;
+            skipString();
+            setRecord(record, STRING, start, pos - 1);
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            int start = pos;
+            skipNumber();
+            setRecord(record, NUMBER, start, pos);
+        } else {
+            int start = pos;
+            if (!(matches("true") || matches("false") || matches("null"))) {
+                throw error("Unexpected character");
+            }
+            setRecord(record, LITERAL, start, pos);
+        }
+        return record;
+    }
+
+    // Decodes a key into the arena as UTF-16 so keys sort like String.compareTo
+    private void readKey() throws JSONException {
+        int record = addRecord();
+        int offset = keysLength;
+        pos++;
+        while (true) {
+            if (pos >= in.length) {
+                throw error("Unterminated string");
+            }
+            int b = in[pos] & 0xff;
+            if (b == '"') {
+                pos++;
+                break;
+            }
+            if (b == '\\') {
+                appendKey(readEscape());
+            } else if (b < 0x80) {
+                appendKey((char) b);
+                pos++;
+            } else {
+                int codePoint = readUtf8();
+                if (codePoint >= 0x10000) {
+                    appendKey(Character.highSurrogate(codePoint));
+                    appendKey(Character.lowSurrogate(codePoint));
+                } else {
+                    appendKey((char) codePoint);
+                }
+            }
+        }
+        setRecord(record, KEY, offset, keysLength - offset);
+    }
+
+    private void skipString() throws JSONException {
+        while (true) {
+            if (pos >= in.length) {
+                throw error("Unterminated string");
+            }
+            byte b = in[pos];
+            if (b == '"') {
+                pos++;
+                return;
+            }
+            if (b == '\\') {
+                readEscape();
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    // The code unit of the escape at pos, which is left after it
+    private char readEscape() throws JSONException {
+        if (pos + 1 >= in.length) {
+            throw error("Unterminated string");
+        }
+        byte b = in[pos + 1];
+        pos += 2;
+        switch (b) {
+            case '"':
+                return '"';
+            case '\\':
+                return '\\';
+            case '/':
+                return '/';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > in.length) {
+                    throw error("Unterminated string");
+                }
+                int unit = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(in[pos++], 16);
+                    if (digit < 0) {
+                        throw error("Invalid \\u escape");
+                    }
+                    unit = unit << 4 | digit;
+                }
+                return (char) unit;
+            default:
+                throw error("Invalid escape");
+        }
+    }
+
+    // The payload came from a Java String, so it is well-formed UTF-8
+    private int readUtf8() throws JSONException {
+        int b = in[pos] & 0xff;
+        int length = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : 2;
+        if (pos + length > in.length) {
+            throw error("Truncated UTF-8");
+        }
+        int codePoint = b & (0x3f >> (length - 1));
+        for (int i = 1; i < length; i++) {
+            codePoint = codePoint << 6 | (in[pos + i] & 0x3f);
+        }
+        pos += length;
+        return codePoint;
+    }
+
+    private void skipNumber() throws JSONException {
+        if (in[pos] == '-') {
+            pos++;
+        }
+        if (peek() == '0') {
+            pos++;
+        } else if (!skipDigits()) {
+            throw error("Invalid number");
+        }
+        if (peek() == '.') {
+            pos++;
+            if (!skipDigits()) {
+                throw error("Invalid number");
+            }
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            pos++;
+            if (peek() == '+' || peek() == '-') {
+                pos++;
+            }
+            if (!skipDigits()) {
+                throw error("Invalid number");
+            }
+        }
+    }
+
+    private boolean skipDigits() {
+        int start = pos;
+        while (pos < in.length && in[pos] >= '0' && in[pos] <= '9') {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private boolean matches(String literal) {
+        if (pos + literal.length() > in.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (in[pos + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < in.length && (in[pos] == ' ' || in[pos] == '\n' || in[pos] == '\r' || in[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private int peek() {
+        return pos < in.length ? in[pos] : -1;
+    }
+
+    private void expect(char c) throws JSONException {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private JSONException error(String message) {
+        return new JSONException(message + " at " + pos);
+    }
+
+    private int addRecord() {
+        if (tapeLength + RECORD > tape.length) {
+            int[] grown = new int[tape.length * 2];
+            System.arraycopy(tape, 0, grown, 0, tapeLength);
+            tape = grown;
+        }
+        int record = tapeLength;
+        tapeLength += RECORD;
+        return record;
+    }
+
+    private void setRecord(int record, int type, int a, int b) {
+        tape[record] = type;
+        tape[record + 1] = a;
+        tape[record + 2] = b;
+        tape[record + 3] = tapeLength;
+    }
+
+    private void appendKey(char c) {
+        if (keysLength == keys.length) {
+            char[] grown = new char[keys.length * 2];
+            System.arraycopy(keys, 0, grown, 0, keysLength);
+            keys = grown;
+        }
+        keys[keysLength++] = c;
+    }
+
+    // ---- Writing
+
+    private void writeValue(int record, int base) throws JSONException {
+        switch (tape[record]) {
+            case OBJECT:
+                writeObject(record, null, null, -1, base);
+                break;
+            case ARRAY:
+                write('[');
+                int element = record + RECORD;
+                for (int i = 0; i < tape[record + 1]; i++) {
+                    if (i > 0) {
+                        write(',');
+                    }
+                    writeValue(element, base);
+                    element = tape[element + 3];
+                }
+                write(']');
+                break;
+            case STRING:
+                writeString(tape[record + 1], tape[record + 2]);
+                break;
+            case NUMBER:
+                writeNumber(tape[record + 1], tape[record + 2]);
+                break;
+            default:
+                for (int i = tape[record + 1]; i < tape[record + 2]; i++) {
+                    write(in[i]);
+                }
+        }
+    }
+
+    // base: first free slot of members
+    private void writeObject(int object, String[] excluded, String extraKey, int extraValue, int base)
+            throws JSONException {
+        int count = 0;
+        int record = object + RECORD;
+        int end = tape[object + 3];
+        while (record < end) {
+            int value = record + RECORD;
+            if (!isExcluded(record, excluded) && !(extraValue >= 0 && keyEquals(record, extraKey))) {
+                count = addMember(base, count, record, value);
+            }
+            record = tape[value + 3];
+        }
+        if (extraValue >= 0) {
+            count = addMember(base, count, addExtraKey(extraKey), extraValue);
+        }
+        sortMembers(base, count);
+        int top = base + count * 2;
+
+        write('{');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                write(',');
+            }
+            int key = members[base + i * 2];
+            writeKey(tape[key + 1], tape[key + 2]);
+            write(':');
+            writeValue(members[base + i * 2 + 1], top);
+        }
+        write('}');
+    }
+
+    private int addMember(int base, int count, int key, int value) {
+        int at = base + count * 2;
+        if (at + 2 > members.length) {
+            int[] grown = new int[Math.max(members.length * 2, at + 2)];
+            System.arraycopy(members, 0, grown, 0, members.length);
+            members = grown;
+        }
+        members[at] = key;
+        members[at + 1] = value;
+        return count + 1;
+    }
+
+    // Insertion sort: objects are small, and payloads are capped at MAX_PAYLOAD_LENGTH
+    private void sortMembers(int base, int count) throws JSONException {
+        for (int i = 1; i < count; i++) {
+            int key = members[base + i * 2];
+            int value = members[base + i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && compareKeys(members[base + j * 2], key) > 0) {
+                members[base + (j + 1) * 2] = members[base + j * 2];
+                members[base + (j + 1) * 2 + 1] = members[base + j * 2 + 1];
+                j--;
+            }
+            members[base + (j + 1) * 2] = key;
+            members[base + (j + 1) * 2 + 1] = value;
+            if (j >= 0 && compareKeys(members[base + j * 2], key) == 0) {
+                throw new JSONException("Duplicate key");
+            }
+        }
+    }
+
+    private int compareKeys(int a, int b) {
+        int aOffset = tape[a + 1];
+        int aLength = tape[a + 2];
+        int bOffset = tape[b + 1];
+        int bLength = tape[b + 2];
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int diff = keys[aOffset + i] - keys[bOffset + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    // A key record for a member that is not in the payload
+    private int addExtraKey(String key) {
+        int record = addRecord();
+        int offset = keysLength;
+        for (int i = 0; i < key.length(); i++) {
+            appendKey(key.charAt(i));
+        }
+        setRecord(record, KEY, offset, key.length());
+        return record;
+    }
+
+    private boolean isExcluded(int key, String[] excluded) {
+        for (int i = 0; excluded != null && i < excluded.length; i++) {
+            if (keyEquals(key, excluded[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean keyEquals(int key, String name) {
+        int offset = tape[key + 1];
+        int length = tape[key + 2];
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keys[offset + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeKey(int offset, int length) {
+        write('"');
+        for (int i = offset; i < offset + length; i++) {
+            char c = keys[i];
+            if (Character.isHighSurrogate(c) && i + 1 < offset + length && Character.isLowSurrogate(keys[i + 1])) {
+                writeUtf8(Character.toCodePoint(c, keys[++i]));
+            } else {
+                writeChar(c);
+            }
+        }
+        write('"');
+    }
+
+    // Raw bytes go through as they are; escapes are decoded and written in canonical form
+    private void writeString(int start, int end) {
+        write('"');
+        int i = start;
+        while (i < end) {
+            int b = in[i] & 0xff;
+            if (b != '\\') {
+                if (b < 0x20) {
+                    writeChar((char) b);
+                } else {
+                    write((byte) b);
+                }
+                i++;
+                continue;
+            }
+            pos = i;
+            char c = readEscapeUnchecked();
+            if (Character.isHighSurrogate(c) && pos + 1 < end && in[pos] == '\\' && in[pos + 1] == 'u') {
+                int next = pos;
+                char low = readEscapeUnchecked();
+                if (Character.isLowSurrogate(low)) {
+                    writeUtf8(Character.toCodePoint(c, low));
+                    i = pos;
+                    continue;
+                }
+                pos = next;
+            }
+            writeChar(c);
+            i = pos;
+        }
+        write('"');
+    }
+
+    // The string was validated by parse()
+    private char readEscapeUnchecked() {
+        try {
+            return readEscape();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // One UTF-16 unit with JsonCanonicalizer's escaping; a lone surrogate becomes
+    // '?', as String.getBytes(UTF_8) does
+    private void writeChar(char c) {
+        switch (c) {
+            case '"':
+                write('\\');
+                write('"');
+                return;
+            case '\\':
+                write('\\');
+                write('\\');
+                return;
+            case '\b':
+                write('\\');
+                write('b');
+                return;
+            case '\f':
+                write('\\');
+                write('f');
+                return;
+            case '\n':
+                write('\\');
+                write('n');
+                return;
+            case '\r':
+                write('\\');
+                write('r');
+                return;
+            case '\t':
+                write('\\');
+                write('t');
+                return;
+            default:
+                if (c < 0x20) {
+                    write('\\');
+                    write('u');
+                    write('0');
+                    write('0');
+                    write(HEX[c >> 4]);
+                    write(HEX[c & 0xf]);
+                } else if (Character.isSurrogate(c)) {
+                    write('?');
+                } else {
+                    writeUtf8(c);
+                }
+        }
+    }
+
+    private void writeUtf8(int codePoint) {
+        if (codePoint < 0x80) {
+            write((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            write((byte) (0xc0 | codePoint >> 6));
+            write((byte) (0x80 | codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            write((byte) (0xe0 | codePoint >> 12));
+            write((byte) (0x80 | codePoint >> 6 & 0x3f));
+            write((byte) (0x80 | codePoint & 0x3f));
+        } else {
+            write((byte) (0xf0 | codePoint >> 18));
+            write((byte) (0x80 | codePoint >> 12 & 0x3f));
+            write((byte) (0x80 | codePoint >> 6 & 0x3f));
+            write((byte) (0x80 | codePoint & 0x3f));
+        }
+    }
+
+    // A plain decimal of up to 15 significant digits is already its own shortest
+    // round-trip form once trailing fraction zeros go, so its bytes are copied;
+    // anything else goes through BigDecimal
+    private void writeNumber(int start, int end) throws JSONException {
+        int i = start;
+        boolean negative = in[i] == '-';
+        if (negative) {
+            i++;
+        }
+        int intStart = i;
+        while (i < end && in[i] >= '0' && in[i] <= '9') {
+            i++;
+        }
+        int intEnd = i;
+        int fracStart = i < end && in[i] == '.' ? i + 1 : i;
+        i = fracStart;
+        while (i < end && in[i] >= '0' && in[i] <= '9') {
+            i++;
+        }
+        int fracEnd = i;
+        if (i < end) {
+            writeNumberSlow(start, end);
+            return;
+        }
+        while (fracEnd > fracStart && in[fracEnd - 1] == '0') {
+            fracEnd--;
+        }
+        boolean zeroInt = intEnd - intStart == 1 && in[intStart] == '0';
+        int leadingZeros = 0;
+        while (zeroInt && fracStart + leadingZeros < fracEnd && in[fracStart + leadingZeros] == '0') {
+            leadingZeros++;
+        }
+        int significant = zeroInt ? fracEnd - fracStart - leadingZeros : intEnd - intStart + fracEnd - fracStart;
+        if (significant > 15 || intEnd - intStart > 21 || leadingZeros >= 6) {
+            writeNumberSlow(start, end);
+            return;
+        }
+        if (zeroInt && fracEnd == fracStart) {
+            // -0 is written as 0
+            write('0');
+            return;
+        }
+        if (negative) {
+            write('-');
+        }
+        for (int j = intStart; j < intEnd; j++) {
+            write(in[j]);
+        }
+        if (fracEnd > fracStart) {
+            write('.');
+            for (int j = fracStart; j < fracEnd; j++) {
+                write(in[j]);
+            }
+        }
+    }
+
+    private void writeNumberSlow(int start, int end) throws JSONException {
+        char[] token = new char[end - start];
+        for (int i = start; i < end; i++) {
+            token[i - start] = (char) in[i];
+        }
+        String number;
+        try {
+            number = formatNumber(new BigDecimal(token).doubleValue());
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException for exponents beyond BigDecimal
+            throw new JSONException("Number out of range");
+        }
+        for (int i = 0; i < number.length(); i++) {
+            write((byte) number.charAt(i));
+        }
+    }
+
+    // ECMAScript Number::toString: the shortest digits that round-trip, placed as
+    // ES does. Out-of-range numbers have no JSON form.
+    static String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Number out of range");
+        }
+        if (value == 0) {
+            return "0";
+        }
+        BigDecimal exact = new BigDecimal(value);
+        BigDecimal shortest = exact;
+        for (int precision = 1; precision <= 17; precision++) {
+            BigDecimal rounded = exact.round(new MathContext(precision, RoundingMode.HALF_EVEN));
+            if (rounded.doubleValue() == value) {
+                shortest = rounded;
+                break;
+            }
+        }
+        shortest = shortest.stripTrailingZeros();
+        String digits = shortest.unscaledValue().abs().toString();
+        int k = digits.length();
+        int n = k - shortest.scale();
+        StringBuilder sb = new StringBuilder(24);
+        if (value < 0) {
+            sb.append('-');
+        }
+        if (k <= n && n <= 21) {
+            sb.append(digits);
+            for (int i = k; i < n; i++) {
+                sb.append('0');
+            }
+        } else if (0 < n && n <= 21) {
+            sb.append(digits, 0, n).append('.').append(digits, n, k);
+        } else if (-6 < n && n <= 0) {
+            sb.append("0.");
+            for (int i = n; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        } else {
+            sb.append(digits.charAt(0));
+            if (k > 1) {
+                sb.append('.').append(digits, 1, k);
+            }
+            sb.append('e').append(n - 1 >= 0 ? "+" : "-").append(Math.abs(n - 1));
+        }
+        return sb.toString();
+    }
+
+    private void write(char c) {
+        write((byte) c);
+    }
+
+    private void write(byte b) {
+        if (outLength == out.length) {
+            flush();
+        }
+        out[outLength++] = b;
+    }
+
+    private void flush() {
+        digest.update(out, 0, outLength);
+        outLength = 0;
+    }
+}
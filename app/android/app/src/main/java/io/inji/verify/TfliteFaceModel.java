@@ -0,0 +1,73 @@
+package io.inji.verify;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// FaceMatchEngine.Model backed by a TensorFlow Lite embedding model on the CPU
+// (XNNPACK kernels, no GPU or NNAPI delegate, so results and timing do not
+// depend on the device's accelerator drivers). The model is memory-mapped
+// straight from the APK, which is why .tflite assets are stored uncompressed.
+final class TfliteFaceModel implements FaceMatchEngine.Model {
+
+    static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final Interpreter interpreter;
+    private final int inputSize;
+    private final int embeddingSize;
+    private final float[][] output;
+
+    private TfliteFaceModel(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        // [1, size, size, 3] in, [1, embedding] out
+        this.inputSize = interpreter.getInputTensor(0).shape()[1];
+        this.embeddingSize = interpreter.getOutputTensor(0).shape()[1];
+        this.output = new float[1][embeddingSize];
+    }
+
+    static TfliteFaceModel open(AssetManager assets, String path) throws IOException {
+        AssetFileDescriptor fd = assets.openFd(path);
+        try {
+            FileInputStream in = new FileInputStream(fd.getFileDescriptor());
+            try {
+                MappedByteBuffer model = in.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+                Interpreter.Options options = new Interpreter.Options()
+                    .setNumThreads(THREADS)
+                    .setUseXNNPACK(true);
+                return new TfliteFaceModel(new Interpreter(model, options));
+            } finally {
+                in.close();
+            }
+        } finally {
+            fd.close();
+        }
+    }
+
+    @Override
+    public int inputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int embeddingSize() {
+        return embeddingSize;
+    }
+
+    @Override
+    public void run(ByteBuffer input, float[] embedding) {
+        interpreter.run(input, output);
+        System.arraycopy(output[0], 0, embedding, 0, embeddingSize);
+    }
+
+    void close() {
+        interpreter.close();
+    }
+}
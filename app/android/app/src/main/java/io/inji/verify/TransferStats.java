@@ -0,0 +1,92 @@
+package io.inji.verify;
+
+import java.util.Locale;
+
+// Counters for one BLE transfer, kept by whichever side runs the state machine
+public final class TransferStats {
+
+    // Bytes transferred, after compression
+    public final int payloadBytes;
+    public final int mtu;
+    // BleCompression.CODEC_ value, and the payload size before compression
+    int codec = BleCompression.CODEC_NONE;
+    int originalBytes;
+    // Every frame written or received, headers included
+    long bytesOnAir;
+    int frames;
+    int resentFrames;
+    private long startNanos;
+    private long elapsedNanos;
+
+    TransferStats(int payloadBytes, int mtu) {
+        this.payloadBytes = payloadBytes;
+        this.mtu = mtu;
+        this.originalBytes = payloadBytes;
+    }
+
+    void setCodec(int codec) {
+        this.codec = codec;
+    }
+
+    void setOriginalBytes(int originalBytes) {
+        this.originalBytes = originalBytes;
+    }
+
+    void start(long nowNanos) {
+        startNanos = nowNanos;
+    }
+
+    void finish(long nowNanos) {
+        elapsedNanos = nowNanos - startNanos;
+    }
+
+    void frame(int length, boolean resent) {
+        frames++;
+        bytesOnAir += length;
+        if (resent) {
+            resentFrames++;
+        }
+    }
+
+    public int getCodec() {
+        return codec;
+    }
+
+    public int getOriginalBytes() {
+        return originalBytes;
+    }
+
+    public long getBytesOnAir() {
+        return bytesOnAir;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getResentFrames() {
+        return resentFrames;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    // Payload bytes per second; 0 until finished
+    public long getThroughput() {
+        return elapsedNanos > 0 ? payloadBytes * 1000000000L / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        if (codec != BleCompression.CODEC_NONE) {
+            return String.format(Locale.US, "%d B compressed to %s", originalBytes, transfer());
+        }
+        return transfer();
+    }
+
+    private String transfer() {
+        return String.format(Locale.US, "%d B (%d on air, %d frames, %d resent) at MTU %d in %d ms, %.1f KB/s",
+            payloadBytes, bytesOnAir, frames, resentFrames, mtu, getElapsedMillis(), getThroughput() / 1024.0);
+    }
+}
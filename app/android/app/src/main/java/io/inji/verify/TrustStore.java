@@ -0,0 +1,149 @@
+package io.inji.verify;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Issuer keys from trust-bundle.json, decoded once and indexed by issuer DID and
+// by verificationMethod id so the verify path never walks the issuer list or
+// re-parses key material. Signatures initialized with these keys are pooled
+// alongside them and go away with the store.
+public class TrustStore {
+
+    private final Map<String, Issuer> issuersById;
+    private final Map<String, IssuerKey> keysById;
+    private final SignaturePool signatures = new SignaturePool();
+
+    private TrustStore(Map<String, Issuer> issuersById, Map<String, IssuerKey> keysById) {
+        this.issuersById = issuersById;
+        this.keysById = keysById;
+    }
+
+    public static TrustStore fromJson(JSONObject trustBundle) {
+        JSONArray issuers = trustBundle.optJSONArray("issuers");
+        int count = issuers != null ? issuers.length() : 0;
+        Map<String, Issuer> issuersById = new HashMap<>(count * 2);
+        Map<String, IssuerKey> keysById = new HashMap<>(count * 2);
+
+        for (int i = 0; i < count; i++) {
+            JSONObject entry = issuers.optJSONObject(i);
+            String issuerId = entry != null ? entry.optString("id", null) : null;
+            if (issuerId == null) {
+                continue;
+            }
+            JSONArray publicKeys = entry.optJSONArray("publicKeys");
+            List<IssuerKey> keys = new ArrayList<>(publicKeys != null ? publicKeys.length() : 0);
+            for (int k = 0; publicKeys != null && k < publicKeys.length(); k++) {
+                JSONObject keyEntry = publicKeys.optJSONObject(k);
+                if (keyEntry == null) {
+                    continue;
+                }
+                IssuerKey key = decodeKey(issuerId, keyEntry);
+                keys.add(key);
+                if (key.id != null) {
+                    keysById.put(key.id, key);
+                }
+            }
+            issuersById.put(issuerId, new Issuer(issuerId, entry.optString("name"),
+                Collections.unmodifiableList(keys)));
+        }
+        return new TrustStore(issuersById, keysById);
+    }
+
+    // Undecodable keys (e.g. the mock entries of the sample bundle) are kept with a
+    // null publicKey so the verifier can report them instead of "untrusted issuer".
+    // Ed25519 has no KeyFactory before Android 13 (API 33); such keys are marked
+    // unsupported rather than unavailable.
+    private static IssuerKey decodeKey(String issuerId, JSONObject keyEntry) {
+        PublicKey publicKey = null;
+        boolean unsupported = false;
+        try {
+            publicKey = PublicKeyDecoder.decode(keyEntry.optString("type"), keyEntry.optString("publicKey"));
+        } catch (NoSuchAlgorithmException e) {
+            unsupported = true;
+        } catch (GeneralSecurityException e) {
+            // Left null; resolution reports the key as unavailable
+        }
+        return new IssuerKey(
+            keyEntry.optString("id", null),
+            issuerId,
+            keyEntry.optString("type"),
+            publicKey,
+            unsupported,
+            keyEntry.has("expiresAt") ? keyEntry.optLong("expiresAt") : Long.MAX_VALUE,
+            keyEntry.optBoolean("revoked"));
+    }
+
+    public Issuer getIssuer(String issuerId) {
+        return issuerId != null ? issuersById.get(issuerId) : null;
+    }
+
+    // Key named by a proof's verificationMethod, or the issuer's first usable key.
+    // A key id belonging to a different issuer never resolves.
+    public IssuerKey resolveKey(Issuer issuer, String keyId, long now) {
+        if (keyId != null) {
+            IssuerKey key = keysById.get(keyId);
+            return key != null && key.issuerId.equals(issuer.id) && key.isUsable(now) ? key : null;
+        }
+        for (IssuerKey key : issuer.keys) {
+            if (key.isUsable(now)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    public int getIssuerCount() {
+        return issuersById.size();
+    }
+
+    public SignaturePool getSignaturePool() {
+        return signatures;
+    }
+
+    public static class Issuer {
+        public final String id;
+        public final String name;
+        public final List<IssuerKey> keys;
+
+        Issuer(String id, String name, List<IssuerKey> keys) {
+            this.id = id;
+            this.name = name;
+            this.keys = keys;
+        }
+    }
+
+    public static class IssuerKey {
+        public final String id;
+        public final String issuerId;
+        public final String type;
+        public final PublicKey publicKey;
+        // The platform has no provider for this key type; publicKey is null
+        public final boolean unsupported;
+        public final long expiresAt;
+        public final boolean revoked;
+
+        IssuerKey(String id, String issuerId, String type, PublicKey publicKey, boolean unsupported, long expiresAt,
+                  boolean revoked) {
+            this.id = id;
+            this.issuerId = issuerId;
+            this.type = type;
+            this.publicKey = publicKey;
+            this.unsupported = unsupported;
+            this.expiresAt = expiresAt;
+            this.revoked = revoked;
+        }
+
+        boolean isUsable(long now) {
+            return !revoked && expiresAt >= now;
+        }
+    }
+}
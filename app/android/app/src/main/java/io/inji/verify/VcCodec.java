@@ -0,0 +1,408 @@
+package io.inji.verify;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary form of a VC for BLE transfer, replacing the JSON packet of
+// ble-verification.ts. The packet is an unsigned CWT claims set (RFC 8392):
+// iat, a nonce as cti and the credential under a private-use claim. The
+// credential itself keeps its JSON data model but is written as CBOR with
+// - common keys and values (contexts, types, proof purposes) as dictionary indices,
+// - ISO timestamps as epoch tags,
+// - JWS and multibase signatures, and base64 data: URIs (photos), as raw bytes.
+// Every substitution is checked to reproduce the original text exactly, so the
+// decoded credential canonicalizes to the same bytes and its proof still verifies.
+public final class VcCodec {
+
+    // CWT claim keys
+    static final int CLAIM_IAT = 6;
+    static final int CLAIM_CTI = 7;
+    // Private-use claim (below -65536) carrying the credential
+    static final int CLAIM_VC = -65537;
+
+    // RFC 8949 epoch time; an integer for "...:ssZ", a double for "...:ss.SSSZ"
+    static final int TAG_EPOCH = 1;
+    // Private tags from the unassigned 6-15 range
+    static final int TAG_DICTIONARY = 6;
+    static final int TAG_JWS = 7;
+    static final int TAG_BASE58BTC = 8;
+    static final int TAG_DATA_URI = 9;
+    private static final String DATA_URI_PREFIX = "data:";
+    private static final String BASE64_MARKER = ";base64,";
+
+    private static final int MAX_DEPTH = 32;
+
+    // Wire format: both lists are append-only, an index never changes meaning.
+    // The first 24 entries encode in a single byte.
+    static final List<String> KEYS = Arrays.asList(
+        "@context", "id", "type", "issuer", "issuanceDate", "expirationDate",
+        "validFrom", "validUntil", "credentialSubject", "proof", "created", "proofPurpose",
+        "verificationMethod", "jws", "proofValue", "credentialStatus", "credentialSchema", "name",
+        "fullName", "dateOfBirth", "gender", "email", "phone", "mobileNumber",
+        "address", "statusPurpose", "statusListIndex", "statusListCredential", "cryptosuite",
+        "challenge", "domain", "nonce", "description", "evidence", "termsOfUse");
+
+    static final List<String> STRINGS = Arrays.asList(
+        "https://www.w3.org/2018/credentials/v1",
+        "https://www.w3.org/ns/credentials/v2",
+        "https://w3id.org/security/suites/ed25519-2020/v1",
+        "https://w3id.org/security/suites/ed25519-2018/v1",
+        "https://w3id.org/security/suites/jws-2020/v1",
+        "https://w3id.org/security/v1",
+        "https://w3id.org/security/v2",
+        "https://w3id.org/vc/status-list/2021/v1",
+        "VerifiableCredential",
+        "Ed25519Signature2018",
+        "Ed25519Signature2020",
+        "RsaSignature2018",
+        "JsonWebSignature2020",
+        "DataIntegrityProof",
+        "assertionMethod",
+        "authentication",
+        "StatusList2021Entry",
+        "BitstringStatusListEntry",
+        "revocation",
+        "suspension");
+
+    private static final Map<String, Integer> KEY_INDEX = index(KEYS);
+    private static final Map<String, Integer> STRING_INDEX = index(STRINGS);
+
+    public static final class Packet {
+        public final JSONObject credential;
+        public final byte[] nonce;
+        // Millis, at second precision
+        public final long issuedAt;
+
+        Packet(JSONObject credential, byte[] nonce, long issuedAt) {
+            this.credential = credential;
+            this.nonce = nonce;
+            this.issuedAt = issuedAt;
+        }
+    }
+
+    private VcCodec() {
+    }
+
+    public static byte[] encode(JSONObject credential, byte[] nonce, long issuedAt) {
+        Cbor.Writer out = new Cbor.Writer(1024);
+        out.head(Cbor.MAJOR_MAP, 3);
+        out.integer(CLAIM_IAT).integer(issuedAt / 1000);
+        out.integer(CLAIM_CTI).bytes(nonce);
+        out.integer(CLAIM_VC);
+        writeValue(out, credential, 0);
+        return out.toByteArray();
+    }
+
+    // Throws IllegalArgumentException for anything that is not a packet from encode()
+    public static Packet decode(byte[] packet) {
+        Cbor.Reader in = new Cbor.Reader(packet);
+        JSONObject credential = null;
+        byte[] nonce = new byte[0];
+        long issuedAt = 0;
+        int claims = in.count(Cbor.MAJOR_MAP);
+        for (int i = 0; i < claims; i++) {
+            long claim = in.integer();
+            if (claim == CLAIM_IAT) {
+                issuedAt = in.integer() * 1000;
+            } else if (claim == CLAIM_CTI) {
+                nonce = in.bytes();
+            } else if (claim == CLAIM_VC) {
+                Object value = readValue(in, 0);
+                if (!(value instanceof JSONObject)) {
+                    throw new IllegalArgumentException("Credential is not an object");
+                }
+                credential = (JSONObject) value;
+            } else {
+                throw new IllegalArgumentException("Unknown claim: " + claim);
+            }
+        }
+        if (credential == null || in.hasMore()) {
+            throw new IllegalArgumentException("Malformed VC packet");
+        }
+        return new Packet(credential, nonce, issuedAt);
+    }
+
+    private static void writeValue(Cbor.Writer out, Object value, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Credential nested too deeply");
+        }
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            out.head(Cbor.MAJOR_MAP, object.length());
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Integer index = KEY_INDEX.get(key);
+                if (index != null) {
+                    out.integer(index);
+                } else {
+                    out.text(key);
+                }
+                writeValue(out, object.opt(key), depth + 1);
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            out.head(Cbor.MAJOR_ARRAY, array.length());
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(out, array.opt(i), depth + 1);
+            }
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            out.integer(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            out.doubleValue(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.simple((Boolean) value ? Cbor.SIMPLE_TRUE : Cbor.SIMPLE_FALSE);
+        } else if (value == null || value == JSONObject.NULL) {
+            out.simple(Cbor.SIMPLE_NULL);
+        } else {
+            throw new IllegalArgumentException("Unsupported JSON value: " + value.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeString(Cbor.Writer out, String value) {
+        Integer index = STRING_INDEX.get(value);
+        if (index != null) {
+            out.head(Cbor.MAJOR_TAG, TAG_DICTIONARY).integer(index);
+            return;
+        }
+        long millis = timestamp(value);
+        if (millis != Long.MIN_VALUE) {
+            out.head(Cbor.MAJOR_TAG, TAG_EPOCH);
+            if (value.length() == 20) {
+                out.integer(millis / 1000);
+            } else {
+                out.doubleValue(millis / 1000.0);
+            }
+            return;
+        }
+        byte[][] jws = jwsParts(value);
+        if (jws != null) {
+            out.head(Cbor.MAJOR_TAG, TAG_JWS).head(Cbor.MAJOR_ARRAY, 3);
+            for (byte[] part : jws) {
+                out.bytes(part);
+            }
+            return;
+        }
+        byte[] multibase = base58btc(value);
+        if (multibase != null) {
+            out.head(Cbor.MAJOR_TAG, TAG_BASE58BTC).bytes(multibase);
+            return;
+        }
+        int dataStart = dataUriPayload(value);
+        if (dataStart > 0) {
+            byte[] data = Encoding.decodeBase64(value.substring(dataStart));
+            out.head(Cbor.MAJOR_TAG, TAG_DATA_URI).head(Cbor.MAJOR_ARRAY, 2)
+                .text(value.substring(0, dataStart)).bytes(data);
+            return;
+        }
+        out.text(value);
+    }
+
+    private static Object readValue(Cbor.Reader in, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Credential nested too deeply");
+        }
+        try {
+            switch (in.peekMajor()) {
+                case Cbor.MAJOR_UNSIGNED:
+                case Cbor.MAJOR_NEGATIVE:
+                    long number = in.integer();
+                    return number == (int) number ? Integer.valueOf((int) number) : Long.valueOf(number);
+                case Cbor.MAJOR_TEXT:
+                    return in.text();
+                case Cbor.MAJOR_ARRAY: {
+                    int count = in.count(Cbor.MAJOR_ARRAY);
+                    JSONArray array = new JSONArray();
+                    for (int i = 0; i < count; i++) {
+                        array.put(readValue(in, depth + 1));
+                    }
+                    return array;
+                }
+                case Cbor.MAJOR_MAP: {
+                    int count = in.count(Cbor.MAJOR_MAP);
+                    JSONObject object = new JSONObject();
+                    for (int i = 0; i < count; i++) {
+                        String key = in.peekMajor() == Cbor.MAJOR_TEXT ? in.text() : lookup(KEYS, in.integer());
+                        object.put(key, readValue(in, depth + 1));
+                    }
+                    return object;
+                }
+                case Cbor.MAJOR_TAG:
+                    return readTagged(in);
+                case Cbor.MAJOR_SIMPLE:
+                    if (in.peekAdditional() == 27) {
+                        return in.doubleValue();
+                    }
+                    switch ((int) in.head(Cbor.MAJOR_SIMPLE)) {
+                        case Cbor.SIMPLE_FALSE:
+                            return Boolean.FALSE;
+                        case Cbor.SIMPLE_TRUE:
+                            return Boolean.TRUE;
+                        case Cbor.SIMPLE_NULL:
+                            return JSONObject.NULL;
+                        default:
+                            throw new IllegalArgumentException("Unsupported simple value");
+                    }
+                default:
+                    throw new IllegalArgumentException("Unexpected byte string");
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid credential value", e);
+        }
+    }
+
+    private static String readTagged(Cbor.Reader in) {
+        long tag = in.head(Cbor.MAJOR_TAG);
+        if (tag == TAG_DICTIONARY) {
+            return lookup(STRINGS, in.integer());
+        }
+        if (tag == TAG_EPOCH) {
+            StringBuilder sb = new StringBuilder(24);
+            if (in.peekMajor() == Cbor.MAJOR_SIMPLE) {
+                Iso8601.format(Math.round(in.doubleValue() * 1000), sb);
+            } else {
+                Iso8601.format(in.integer() * 1000, sb);
+                // Drop the ".000" the formatter always writes
+                sb.delete(19, 23);
+            }
+            return sb.toString();
+        }
+        if (tag == TAG_JWS) {
+            if (in.count(Cbor.MAJOR_ARRAY) != 3) {
+                throw new IllegalArgumentException("Malformed JWS");
+            }
+            String header = Encoding.encodeBase64Url(in.bytes());
+            String payload = Encoding.encodeBase64Url(in.bytes());
+            return header + '.' + payload + '.' + Encoding.encodeBase64Url(in.bytes());
+        }
+        if (tag == TAG_BASE58BTC) {
+            return 'z' + Encoding.encodeBase58(in.bytes());
+        }
+        if (tag == TAG_DATA_URI) {
+            if (in.count(Cbor.MAJOR_ARRAY) != 2) {
+                throw new IllegalArgumentException("Malformed data URI");
+            }
+            String prefix = in.text();
+            return prefix + Encoding.encodeBase64(in.bytes());
+        }
+        throw new IllegalArgumentException("Unknown tag: " + tag);
+    }
+
+    // Epoch millis of a UTC "yyyy-MM-ddTHH:mm:ssZ" / "yyyy-MM-ddTHH:mm:ss.SSSZ"
+    // timestamp that formats back to the same text, else Long.MIN_VALUE
+    private static long timestamp(String value) {
+        int length = value.length();
+        if ((length != 20 && length != 24) || value.charAt(10) != 'T' || value.charAt(length - 1) != 'Z') {
+            return Long.MIN_VALUE;
+        }
+        long millis;
+        try {
+            millis = Iso8601.parse(value);
+        } catch (IllegalArgumentException e) {
+            return Long.MIN_VALUE;
+        }
+        StringBuilder sb = new StringBuilder(24);
+        Iso8601.format(millis, sb);
+        if (length == 20) {
+            if (millis % 1000 != 0) {
+                return Long.MIN_VALUE;
+            }
+            sb.delete(19, 23);
+        }
+        return value.contentEquals(sb) ? millis : Long.MIN_VALUE;
+    }
+
+    // Decoded parts of a compact JWS ("header.payload.signature", payload often
+    // empty), or null unless every part is canonical unpadded base64url
+    private static byte[][] jwsParts(String value) {
+        int first = value.indexOf('.');
+        int second = first < 0 ? -1 : value.indexOf('.', first + 1);
+        if (second < 0 || value.indexOf('.', second + 1) >= 0) {
+            return null;
+        }
+        String[] parts = {value.substring(0, first), value.substring(first + 1, second), value.substring(second + 1)};
+        byte[][] decoded = new byte[3][];
+        for (int i = 0; i < 3; i++) {
+            decoded[i] = base64Url(parts[i]);
+            if (decoded[i] == null) {
+                return null;
+            }
+        }
+        return decoded[0].length > 0 && decoded[2].length > 0 ? decoded : null;
+    }
+
+    private static byte[] base64Url(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean valid = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_';
+            if (!valid) {
+                return null;
+            }
+        }
+        byte[] bytes = Encoding.decodeBase64(value);
+        return Encoding.encodeBase64Url(bytes).equals(value) ? bytes : null;
+    }
+
+    // Start of the payload of a "data:<type>;base64,<payload>" URI whose payload
+    // is canonical padded base64, else -1
+    private static int dataUriPayload(String value) {
+        if (!value.startsWith(DATA_URI_PREFIX)) {
+            return -1;
+        }
+        int marker = value.indexOf(BASE64_MARKER);
+        if (marker < 0) {
+            return -1;
+        }
+        int start = marker + BASE64_MARKER.length();
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean valid = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                || c == '+' || c == '/' || c == '=';
+            if (!valid) {
+                return -1;
+            }
+        }
+        String payload = value.substring(start);
+        return Encoding.encodeBase64(Encoding.decodeBase64(payload)).equals(payload) ? start : -1;
+    }
+
+    // Multibase base58btc ("z..."), as used by Ed25519Signature2020 proofValue
+    private static byte[] base58btc(String value) {
+        if (value.length() < 2 || value.charAt(0) != 'z') {
+            return null;
+        }
+        String digits = value.substring(1);
+        byte[] bytes;
+        try {
+            bytes = Encoding.decodeBase58(digits);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return Encoding.encodeBase58(bytes).equals(digits) ? bytes : null;
+    }
+
+    private static String lookup(List<String> dictionary, long index) {
+        if (index < 0 || index >= dictionary.size()) {
+            throw new IllegalArgumentException("Unknown dictionary entry: " + index);
+        }
+        return dictionary.get((int) index);
+    }
+
+    private static Map<String, Integer> index(List<String> dictionary) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < dictionary.size(); i++) {
+            index.put(dictionary.get(i), i);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,73 @@
+package io.inji.verify;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU of verification outcomes keyed by the SHA-256 of the sanitized
+// payload, so a holder re-presenting the same QR code is answered without
+// re-parsing or re-checking the signature. Entries expire after the TTL or when
+// the result stops holding, whichever comes first: a success when the credential
+// or its issuer key expires, "not yet valid" when the credential becomes valid.
+//
+// A cache belongs to one VerificationEngine: the engine's trust store and
+// revocation index are immutable, and reloading either builds a new engine,
+// which drops every entry computed against the old trust material.
+public class VerificationCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000L;
+
+    private final long ttlMillis;
+    private final LinkedHashMap<ByteBuffer, Entry> entries;
+
+    public VerificationCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<ByteBuffer, Entry>(maxEntries * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized VerificationResult get(ByteBuffer digest, long now) {
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            entries.remove(digest);
+            return null;
+        }
+        return entry.result;
+    }
+
+    public synchronized void put(ByteBuffer digest, VerificationResult result, long now) {
+        if (result.isTransientFailure()) {
+            return;
+        }
+        long expiresAt = Math.min(now + ttlMillis, result.getCredentialExpiresAt());
+        if (expiresAt > now) {
+            entries.put(digest, new Entry(result, expiresAt));
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        final VerificationResult result;
+        final long expiresAt;
+
+        Entry(VerificationResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
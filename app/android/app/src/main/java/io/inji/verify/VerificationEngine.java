@@ -0,0 +1,419 @@
+package io.inji.verify;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+// Native offline verifier: mirrors verify.ts / BLEVerificationService.verifyCredentialOffline
+// (format, expiry, issuer trust, revocation, proof) without going through the WebView.
+//
+// Limitation: proofs are checked over a JCS-style signing input (canonical JSON,
+// see signingData), not over URDNA2015 RDF canonicalization. Credentials signed
+// as real Linked Data proofs, including the bundled test-vcs, do not match it and
+// are reported with MESSAGE_SIGNATURE_MISMATCH rather than as verified.
+//
+// The proof's signing input is canonicalized straight from the payload bytes by
+// StreamingCanonicalizer; the JSONObject is only read for the cheap checks.
+//
+// Given a stage executor, the expensive half of the proof check, canonicalizing
+// and hashing the credential, starts as soon as the format check passes and runs
+// alongside the cheap checks, which need microseconds; the first failing check
+// cancels it. Only the signature verify itself waits for the issuer key. If no
+// stage thread has picked the task up by then, the caller runs it inline, so a
+// saturated executor never makes a verification wait. Results and messages are
+// the same with or without an executor.
+public class VerificationEngine {
+
+    static final int MAX_PAYLOAD_LENGTH = 10000;
+    static final String MESSAGE_VERIFIED = "Credential verified successfully!";
+    static final String MESSAGE_SIGNATURE_MISMATCH =
+        "Signature does not match the JCS signing input (URDNA2015 LD proofs are not supported)";
+
+    // Proof type names accepted on the JCS signing input; a proof of one of these
+    // types made over RDF-canonicalized data will not verify
+    private static final List<String> JCS_PROOF_TYPES = Arrays.asList(
+        "RsaSignature2018", "Ed25519Signature2018", "Ed25519Signature2020");
+    // Left out of the document and the proof options; the options take the document's @context
+    private static final String[] DOCUMENT_EXCLUDED = {"proof"};
+    private static final String[] PROOF_OPTIONS_EXCLUDED = {"jws", "proofValue"};
+
+    private final TrustStore trustStore;
+    private final RevocationIndex revocationIndex;
+    private final VerificationCache cache;
+    // Null: stages run one after another on the calling thread
+    private final Executor stageExecutor;
+
+    public VerificationEngine(TrustStore trustStore, RevocationIndex revocationIndex) {
+        this(trustStore, revocationIndex, (Executor) null);
+    }
+
+    public VerificationEngine(TrustStore trustStore, RevocationIndex revocationIndex, Executor stageExecutor) {
+        this(trustStore, revocationIndex,
+            new VerificationCache(VerificationCache.DEFAULT_MAX_ENTRIES, VerificationCache.DEFAULT_TTL_MS),
+            stageExecutor);
+    }
+
+    public VerificationEngine(TrustStore trustStore, RevocationIndex revocationIndex, VerificationCache cache) {
+        this(trustStore, revocationIndex, cache, null);
+    }
+
+    public VerificationEngine(TrustStore trustStore, RevocationIndex revocationIndex, VerificationCache cache,
+                              Executor stageExecutor) {
+        this.trustStore = trustStore;
+        this.revocationIndex = revocationIndex;
+        this.cache = cache;
+        this.stageExecutor = stageExecutor;
+    }
+
+    // Same trust material and cache, with every stage on the calling thread; for
+    // callers that already keep all cores busy with credentials of their own
+    public VerificationEngine withoutStageExecutor() {
+        return stageExecutor == null ? this : new VerificationEngine(trustStore, revocationIndex, cache, null);
+    }
+
+    // Loads public/trust/trust-bundle.json and public/trust/revocation.json, (re)building
+    // the revocation index at indexFile
+    public static VerificationEngine load(InputStream trustBundle, InputStream revocation, File indexFile)
+            throws IOException, JSONException {
+        JSONObject bundle = new JSONObject(readFully(trustBundle));
+        JSONObject revocationList = revocation != null ? new JSONObject(readFully(revocation)) : null;
+        RevocationIndex.build(indexFile, revokedCredentials(bundle, revocationList));
+        return new VerificationEngine(TrustStore.fromJson(bundle), RevocationIndex.open(indexFile));
+    }
+
+    // Union of the bundle's per-issuer revocationLists and the flat revocation.json list
+    public static List<String> revokedCredentials(JSONObject trustBundle, JSONObject revocation) {
+        List<String> revoked = new ArrayList<>();
+        JSONArray revocationLists = trustBundle.optJSONArray("revocationLists");
+        for (int i = 0; revocationLists != null && i < revocationLists.length(); i++) {
+            JSONObject list = revocationLists.optJSONObject(i);
+            addAll(list != null ? list.optJSONArray("revokedCredentials") : null, revoked);
+        }
+        if (revocation != null) {
+            addAll(revocation.optJSONArray("revoked"), revoked);
+        }
+        return revoked;
+    }
+
+    public VerificationResult verify(String payload) {
+        return verify(payload, System.currentTimeMillis());
+    }
+
+    VerificationResult verify(String payload, long now) {
+        // Same validation / sanitization rules as security.ts
+        if (payload == null || payload.isEmpty()) {
+            return VerificationResult.failure("Empty payload")
+                .withPayloadHash(HashingService.hashPayload(""));
+        }
+        byte[] hash = HashingService.hashPayload(payload);
+        if (payload.length() > MAX_PAYLOAD_LENGTH) {
+            return VerificationResult.failure("Payload too large").withPayloadHash(hash);
+        }
+
+        // Repeat scans of the same payload are answered from the cache
+        ByteBuffer digest = ByteBuffer.wrap(hash);
+        VerificationResult cached = cache.get(digest, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        String sanitized = sanitize(payload);
+        if (!sanitized.startsWith("{") || !sanitized.endsWith("}")) {
+            return VerificationResult.failure("Invalid credential format").withPayloadHash(hash);
+        }
+
+        VerificationResult result;
+        try {
+            JSONObject credential = new JSONObject(sanitized);
+            try {
+                result = verifyCredential(credential, sanitized, now);
+            } catch (JSONException e) {
+                result = VerificationResult.failure("Verification error: " + e.getMessage());
+            }
+        } catch (JSONException e) {
+            result = VerificationResult.failure("Invalid JSON format");
+        }
+        result = result.withPayloadHash(hash);
+        cache.put(digest, result, now);
+        return result;
+    }
+
+    // payload is the text credential was parsed from
+    private VerificationResult verifyCredential(JSONObject credential, final String payload, long now)
+            throws JSONException {
+        // 1. Format
+        String issuerId = issuerId(credential);
+        if (!credential.has("@context") || !credential.has("type")
+                || issuerId == null || !credential.has("credentialSubject")) {
+            return VerificationResult.failure("Invalid credential format");
+        }
+
+        JSONObject proof = credential.optJSONObject("proof");
+        FutureTask<byte[]> signingData = null;
+        if (proof != null && JCS_PROOF_TYPES.contains(proof.optString("type"))) {
+            signingData = new FutureTask<>(() -> signingData(payload.getBytes(StandardCharsets.UTF_8)));
+            if (stageExecutor != null) {
+                try {
+                    stageExecutor.execute(signingData);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down; it runs inline below
+                }
+            }
+        }
+        try {
+            return verifyCredential(credential, issuerId, proof, signingData, now);
+        } finally {
+            if (signingData != null) {
+                // No-op once done; otherwise the credential failed a cheaper check first
+                signingData.cancel(true);
+            }
+        }
+    }
+
+    private VerificationResult verifyCredential(JSONObject credential, String issuerId, JSONObject proof,
+                                                FutureTask<byte[]> signingData, long now) throws JSONException {
+        // 2. Expiry
+        long expiresAt = Long.MAX_VALUE;
+        try {
+            String expiration = credential.optString("expirationDate",
+                credential.optString("validUntil", null));
+            if (expiration != null) {
+                expiresAt = Iso8601.parse(expiration);
+            }
+            if (expiresAt < now) {
+                return VerificationResult.failure("Credential has expired");
+            }
+            String validFrom = credential.optString("validFrom",
+                credential.optString("issuanceDate", null));
+            long validFromTime = validFrom != null ? Iso8601.parse(validFrom) : Long.MIN_VALUE;
+            if (validFromTime > now) {
+                // Only cached until it becomes valid
+                return VerificationResult.failure("Credential is not yet valid").expiringAt(validFromTime);
+            }
+        } catch (IllegalArgumentException e) {
+            return VerificationResult.failure("Invalid credential format");
+        }
+
+        // 3. Issuer trust
+        TrustStore.Issuer issuer = trustStore.getIssuer(issuerId);
+        if (issuer == null) {
+            return VerificationResult.failure("Untrusted issuer");
+        }
+
+        // 4. Revocation
+        String credentialId = credential.optString("id", null);
+        if (credentialId != null && revocationIndex.isRevoked(credentialId)) {
+            return VerificationResult.failure("Credential has been revoked");
+        }
+
+        // 5. Proof
+        if (proof == null) {
+            return VerificationResult.failure("Missing proof");
+        }
+        String proofType = proof.optString("type");
+        if (!JCS_PROOF_TYPES.contains(proofType)) {
+            return VerificationResult.failure("Unsupported proof type: " + proofType);
+        }
+
+        TrustStore.IssuerKey key = trustStore.resolveKey(issuer, proof.optString("verificationMethod", null), now);
+        if (key == null) {
+            return VerificationResult.failure("No valid issuer key");
+        }
+        if (key.unsupported) {
+            return VerificationResult.failure(key.type + " keys are unsupported on this Android version");
+        }
+        if (key.publicKey == null) {
+            return VerificationResult.failure("Issuer key unavailable");
+        }
+
+        // Everything but the signing input, while a stage thread may still be canonicalizing
+        ProofCheck check;
+        try {
+            check = ProofCheck.prepare(proof, key.publicKey, trustStore.getSignaturePool());
+        } catch (NoSuchAlgorithmException e) {
+            return VerificationResult.failure("Signature algorithm unsupported on this Android version");
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return VerificationResult.failure("Invalid digital signature");
+        }
+
+        byte[] data;
+        try {
+            // Runs it here unless a stage thread already has
+            signingData.run();
+            data = signingData.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return VerificationResult.transientFailure("Verification interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JSONException) {
+                throw (JSONException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        try {
+            if (!check.verify(data)) {
+                return VerificationResult.failure(MESSAGE_SIGNATURE_MISMATCH);
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return VerificationResult.failure("Invalid digital signature");
+        }
+
+        return VerificationResult.success(MESSAGE_VERIFIED).expiringAt(Math.min(expiresAt, key.expiresAt));
+    }
+
+    // A proof's Signature, taken from the pool already initialized with the issuer
+    // key and fed any JWS header bytes, waiting only for the signing input
+    static final class ProofCheck {
+        private final SignaturePool.Slots slots;
+        private final Signature signature;
+        // JWS with "b64": true signs the base64url of the signing input
+        private final boolean encodePayload;
+        private final byte[] signatureValue;
+
+        private ProofCheck(SignaturePool.Slots slots, Signature signature, boolean encodePayload,
+                           byte[] signatureValue) {
+            this.slots = slots;
+            this.signature = signature;
+            this.encodePayload = encodePayload;
+            this.signatureValue = signatureValue;
+        }
+
+        static ProofCheck prepare(JSONObject proof, PublicKey publicKey, SignaturePool pool)
+                throws GeneralSecurityException, JSONException {
+            String jws = proof.optString("jws", null);
+            if (jws != null) {
+                String[] parts = jws.split("\\.", -1);
+                if (parts.length != 3) {
+                    throw new GeneralSecurityException("Malformed JWS");
+                }
+                JSONObject header = new JSONObject(
+                    new String(Encoding.decodeBase64(parts[0]), StandardCharsets.UTF_8));
+                byte[] signatureValue = Encoding.decodeBase64(parts[2]);
+                SignaturePool.Slots slots = pool.slots(jcaAlgorithm(header.optString("alg")), publicKey);
+                Signature signature = slots.acquire();
+                signature.update((parts[0] + ".").getBytes(StandardCharsets.US_ASCII));
+                return new ProofCheck(slots, signature, header.optBoolean("b64", true), signatureValue);
+            }
+
+            String proofValue = proof.optString("proofValue", null);
+            if (proofValue != null && proofValue.startsWith("z")) {
+                byte[] signatureValue = Encoding.decodeBase58(proofValue.substring(1));
+                SignaturePool.Slots slots = pool.slots(jcaAlgorithm(publicKey), publicKey);
+                return new ProofCheck(slots, slots.acquire(), false, signatureValue);
+            }
+            throw new GeneralSecurityException("Proof has no signature value");
+        }
+
+        // data is signingData(credential). The Signature goes back to the
+        // pool only if this returns; a check that is never run simply drops it.
+        boolean verify(byte[] data) throws GeneralSecurityException {
+            signature.update(encodePayload ? Encoding.encodeBase64Url(data).getBytes(StandardCharsets.US_ASCII) : data);
+            boolean valid = signature.verify(signatureValue);
+            slots.release(signature);
+            return valid;
+        }
+    }
+
+    // Proof input: SHA-256(canonical proof options) || SHA-256(canonical document), from
+    // the UTF-8 credential. This has the shape of the Linked Data proof input, but the
+    // canonical form is JCS-style JSON (sorted keys, see StreamingCanonicalizer), not
+    // URDNA2015 N-Quads, so it only matches proofs made the same way. Real RDF
+    // canonicalization would need JSON-LD expansion with every context bundled.
+    static byte[] signingData(byte[] credential) throws JSONException {
+        StreamingCanonicalizer canonicalizer = StreamingCanonicalizer.forCurrentThread();
+        int document = canonicalizer.parse(credential);
+        int proof = canonicalizer.member(document, "proof");
+        int context = canonicalizer.member(document, "@context");
+        if (!canonicalizer.isObject(proof) || context < 0) {
+            throw new JSONException("Credential has no proof or @context");
+        }
+        byte[] data = new byte[64];
+        canonicalizer.digestObject(proof, PROOF_OPTIONS_EXCLUDED, "@context", context, data, 0);
+        canonicalizer.digestObject(document, DOCUMENT_EXCLUDED, null, -1, data, 32);
+        return data;
+    }
+
+    private static String jcaAlgorithm(String jwsAlgorithm) throws GeneralSecurityException {
+        if ("EdDSA".equals(jwsAlgorithm)) {
+            return "Ed25519";
+        } else if ("RS256".equals(jwsAlgorithm)) {
+            return "SHA256withRSA";
+        }
+        throw new GeneralSecurityException("Unsupported signature algorithm: " + jwsAlgorithm);
+    }
+
+    private static String jcaAlgorithm(PublicKey publicKey) throws GeneralSecurityException {
+        String keyAlgorithm = publicKey.getAlgorithm();
+        if ("Ed25519".equals(keyAlgorithm) || "EdDSA".equals(keyAlgorithm)) {
+            return "Ed25519";
+        }
+        throw new GeneralSecurityException("Unsupported proofValue key: " + keyAlgorithm);
+    }
+
+    static String issuerId(JSONObject credential) {
+        Object issuer = credential.opt("issuer");
+        if (issuer instanceof JSONObject) {
+            return ((JSONObject) issuer).optString("id", null);
+        }
+        return issuer instanceof String ? (String) issuer : null;
+    }
+
+    static String sanitize(String payload) {
+        StringBuilder sb = new StringBuilder(Math.min(payload.length(), MAX_PAYLOAD_LENGTH));
+        for (int i = 0; i < payload.length() && sb.length() < MAX_PAYLOAD_LENGTH; i++) {
+            char c = payload.charAt(i);
+            if (c != '<' && c != '>') {
+                sb.append(c);
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    private static void addAll(JSONArray values, List<String> target) {
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < values.length(); i++) {
+            String value = values.optString(i, null);
+            if (value != null) {
+                target.add(value);
+            }
+        }
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
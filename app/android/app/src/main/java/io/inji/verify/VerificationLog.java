@@ -1,24 +1,54 @@
 package io.inji.verify;
 
 public class VerificationLog {
-    private String hash;
+    // Set on the log writer thread, read on the UI and paging threads
+    private volatile long id;
+    // SHA-256 of the sanitized payload, see HashingService
+    private byte[] hash;
+    private String hashHex;
+    private String shortHash;
     private String status;
+    private String message;
     private long timestamp;
     private boolean synced;
     
-    public VerificationLog(String hash, String status, long timestamp, boolean synced) {
+    public VerificationLog(byte[] hash, String status, long timestamp, boolean synced) {
         this.hash = hash;
         this.status = status;
         this.timestamp = timestamp;
         this.synced = synced;
     }
     
-    public String getHash() {
+    public VerificationLog(byte[] hash, String status, String message, long timestamp, boolean synced) {
+        this(hash, status, timestamp, synced);
+        this.message = message;
+    }
+    
+    // Row id assigned by LogStore; 0 until persisted
+    public long getId() {
+        return id;
+    }
+    
+    public void setId(long id) {
+        this.id = id;
+    }
+    
+    public byte[] getHash() {
         return hash;
     }
     
-    public void setHash(String hash) {
+    public void setHash(byte[] hash) {
         this.hash = hash;
+        this.hashHex = null;
+        this.shortHash = null;
+    }
+    
+    // Hex form, derived on first use only (sync, export, display)
+    public String getHashHex() {
+        if (hashHex == null) {
+            hashHex = Encoding.toHex(hash);
+        }
+        return hashHex;
     }
     
     public String getStatus() {
@@ -29,6 +59,14 @@ public class VerificationLog {
         this.status = status;
     }
     
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
     public long getTimestamp() {
         return timestamp;
     }
@@ -46,24 +84,15 @@ public class VerificationLog {
     }
     
     public String getFormattedTimestamp() {
-        long now = System.currentTimeMillis();
-        long diff = now - timestamp;
-        
-        if (diff < 60000) { // Less than 1 minute
-            return "Just now";
-        } else if (diff < 3600000) { // Less than 1 hour
-            return (diff / 60000) + " minutes ago";
-        } else if (diff < 86400000) { // Less than 1 day
-            return (diff / 3600000) + " hours ago";
-        } else {
-            return (diff / 86400000) + " days ago";
-        }
+        return RelativeTimeFormatter.format(timestamp, System.currentTimeMillis());
     }
     
+    // Cached too, since the log list binds it on every scroll
     public String getShortHash() {
-        if (hash.length() > 12) {
-            return hash.substring(0, 12) + "...";
+        if (shortHash == null) {
+            String hex = getHashHex();
+            shortHash = hex.length() > 12 ? hex.substring(0, 12) + "..." : hex;
         }
-        return hash;
+        return shortHash;
     }
 }
@@ -0,0 +1,62 @@
+package io.inji.verify;
+
+public class VerificationResult {
+    private final boolean success;
+    private final String message;
+    private final byte[] payloadHash;
+    private final long credentialExpiresAt;
+    // Says nothing about the credential (e.g. the check was interrupted); never cached
+    private final boolean transientFailure;
+
+    private VerificationResult(boolean success, String message, byte[] payloadHash, long credentialExpiresAt,
+                               boolean transientFailure) {
+        this.success = success;
+        this.message = message;
+        this.payloadHash = payloadHash;
+        this.credentialExpiresAt = credentialExpiresAt;
+        this.transientFailure = transientFailure;
+    }
+
+    public static VerificationResult success(String message) {
+        return new VerificationResult(true, message, null, Long.MAX_VALUE, false);
+    }
+
+    public static VerificationResult failure(String message) {
+        return new VerificationResult(false, message, null, Long.MAX_VALUE, false);
+    }
+
+    static VerificationResult transientFailure(String message) {
+        return new VerificationResult(false, message, null, Long.MAX_VALUE, true);
+    }
+
+    // Copy that stops being valid at expiresAt: when the verified credential or its
+    // issuer key expires, or when a not-yet-valid credential becomes valid
+    VerificationResult expiringAt(long expiresAt) {
+        return new VerificationResult(success, message, payloadHash, expiresAt, transientFailure);
+    }
+
+    VerificationResult withPayloadHash(byte[] hash) {
+        return new VerificationResult(success, message, hash, credentialExpiresAt, transientFailure);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // SHA-256 of the sanitized payload (see HashingService.hashPayload)
+    public byte[] getPayloadHash() {
+        return payloadHash;
+    }
+
+    long getCredentialExpiresAt() {
+        return credentialExpiresAt;
+    }
+
+    boolean isTransientFailure() {
+        return transientFailure;
+    }
+}
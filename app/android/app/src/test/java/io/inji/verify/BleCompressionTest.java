@@ -0,0 +1,139 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+public class BleCompressionTest {
+
+    private static final byte[] NONCE = new byte[16];
+    private static final long ISSUED_AT = 1735795006000L;
+
+    @Test
+    public void vcPacket_roundTrips() throws Exception {
+        byte[] packet = samplePacket();
+        byte[] compressed = BleCompression.compress(packet, BleCompression.CODEC_DEFLATE);
+
+        assertArrayEquals(packet, BleCompression.decompress(compressed, compressed.length,
+            BleCompression.CODEC_DEFLATE, BleReceiver.DEFAULT_CAPACITY));
+        assertTrue(compressed.length + " vs " + packet.length, compressed.length < packet.length);
+    }
+
+    @Test
+    public void presetDictionary_beatsPlainDeflate() throws Exception {
+        byte[] packet = samplePacket();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(packet);
+        deflater.finish();
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        while (!deflater.finished()) {
+            plain.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+
+        int withDictionary = BleCompression.compress(packet, BleCompression.CODEC_DEFLATE).length;
+        assertTrue(withDictionary + " vs " + plain.size(), withDictionary < plain.size());
+    }
+
+    @Test
+    public void compressedTransfer_putsFewerBytesOnAir() throws Exception {
+        byte[] packet = samplePacket();
+        byte[] compressed = BleCompression.compress(packet, BleCompression.CODEC_DEFLATE);
+
+        TransferStats plain = transfer(packet, BleCompression.CODEC_NONE, BleFrames.DEFAULT_MTU);
+        TransferStats deflated = transfer(compressed, BleCompression.CODEC_DEFLATE, BleFrames.DEFAULT_MTU);
+        assertTrue(deflated + " vs " + plain, deflated.getBytesOnAir() < plain.getBytesOnAir());
+        assertTrue(deflated + " vs " + plain, deflated.getFrames() < plain.getFrames());
+    }
+
+    @Test
+    public void handshake_fallsBackToUncompressed() {
+        assertEquals(BleCompression.CODEC_NONE, BleCompression.choose(BleFrames.capsCodecs(null)));
+        assertEquals(BleCompression.CODEC_NONE, BleCompression.choose(BleFrames.capsCodecs(new byte[] {1})));
+        assertEquals(BleCompression.CODEC_NONE, BleCompression.choose(BleFrames.capsCodecs(new byte[] {1, 0x40})));
+        assertEquals(BleCompression.CODEC_DEFLATE,
+            BleCompression.choose(BleFrames.capsCodecs(BleFrames.caps(BleCompression.SUPPORTED_CODECS))));
+    }
+
+    @Test
+    public void startWithoutCodecByte_isUncompressed() {
+        // As written by a wallet from before the codec byte existed
+        byte[] start = new byte[BleFrames.START_LENGTH];
+        BleFrames.writeStart(start, 3, 20, 4, BleCompression.CODEC_DEFLATE);
+        ArrayDeque<byte[]> acks = new ArrayDeque<>();
+        BleReceiver receiver = new BleReceiver(64, (frame, length) -> acks.add(Arrays.copyOf(frame, length)));
+
+        assertFalse(receiver.onFrame(start, BleFrames.MIN_START_LENGTH));
+        assertTrue(receiver.onFrame(new byte[] {BleFrames.TYPE_DATA, 0, 0, 7, 8, 9}, 6));
+        assertEquals(BleCompression.CODEC_NONE, receiver.codec());
+    }
+
+    @Test
+    public void unknownCodec_isAborted() {
+        byte[] start = new byte[BleFrames.START_LENGTH];
+        BleFrames.writeStart(start, 3, 20, 4, 5);
+        ArrayDeque<byte[]> replies = new ArrayDeque<>();
+        BleReceiver receiver = new BleReceiver(64, (frame, length) -> replies.add(Arrays.copyOf(frame, length)));
+
+        assertFalse(receiver.onFrame(start, start.length));
+        assertEquals(BleFrames.REASON_PROTOCOL, receiver.getFailure());
+        assertEquals(BleFrames.TYPE_ABORT, replies.poll()[0]);
+    }
+
+    @Test
+    public void corruptOrOversizedInput_isRejected() throws Exception {
+        byte[] compressed = BleCompression.compress(samplePacket(), BleCompression.CODEC_DEFLATE);
+        byte[] garbage = new byte[64];
+        Arrays.fill(garbage, (byte) 0xff);
+        byte[] bomb = BleCompression.compress(new byte[1 << 20], BleCompression.CODEC_DEFLATE);
+        Object[][] bad = {
+            {compressed, compressed.length - 10, 4096},
+            {garbage, garbage.length, 4096},
+            {bomb, bomb.length, BleReceiver.DEFAULT_CAPACITY},
+            {compressed, compressed.length, 100},
+        };
+        for (Object[] input : bad) {
+            try {
+                BleCompression.decompress((byte[]) input[0], (Integer) input[1], BleCompression.CODEC_DEFLATE,
+                    (Integer) input[2]);
+                fail("Accepted " + input[1] + " bytes");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static byte[] samplePacket() throws Exception {
+        return VcCodec.encode(VcCodecTest.farmerCredential(), NONCE, ISSUED_AT);
+    }
+
+    // A lossless back-to-back transfer; returns the sender's stats
+    private static TransferStats transfer(byte[] payload, int codec, int mtu) {
+        ArrayDeque<byte[]> toReceiver = new ArrayDeque<>();
+        ArrayDeque<byte[]> toSender = new ArrayDeque<>();
+        BleReceiver receiver = new BleReceiver(BleReceiver.DEFAULT_CAPACITY,
+            (frame, length) -> toSender.add(Arrays.copyOf(frame, length)));
+        BleSender sender = new BleSender(payload, payload.length, codec, mtu, BleSender.DEFAULT_WINDOW,
+            (frame, length) -> toReceiver.add(Arrays.copyOf(frame, length)));
+        sender.pump();
+        while (!sender.isFinished()) {
+            byte[] frame = toReceiver.poll();
+            if (frame != null) {
+                receiver.onFrame(frame, frame.length);
+            } else {
+                frame = toSender.poll();
+                assertNotNull("Transfer stalled", frame);
+                sender.onFrame(frame, frame.length);
+            }
+        }
+        assertTrue(sender.isComplete());
+        assertEquals(codec, receiver.codec());
+        assertArrayEquals(payload, Arrays.copyOf(receiver.buffer(), receiver.length()));
+        return sender.getStats();
+    }
+}
@@ -0,0 +1,177 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class BleSessionManagerTest {
+
+    private final Map<String, byte[]> received = new HashMap<>();
+    private final List<String> failed = new ArrayList<>();
+    private final BleSessionManager manager = new BleSessionManager(3, 16 * 1024, new BleSessionManager.Listener() {
+        @Override
+        public void onPayload(String sessionId, byte[] payload, TransferStats stats) {
+            received.put(sessionId, payload);
+        }
+
+        @Override
+        public void onSessionFailed(String sessionId, String message) {
+            failed.add(sessionId + ": " + message);
+        }
+    });
+
+    @Test
+    public void interleavedWallets_eachGetTheirOwnPayload() {
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Wallet wallet = new Wallet("wallet-" + i, payload(3000 + i * 1500, i), 100 + i * 80);
+            assertTrue(manager.open(wallet.id, wallet.acks, 0));
+            wallets.add(wallet);
+        }
+        runRoundRobin(wallets, 0);
+
+        for (Wallet wallet : wallets) {
+            assertTrue(wallet.id, wallet.sender.isComplete());
+            assertArrayEquals(wallet.payload, received.get(wallet.id));
+        }
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    public void fullManager_refusesUntilVerified() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(manager.open("wallet-" + i, (frame, length) -> true, 0));
+        }
+        assertFalse(manager.hasCapacity());
+        assertFalse(manager.open("late", (frame, length) -> true, 0));
+
+        // A finished transfer keeps its slot until its payload is verified
+        Wallet wallet = new Wallet("wallet-0", payload(500, 1), 185);
+        runRoundRobin(Arrays.asList(wallet), 0);
+        manager.close("wallet-0");
+        assertFalse(manager.open("late", (frame, length) -> true, 0));
+        manager.verified();
+        assertTrue(manager.open("late", (frame, length) -> true, 0));
+    }
+
+    @Test
+    public void stalledWallet_timesOutWithoutBlockingOthers() {
+        Wallet slow = new Wallet("slow", payload(4000, 2), 185);
+        Wallet fast = new Wallet("fast", payload(4000, 3), 185);
+        assertTrue(manager.open(slow.id, slow.acks, 0));
+        assertTrue(manager.open(fast.id, fast.acks, 0));
+
+        // The slow wallet sends its first window and then goes quiet
+        slow.sender.pump();
+        slow.deliver(manager, 10);
+        runRoundRobin(Arrays.asList(fast), 10);
+        assertTrue(fast.sender.isComplete());
+
+        assertTrue(manager.expire(BleSessionManager.IDLE_TIMEOUT_MS - 1).isEmpty());
+        assertEquals(Arrays.asList("slow", "fast"), manager.expire(BleSessionManager.IDLE_TIMEOUT_MS + 10));
+        assertEquals(Arrays.asList("slow: Wallet timed out"), failed);
+        assertFalse(received.containsKey("slow"));
+
+        // The slow wallet is told the session is over
+        slow.drainAcks();
+        assertEquals(BleFrames.REASON_CANCELLED, slow.sender.getAbortReason());
+    }
+
+    @Test
+    public void slots_areReusedAcrossSessions() {
+        for (int round = 0; round < 5; round++) {
+            Wallet wallet = new Wallet("wallet-" + round, payload(2000, round), 185);
+            assertTrue(manager.open(wallet.id, wallet.acks, round));
+            runRoundRobin(Arrays.asList(wallet), round);
+            manager.close(wallet.id);
+            manager.verified();
+            assertArrayEquals(wallet.payload, received.get(wallet.id));
+        }
+        assertEquals(1, manager.allocatedSlots());
+        assertEquals(0, manager.activeSessions());
+    }
+
+    @Test
+    public void disconnectMidTransfer_isReported() {
+        Wallet wallet = new Wallet("wallet", payload(5000, 4), 185);
+        assertTrue(manager.open(wallet.id, wallet.acks, 0));
+        wallet.sender.pump();
+        wallet.deliver(manager, 0);
+        manager.close(wallet.id);
+        assertEquals(Arrays.asList("wallet: Wallet disconnected"), failed);
+        assertTrue(manager.hasCapacity());
+    }
+
+    // One frame from each wallet in turn, the way a GATT server sees concurrent links
+    private void runRoundRobin(List<Wallet> wallets, long now) {
+        for (Wallet wallet : wallets) {
+            wallet.sender.pump();
+        }
+        for (int step = 0; step < 100000; step++) {
+            boolean busy = false;
+            for (Wallet wallet : wallets) {
+                if (wallet.sender.isFinished()) {
+                    continue;
+                }
+                busy = true;
+                byte[] frame = wallet.writes.poll();
+                if (frame != null) {
+                    manager.onFrame(wallet.id, frame, frame.length, now);
+                } else if (!wallet.drainAcks()) {
+                    wallet.sender.onTimeout();
+                }
+            }
+            if (!busy) {
+                return;
+            }
+        }
+        fail("Transfers did not finish");
+    }
+
+    private static byte[] payload(int size, int seed) {
+        byte[] payload = new byte[size];
+        new Random(seed).nextBytes(payload);
+        return payload;
+    }
+
+    private static final class Wallet {
+        final String id;
+        final byte[] payload;
+        final ArrayDeque<byte[]> writes = new ArrayDeque<>();
+        final ArrayDeque<byte[]> notifications = new ArrayDeque<>();
+        final BleFrames.Channel acks = (frame, length) -> notifications.add(Arrays.copyOf(frame, length));
+        final BleSender sender;
+
+        Wallet(String id, byte[] payload, int mtu) {
+            this.id = id;
+            this.payload = payload;
+            this.sender = new BleSender(payload, payload.length, mtu, BleSender.DEFAULT_WINDOW,
+                (frame, length) -> writes.add(Arrays.copyOf(frame, length)));
+        }
+
+        void deliver(BleSessionManager manager, long now) {
+            while (!writes.isEmpty()) {
+                byte[] frame = writes.poll();
+                manager.onFrame(id, frame, frame.length, now);
+            }
+        }
+
+        boolean drainAcks() {
+            boolean any = false;
+            while (!notifications.isEmpty()) {
+                byte[] frame = notifications.poll();
+                sender.onFrame(frame, frame.length);
+                any = true;
+            }
+            return any;
+        }
+    }
+}
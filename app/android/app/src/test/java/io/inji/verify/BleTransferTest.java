@@ -0,0 +1,191 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+// BleSender and BleReceiver wired back to back through an in-process link
+public class BleTransferTest {
+
+    @Test
+    public void losslessTransfer_reassemblesPayload() {
+        byte[] payload = randomPayload(10000);
+        FakeLink link = new FakeLink();
+        BleReceiver receiver = new BleReceiver(BleReceiver.DEFAULT_CAPACITY, link.toSender);
+        BleSender sender = new BleSender(payload, payload.length, 185, BleSender.DEFAULT_WINDOW, link.toReceiver);
+
+        link.run(sender, receiver);
+
+        assertTrue(sender.isComplete());
+        assertReceived(payload, receiver);
+        int chunk = BleFrames.chunkSize(185);
+        TransferStats stats = sender.getStats();
+        assertEquals(1 + (payload.length + chunk - 1) / chunk, stats.getFrames());
+        assertEquals(0, stats.getResentFrames());
+        assertEquals(payload.length + BleFrames.START_LENGTH
+            + (stats.getFrames() - 1) * BleFrames.DATA_HEADER, stats.getBytesOnAir());
+        assertEquals(stats.getFrames(), receiver.getStats().getFrames());
+    }
+
+    @Test
+    public void defaultMtu_stillTransfers() {
+        byte[] payload = randomPayload(563);
+        FakeLink link = new FakeLink();
+        BleReceiver receiver = new BleReceiver(1024, link.toSender);
+        BleSender sender = new BleSender(payload, payload.length, BleFrames.DEFAULT_MTU, 4, link.toReceiver);
+
+        link.run(sender, receiver);
+
+        assertTrue(sender.isComplete());
+        assertReceived(payload, receiver);
+    }
+
+    @Test
+    public void droppedDataFrames_areResent() {
+        byte[] payload = randomPayload(20000);
+        FakeLink link = new FakeLink();
+        link.dropDataEvery = 7;
+        BleReceiver receiver = new BleReceiver(BleReceiver.DEFAULT_CAPACITY, link.toSender);
+        BleSender sender = new BleSender(payload, payload.length, 247, BleSender.DEFAULT_WINDOW, link.toReceiver);
+
+        link.run(sender, receiver);
+
+        assertTrue(sender.isComplete());
+        assertReceived(payload, receiver);
+        assertTrue(sender.getStats().getResentFrames() > 0);
+    }
+
+    @Test
+    public void droppedAcks_recoverOnTimeout() {
+        byte[] payload = randomPayload(5000);
+        FakeLink link = new FakeLink();
+        link.dropAckEvery = 2;
+        BleReceiver receiver = new BleReceiver(BleReceiver.DEFAULT_CAPACITY, link.toSender);
+        BleSender sender = new BleSender(payload, payload.length, 100, 6, link.toReceiver);
+
+        link.run(sender, receiver);
+
+        assertTrue(sender.isComplete());
+        assertReceived(payload, receiver);
+        assertTrue(link.timeouts > 0);
+    }
+
+    @Test
+    public void busyLink_resumesWhenWritable() {
+        byte[] payload = randomPayload(8000);
+        FakeLink link = new FakeLink();
+        link.busyEvery = 3;
+        BleReceiver receiver = new BleReceiver(BleReceiver.DEFAULT_CAPACITY, link.toSender);
+        BleSender sender = new BleSender(payload, payload.length, 185, BleSender.DEFAULT_WINDOW, link.toReceiver);
+
+        link.run(sender, receiver);
+
+        assertTrue(sender.isComplete());
+        assertReceived(payload, receiver);
+        assertEquals(0, sender.getStats().getResentFrames());
+    }
+
+    @Test
+    public void oversizedPayload_isRefused() {
+        byte[] payload = randomPayload(2000);
+        FakeLink link = new FakeLink();
+        BleReceiver receiver = new BleReceiver(1000, link.toSender);
+        BleSender sender = new BleSender(payload, payload.length, 185, BleSender.DEFAULT_WINDOW, link.toReceiver);
+
+        link.run(sender, receiver);
+
+        assertFalse(sender.isComplete());
+        assertEquals(BleFrames.REASON_TOO_LARGE, sender.getAbortReason());
+        assertEquals(BleFrames.REASON_TOO_LARGE, receiver.getFailure());
+    }
+
+    @Test
+    public void receiver_isReusableAfterReset() {
+        FakeLink link = new FakeLink();
+        BleReceiver receiver = new BleReceiver(BleReceiver.DEFAULT_CAPACITY, link.toSender);
+        byte[] buffer = receiver.buffer();
+        for (int size : new int[] {3000, 0, 700}) {
+            byte[] payload = randomPayload(size);
+            BleSender sender = new BleSender(payload, payload.length, 185, BleSender.DEFAULT_WINDOW, link.toReceiver);
+            link.run(sender, receiver);
+            assertTrue(sender.isComplete());
+            assertReceived(payload, receiver);
+            receiver.reset();
+        }
+        assertSame(buffer, receiver.buffer());
+    }
+
+    private static void assertReceived(byte[] payload, BleReceiver receiver) {
+        assertTrue(receiver.isComplete());
+        assertEquals(payload.length, receiver.length());
+        assertArrayEquals(payload, Arrays.copyOf(receiver.buffer(), receiver.length()));
+    }
+
+    private static byte[] randomPayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    // Ordered in-memory link with optional frame loss and write backpressure
+    private static final class FakeLink {
+        final ArrayDeque<byte[]> receiverInbox = new ArrayDeque<>();
+        final ArrayDeque<byte[]> senderInbox = new ArrayDeque<>();
+        int dropDataEvery;
+        int dropAckEvery;
+        int busyEvery;
+        int timeouts;
+        private int dataWrites;
+        private int ackWrites;
+        private int attempts;
+        private boolean busy;
+
+        final BleFrames.Channel toReceiver = (frame, length) -> {
+            if (busy || (busyEvery > 0 && ++attempts % busyEvery == 0)) {
+                busy = true;
+                return false;
+            }
+            if (frame[0] == BleFrames.TYPE_DATA && dropDataEvery > 0 && ++dataWrites % dropDataEvery == 0) {
+                return true;
+            }
+            receiverInbox.add(Arrays.copyOf(frame, length));
+            return true;
+        };
+
+        final BleFrames.Channel toSender = (frame, length) -> {
+            if (frame[0] == BleFrames.TYPE_ACK && dropAckEvery > 0 && ++ackWrites % dropAckEvery == 0) {
+                return true;
+            }
+            senderInbox.add(Arrays.copyOf(frame, length));
+            return true;
+        };
+
+        void run(BleSender sender, BleReceiver receiver) {
+            sender.pump();
+            for (int step = 0; step < 100000 && !sender.isFinished(); step++) {
+                if (!receiverInbox.isEmpty()) {
+                    byte[] frame = receiverInbox.poll();
+                    receiver.onFrame(frame, frame.length);
+                } else if (!senderInbox.isEmpty()) {
+                    byte[] frame = senderInbox.poll();
+                    sender.onFrame(frame, frame.length);
+                } else if (busy) {
+                    busy = false;
+                    sender.pump();
+                } else {
+                    timeouts++;
+                    sender.onTimeout();
+                }
+            }
+            // Drain anything still in flight, e.g. the final ABORT
+            while (!senderInbox.isEmpty()) {
+                byte[] frame = senderInbox.poll();
+                sender.onFrame(frame, frame.length);
+            }
+        }
+    }
+}
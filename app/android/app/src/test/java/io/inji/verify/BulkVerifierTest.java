@@ -0,0 +1,191 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class BulkVerifierTest {
+
+    private static final int CREDENTIALS = 40;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private KeyPair keyPair;
+    private ForkJoinPool pool;
+    private BulkVerifier verifier;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        File indexFile = temporaryFolder.newFile("revocation.idx");
+        RevocationIndex.build(indexFile, Collections.singletonList("urn:uuid:revoked"));
+        pool = new ForkJoinPool(4);
+        verifier = new BulkVerifier(new VerificationEngine(
+            TrustStore.fromJson(VerificationEngineTest.trustBundle(keyPair)), RevocationIndex.open(indexFile)), pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void directory_reportsEveryCredentialOnce() throws Exception {
+        File dir = temporaryFolder.newFolder("vcs");
+        for (int i = 0; i < CREDENTIALS; i++) {
+            write(new File(dir, "vc-" + i + ".json"), credential(i));
+        }
+        write(new File(dir, "notes.txt"), "not a credential");
+        Map<String, VerificationResult> results = new ConcurrentHashMap<>();
+
+        BulkVerifier.Summary summary = verifier.verify(BulkVerifier.files(dir), collect(results),
+            VerificationEngineTest.NOW);
+
+        assertEquals(CREDENTIALS, summary.total);
+        assertEquals(CREDENTIALS - 2, summary.verified);
+        assertEquals(CREDENTIALS, results.size());
+        assertEquals(VerificationEngine.MESSAGE_SIGNATURE_MISMATCH, results.get("vc-3.json").getMessage());
+        assertEquals("Credential has been revoked", results.get("vc-7.json").getMessage());
+        assertTrue(results.get("vc-0.json").isSuccess());
+        assertTrue(summary.credentialsPerSecond() > 0);
+    }
+
+    @Test
+    public void zip_givesSameResultsAsDirectory() throws Exception {
+        File file = temporaryFolder.newFile("vcs.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry("batch/"));
+            for (int i = 0; i < CREDENTIALS; i++) {
+                out.putNextEntry(new ZipEntry("batch/vc-" + i + ".json"));
+                out.write(credential(i).getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            out.close();
+        }
+        Map<String, VerificationResult> results = new ConcurrentHashMap<>();
+
+        ZipFile zip = new ZipFile(file);
+        BulkVerifier.Summary summary;
+        try {
+            summary = verifier.verify(BulkVerifier.entries(zip), collect(results), VerificationEngineTest.NOW);
+        } finally {
+            zip.close();
+        }
+
+        assertEquals(CREDENTIALS, summary.total);
+        assertEquals(CREDENTIALS - 2, summary.verified);
+        assertEquals(VerificationEngine.MESSAGE_SIGNATURE_MISMATCH, results.get("batch/vc-3.json").getMessage());
+    }
+
+    @Test
+    public void oversizedFile_isRejectedWithoutReadingItAll() {
+        final int[] read = new int[1];
+        BulkVerifier.Item endless = new BulkVerifier.Item() {
+            @Override
+            public String name() {
+                return "endless.json";
+            }
+
+            @Override
+            public InputStream open() {
+                return new InputStream() {
+                    @Override
+                    public int read() {
+                        read[0]++;
+                        return ' ';
+                    }
+                };
+            }
+        };
+        Map<String, VerificationResult> results = new ConcurrentHashMap<>();
+
+        verifier.verify(Collections.singletonList(endless), collect(results), VerificationEngineTest.NOW);
+
+        assertEquals("Payload too large", results.get("endless.json").getMessage());
+        assertTrue(read[0] <= BulkVerifier.MAX_FILE_BYTES + 8192);
+    }
+
+    @Test
+    public void results_streamIntoLogWriter() throws Exception {
+        File dir = temporaryFolder.newFolder("vcs");
+        for (int i = 0; i < CREDENTIALS; i++) {
+            write(new File(dir, "vc-" + i + ".json"), credential(i));
+        }
+        final List<VerificationLog> logs = Collections.synchronizedList(new ArrayList<VerificationLog>());
+        LogWriter writer = new LogWriter(batch -> logs.addAll(batch));
+
+        verifier.verify(BulkVerifier.files(dir), BulkVerifier.logTo(writer), VerificationEngineTest.NOW);
+        assertTrue(writer.flush(5000));
+
+        assertEquals(CREDENTIALS, logs.size());
+        int failures = 0;
+        for (VerificationLog log : logs) {
+            assertTrue(log.getMessage(), log.getMessage().startsWith("vc-"));
+            assertEquals(HashingService.HASH_LENGTH, log.getHash().length);
+            if ("failure".equals(log.getStatus())) {
+                failures++;
+            }
+        }
+        assertEquals(2, failures);
+        writer.close(1000);
+    }
+
+    @Test
+    public void closedLogWriter_dropsResultsWithoutFailingTheBatch() throws Exception {
+        File dir = temporaryFolder.newFolder("vcs");
+        for (int i = 0; i < CREDENTIALS; i++) {
+            write(new File(dir, "vc-" + i + ".json"), credential(i));
+        }
+        LogWriter writer = new LogWriter(batch -> fail("committed after close"));
+        writer.close(1000);
+
+        BulkVerifier.Summary summary = verifier.verify(BulkVerifier.files(dir), BulkVerifier.logTo(writer),
+            VerificationEngineTest.NOW);
+
+        assertEquals(CREDENTIALS - 2, summary.verified);
+        assertEquals(CREDENTIALS, writer.getDroppedCount());
+    }
+
+    // vc-3 is tampered with after signing and vc-7 is revoked
+    private String credential(int i) throws Exception {
+        String id = i == 7 ? "urn:uuid:revoked" : "urn:uuid:" + i;
+        String json = VerificationEngineTest.signedCredential(keyPair, id).toString();
+        return i == 3 ? json.replace("Mary Smith", "Mary Smyth") : json;
+    }
+
+    private static BulkVerifier.Listener collect(final Map<String, VerificationResult> results) {
+        return (name, result) -> assertNull(name + " reported twice", results.put(name, result));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+public class EmbeddingStoreTest {
+
+    private static final int EMBEDDING_SIZE = 8;
+
+    @Test
+    public void embeddings_surviveReopening() throws Exception {
+        File file = tempFile();
+        EmbeddingStore store = EmbeddingStore.open(file, EMBEDDING_SIZE, 16);
+        store.put(FaceMatchEngineTest.digest("holder-1"), embedding(1));
+        store.put(FaceMatchEngineTest.digest("holder-2"), embedding(2));
+
+        EmbeddingStore reopened = EmbeddingStore.open(file, EMBEDDING_SIZE, 16);
+        float[] out = new float[EMBEDDING_SIZE];
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.get(FaceMatchEngineTest.digest("holder-2"), out));
+        assertArrayEquals(embedding(2), out, 0f);
+        assertFalse(reopened.get(FaceMatchEngineTest.digest("holder-3"), out));
+    }
+
+    @Test
+    public void fullStore_replacesLeastRecentlyUsed() throws Exception {
+        File file = tempFile();
+        EmbeddingStore store = EmbeddingStore.open(file, EMBEDDING_SIZE, 3);
+        float[] out = new float[EMBEDDING_SIZE];
+        for (int i = 0; i < 3; i++) {
+            store.put(FaceMatchEngineTest.digest("holder-" + i), embedding(i));
+        }
+        assertTrue(store.get(FaceMatchEngineTest.digest("holder-0"), out));
+        store.put(FaceMatchEngineTest.digest("holder-3"), embedding(3));
+
+        assertEquals(3, store.size());
+        assertFalse(store.get(FaceMatchEngineTest.digest("holder-1"), out));
+        // Recency is part of the file, not just the heap map
+        EmbeddingStore reopened = EmbeddingStore.open(file, EMBEDDING_SIZE, 3);
+        reopened.put(FaceMatchEngineTest.digest("holder-4"), embedding(4));
+        assertFalse(reopened.get(FaceMatchEngineTest.digest("holder-2"), out));
+        assertTrue(reopened.get(FaceMatchEngineTest.digest("holder-0"), out));
+        assertArrayEquals(embedding(0), out, 0f);
+    }
+
+    @Test
+    public void otherModel_startsOver() throws Exception {
+        File file = tempFile();
+        EmbeddingStore.open(file, EMBEDDING_SIZE, 4).put(FaceMatchEngineTest.digest("holder"), embedding(1));
+
+        EmbeddingStore store = EmbeddingStore.open(file, EMBEDDING_SIZE * 2, 4);
+        assertEquals(0, store.size());
+        assertFalse(store.get(FaceMatchEngineTest.digest("holder"), new float[EMBEDDING_SIZE * 2]));
+    }
+
+    @Test
+    public void returningHolder_onlyRunsModelOnLiveCapture() throws Exception {
+        File file = tempFile();
+        int[] runs = new int[1];
+        FaceMatchEngine.Model model = new FaceMatchEngine.Model() {
+            @Override
+            public int inputSize() {
+                return 2;
+            }
+
+            @Override
+            public int embeddingSize() {
+                return EMBEDDING_SIZE;
+            }
+
+            @Override
+            public void run(ByteBuffer input, float[] embedding) {
+                runs[0]++;
+                for (int i = 0; i < EMBEDDING_SIZE; i++) {
+                    embedding[i] = input.getFloat(0) + i;
+                }
+            }
+        };
+        byte[] subject = FaceMatchEngineTest.digest("holder");
+        int[] live = new int[4];
+
+        new FaceMatchEngine(model, EmbeddingStore.open(file, EMBEDDING_SIZE, 16))
+            .match(subject, pixels -> { }, live);
+        assertEquals(2, runs[0]);
+
+        // A week later, after a restart
+        FaceMatchEngine engine = new FaceMatchEngine(model, EmbeddingStore.open(file, EMBEDDING_SIZE, 16));
+        assertEquals(1f, engine.match(subject, pixels -> fail("photo decoded again"), live), 1e-6f);
+        assertEquals(3, runs[0]);
+    }
+
+    private static float[] embedding(int seed) {
+        float[] embedding = new float[EMBEDDING_SIZE];
+        for (int i = 0; i < EMBEDDING_SIZE; i++) {
+            embedding[i] = seed * 10 + i * 0.5f;
+        }
+        return embedding;
+    }
+
+    private static File tempFile() throws Exception {
+        File file = File.createTempFile("embeddings", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,131 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class FaceMatchEngineTest {
+
+    private static final int SIZE = 4;
+
+    // Embeds an image as its mean red, green and blue
+    private static final class MeanColourModel implements FaceMatchEngine.Model {
+        int runs;
+
+        @Override
+        public int inputSize() {
+            return SIZE;
+        }
+
+        @Override
+        public int embeddingSize() {
+            return 3;
+        }
+
+        @Override
+        public void run(ByteBuffer input, float[] embedding) {
+            runs++;
+            embedding[0] = 0;
+            embedding[1] = 0;
+            embedding[2] = 0;
+            for (int i = 0; i < SIZE * SIZE; i++) {
+                embedding[0] += input.getFloat();
+                embedding[1] += input.getFloat();
+                embedding[2] += input.getFloat();
+            }
+        }
+    }
+
+    @Test
+    public void cosineSimilarity_matchesDefinition() {
+        float[] a = {1, 2, 3, 99};
+        float[] b = {2, 4, 6, -7};
+        assertEquals(1f, FaceMatchEngine.cosineSimilarity(a, b, 3), 1e-6f);
+        assertEquals(-1f, FaceMatchEngine.cosineSimilarity(a, new float[] {-1, -2, -3}, 3), 1e-6f);
+        assertEquals(0f, FaceMatchEngine.cosineSimilarity(new float[] {1, 0}, new float[] {0, 5}, 2), 1e-6f);
+        assertEquals(0f, FaceMatchEngine.cosineSimilarity(a, new float[3], 3), 0f);
+    }
+
+    @Test
+    public void sameFace_matchesAndDifferentFaceDoesNot() {
+        FaceMatchEngine engine = new FaceMatchEngine(new MeanColourModel(), 4);
+        int[] reddish = image(0xffe04020);
+
+        assertEquals(1f, engine.match(digest("vc-1"), pixels -> fill(pixels, 0xffe04020), reddish), 1e-5f);
+        assertTrue(engine.match(digest("vc-2"), pixels -> fill(pixels, 0xff2040e0), reddish)
+            < FaceMatchEngine.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    public void referenceEmbedding_isComputedOncePerCredential() {
+        MeanColourModel model = new MeanColourModel();
+        FaceMatchEngine engine = new FaceMatchEngine(model, 4);
+        int[] reads = new int[1];
+        FaceMatchEngine.Reference reference = pixels -> {
+            reads[0]++;
+            fill(pixels, 0xff808080);
+        };
+
+        for (int i = 0; i < 5; i++) {
+            engine.match(digest("vc-1"), reference, image(0xff7f8081));
+        }
+        assertEquals(1, reads[0]);
+        assertEquals(6, model.runs);
+    }
+
+    @Test
+    public void referenceCache_evictsLeastRecentlyUsed() {
+        FaceMatchEngine engine = new FaceMatchEngine(new MeanColourModel(), 2);
+        int[] live = image(0xff102030);
+        engine.match(digest("a"), pixels -> fill(pixels, 0xff102030), live);
+        engine.match(digest("b"), pixels -> fill(pixels, 0xff302010), live);
+        engine.match(digest("a"), pixels -> fail("a is cached"), live);
+        engine.match(digest("c"), pixels -> fill(pixels, 0xff203010), live);
+
+        int[] reads = new int[1];
+        engine.match(digest("b"), pixels -> {
+            reads[0]++;
+            fill(pixels, 0xff302010);
+        }, live);
+        assertEquals(1, reads[0]);
+        // b reused the array evicted with it; c must be untouched
+        assertEquals(1f, engine.match(digest("c"), pixels -> fail("c is cached"), image(0xff203010)), 1e-5f);
+    }
+
+    @Test
+    public void unusablePhoto_isNotCached() {
+        FaceMatchEngine engine = new FaceMatchEngine(new MeanColourModel(), 2);
+        try {
+            engine.match(digest("vc-1"), pixels -> {
+                throw new IllegalArgumentException("Unreadable credential photo");
+            }, image(0xff000000));
+            fail("Matched without a photo");
+        } catch (IllegalArgumentException expected) {
+        }
+        int[] reads = new int[1];
+        engine.match(digest("vc-1"), pixels -> {
+            reads[0]++;
+            fill(pixels, 0xff000000);
+        }, image(0xff000000));
+        assertEquals(1, reads[0]);
+    }
+
+    static byte[] digest(String subject) {
+        return HashingService.sha256(subject.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int[] image(int argb) {
+        int[] pixels = new int[SIZE * SIZE];
+        fill(pixels, argb);
+        return pixels;
+    }
+
+    private static void fill(int[] pixels, int argb) {
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = argb;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FrameRingTest {
+
+    private static class RecordingRecycler implements FrameRing.Recycler {
+        final List<byte[]> recycled = new ArrayList<>();
+
+        @Override
+        public synchronized void recycle(byte[] buffer) {
+            recycled.add(buffer);
+        }
+    }
+
+    @Test
+    public void newerFrameReplacesPendingOne() throws InterruptedException {
+        RecordingRecycler recycler = new RecordingRecycler();
+        FrameRing ring = new FrameRing(3, 4, 4, recycler);
+        byte[][] buffers = ring.buffers();
+        assertEquals(3, buffers.length);
+        assertEquals(24, buffers[0].length);
+
+        ring.publish(buffers[0]);
+        ring.publish(buffers[1]);
+
+        assertSame(buffers[1], ring.take());
+        assertEquals(1, ring.getDroppedCount());
+        assertEquals(1, recycler.recycled.size());
+        assertSame(buffers[0], recycler.recycled.get(0));
+
+        ring.release(buffers[1]);
+        assertSame(buffers[1], recycler.recycled.get(1));
+    }
+
+    @Test
+    public void closeWakesWaitingConsumer() throws InterruptedException {
+        final FrameRing ring = new FrameRing(2, 4, 4, new RecordingRecycler());
+        final byte[][] taken = new byte[1][];
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    taken[0] = ring.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+
+        ring.close();
+        consumer.join(1000);
+
+        assertFalse(consumer.isAlive());
+        assertNull(taken[0]);
+        ring.publish(ring.buffers()[0]);
+        assertEquals(0, ring.getPublishedCount());
+    }
+}
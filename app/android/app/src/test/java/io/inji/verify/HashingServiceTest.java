@@ -0,0 +1,50 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+public class HashingServiceTest {
+
+    private static byte[] reference(String payload) throws Exception {
+        return MessageDigest.getInstance("SHA-256")
+            .digest(VerificationEngine.sanitize(payload).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void hashPayload_matchesDigestOfSanitizedPayload() throws Exception {
+        String[] payloads = {
+            "",
+            "   ",
+            "  {\"a\":\"<b>x</b>\"}\n",
+            "{\"name\":\"José नमस्ते 😀\"}",
+            "\ud83d",
+        };
+        for (String payload : payloads) {
+            assertArrayEquals(payload, reference(payload), HashingService.hashPayload(payload));
+        }
+    }
+
+    @Test
+    public void hashPayload_streamsLongPayloadsUpToTheSanitizedLimit() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < VerificationEngine.MAX_PAYLOAD_LENGTH + 500) {
+            sb.append("<é😀abc>");
+        }
+        String payload = sb.toString();
+        assertArrayEquals(reference(payload), HashingService.hashPayload(payload));
+    }
+
+    @Test
+    public void logDerivesHexFromBinaryHash() {
+        byte[] hash = HashingService.hashPayload("{}");
+        VerificationLog log = new VerificationLog(hash, "success", 0, false);
+
+        assertEquals(HashingService.HASH_LENGTH, log.getHash().length);
+        assertEquals(64, log.getHashHex().length());
+        assertEquals(log.getHashHex().substring(0, 12) + "...", log.getShortHash());
+    }
+}
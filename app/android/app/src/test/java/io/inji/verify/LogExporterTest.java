@@ -0,0 +1,89 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class LogExporterTest {
+
+    // Ids 1..count; pages are served newest first like LogStore.readPage
+    private static class MemorySource implements LogExporter.Source {
+        final int count;
+        int pagesRead;
+
+        MemorySource(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public List<VerificationLog> readPage(long beforeId, int limit) {
+            pagesRead++;
+            List<VerificationLog> page = new ArrayList<>();
+            for (long id = Math.min(beforeId - 1, count); id >= 1 && page.size() < limit; id--) {
+                VerificationLog log = new VerificationLog(new byte[32], id % 2 == 0 ? "success" : "failure",
+                    id == 1 ? "Unsupported proof type: \"X\"" : null, 1735689600000L + id, id % 3 == 0);
+                log.setId(id);
+                page.add(log);
+            }
+            return page;
+        }
+    }
+
+    private static String export(LogExporter.Source source, LogExporter.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LogExporter(source).export(format, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void csvMatchesExportTsLayout() throws IOException {
+        String[] lines = export(new MemorySource(2), LogExporter.Format.CSV).split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals("\"Time\",\"Hash\",\"Status\",\"Synced\",\"Details\"", lines[0]);
+        String zeros = new String(new char[64]).replace('\0', '0');
+        assertEquals("\"2025-01-01T00:00:00.002Z\",\"" + zeros + "\",\"success\",\"No\",\"{}\"", lines[1]);
+        assertEquals("\"2025-01-01T00:00:00.001Z\",\"" + zeros + "\",\"failure\",\"No\","
+            + "\"{\"\"message\"\":\"\"Unsupported proof type: \\\"\"X\\\"\"\"\"}\"", lines[2]);
+    }
+
+    @Test
+    public void jsonStreamsEveryRowAcrossPages() throws IOException, JSONException {
+        MemorySource source = new MemorySource(LogExporter.PAGE_SIZE * 2 + 5);
+
+        JSONArray rows = new JSONArray(export(source, LogExporter.Format.JSON));
+
+        assertEquals(LogExporter.PAGE_SIZE * 2 + 5, rows.length());
+        assertEquals(3, source.pagesRead);
+        JSONObject last = rows.getJSONObject(rows.length() - 1);
+        assertEquals(1, last.getLong("id"));
+        assertEquals("Unsupported proof type: \"X\"", last.getJSONObject("details").getString("message"));
+        assertTrue(rows.getJSONObject(rows.length() - 3).getBoolean("synced"));
+    }
+
+    @Test
+    public void timestampsMatchIsoFormatter() {
+        SimpleDateFormat reference = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        reference.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long[] samples = {0L, 951782400000L, 1709210096789L, 4102444799999L, 1735689600000L};
+        for (long millis : samples) {
+            StringBuilder sb = new StringBuilder();
+            Iso8601.format(millis, sb);
+            assertEquals(reference.format(new Date(millis)), sb.toString());
+            assertEquals(millis, Iso8601.parse(sb.toString()));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class LogSyncEngineTest {
+
+    private static class MemorySource implements LogSyncEngine.Source {
+        final List<VerificationLog> rows = new ArrayList<>();
+
+        MemorySource(int count) {
+            for (int i = 1; i <= count; i++) {
+                VerificationLog log = new VerificationLog(new byte[32], "success", "ok " + i, 1000L + i, false);
+                log.setId(i);
+                rows.add(log);
+            }
+        }
+
+        @Override
+        public List<VerificationLog> readUnsynced(long afterId, int limit) {
+            List<VerificationLog> page = new ArrayList<>();
+            for (VerificationLog log : rows) {
+                if (!log.isSynced() && log.getId() > afterId && page.size() < limit) {
+                    page.add(log);
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public void markSyncedThrough(long maxId) {
+            for (VerificationLog log : rows) {
+                if (log.getId() <= maxId) {
+                    log.setSynced(true);
+                }
+            }
+        }
+
+        int unsynced() {
+            int n = 0;
+            for (VerificationLog log : rows) {
+                if (!log.isSynced()) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    private static class MemoryCheckpoint implements LogSyncEngine.Checkpoint {
+        long value;
+
+        @Override
+        public long load() {
+            return value;
+        }
+
+        @Override
+        public void save(long lastAcknowledgedId) {
+            value = lastAcknowledgedId;
+        }
+    }
+
+    // Accepts the first `accepted` batches, then answers 400
+    private static class RecordingTransport implements LogSyncEngine.Transport {
+        final List<JSONArray> bodies = new ArrayList<>();
+        final int accepted;
+
+        RecordingTransport(int accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public int post(byte[] body, int length) throws IOException {
+            if (bodies.size() >= accepted) {
+                return 400;
+            }
+            try {
+                bodies.add(new JSONArray(gunzip(body, length)));
+            } catch (JSONException e) {
+                throw new IOException(e);
+            }
+            return 200;
+        }
+    }
+
+    private static String gunzip(byte[] body, int length) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(body, 0, length));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void uploadsAllRowsInCompressedPages() throws JSONException {
+        MemorySource source = new MemorySource(1200);
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+        RecordingTransport transport = new RecordingTransport(Integer.MAX_VALUE);
+
+        LogSyncEngine.Result result = new LogSyncEngine(source, checkpoint, transport).sync();
+
+        assertTrue(result.complete);
+        assertEquals(1200, result.uploaded);
+        assertEquals(3, transport.bodies.size());
+        assertEquals(LogSyncEngine.BATCH_SIZE, transport.bodies.get(0).length());
+        assertEquals(0, source.unsynced());
+        assertEquals(1200, checkpoint.value);
+
+        JSONObject first = transport.bodies.get(0).getJSONObject(0);
+        assertEquals(64, first.getString("vcHash").length());
+        assertEquals("success", first.getString("status"));
+        assertEquals("ok 1", first.getJSONObject("details").getString("message"));
+        assertEquals(1001L, first.getLong("timestamp"));
+        assertEquals("device", first.getString("source"));
+    }
+
+    @Test
+    public void rejectedBatchIsNotMarkedAndSyncResumesFromCheckpoint() throws JSONException {
+        MemorySource source = new MemorySource(1200);
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+
+        LogSyncEngine.Result partial = new LogSyncEngine(source, checkpoint, new RecordingTransport(1)).sync();
+
+        assertFalse(partial.complete);
+        assertEquals(LogSyncEngine.BATCH_SIZE, partial.uploaded);
+        assertEquals("Sync failed: 400", partial.error);
+        assertEquals(700, source.unsynced());
+        assertEquals(LogSyncEngine.BATCH_SIZE, checkpoint.value);
+
+        RecordingTransport transport = new RecordingTransport(Integer.MAX_VALUE);
+        LogSyncEngine.Result resumed = new LogSyncEngine(source, checkpoint, transport).sync();
+
+        assertTrue(resumed.complete);
+        assertEquals(700, resumed.uploaded);
+        assertEquals(LogSyncEngine.BATCH_SIZE + 1, transport.bodies.get(0).getJSONObject(0).getLong("timestamp") - 1000);
+        assertEquals(0, source.unsynced());
+    }
+}
@@ -0,0 +1,118 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogWindowTest {
+
+    // Rows with ids 1..count, like LogStore with nothing deleted
+    private static class MemorySource implements LogWindow.Source {
+        final List<VerificationLog> rows = new ArrayList<>();
+
+        MemorySource(int count) {
+            for (int i = 1; i <= count; i++) {
+                VerificationLog log = new VerificationLog(new byte[32], "success", i, false);
+                log.setId(i);
+                rows.add(log);
+            }
+        }
+
+        @Override
+        public List<VerificationLog> readPage(long beforeId, int limit) {
+            List<VerificationLog> page = new ArrayList<>();
+            for (int i = rows.size() - 1; i >= 0 && page.size() < limit; i--) {
+                if (rows.get(i).getId() < beforeId) {
+                    page.add(copy(rows.get(i)));
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public List<VerificationLog> readNewer(long afterId, int limit) {
+            List<VerificationLog> page = new ArrayList<>();
+            for (int i = 0; i < rows.size() && page.size() < limit; i++) {
+                if (rows.get(i).getId() > afterId) {
+                    page.add(0, copy(rows.get(i)));
+                }
+            }
+            return page;
+        }
+
+        private static VerificationLog copy(VerificationLog log) {
+            VerificationLog copy = new VerificationLog(log.getHash(), log.getStatus(), log.getTimestamp(), log.isSynced());
+            copy.setId(log.getId());
+            return copy;
+        }
+    }
+
+    @Test
+    public void scrollingKeepsWindowBounded() {
+        MemorySource source = new MemorySource(1000);
+        LogWindow window = LogWindow.head(source, 100);
+        assertEquals(1000, window.items.get(0).getId());
+        assertTrue(window.hasOlder);
+
+        for (int i = 0; i < 5; i++) {
+            window = window.loadOlder(source, 100, 300);
+        }
+
+        assertEquals(300, window.size());
+        assertEquals(700, window.items.get(0).getId());
+        assertEquals(401, window.items.get(299).getId());
+        assertTrue(window.hasNewer);
+        assertTrue(window.hasOlder);
+
+        window = window.loadNewer(source, 100, 300);
+        assertEquals(300, window.size());
+        assertEquals(800, window.items.get(0).getId());
+        assertEquals(501, window.items.get(299).getId());
+    }
+
+    @Test
+    public void reachesBothEnds() {
+        MemorySource source = new MemorySource(150);
+        LogWindow window = LogWindow.head(source, 100).loadOlder(source, 100, 300);
+
+        assertEquals(150, window.size());
+        assertFalse(window.hasOlder);
+        assertFalse(window.hasNewer);
+        assertSame(window, window.loadOlder(source, 100, 300));
+    }
+
+    @Test
+    public void newLogsOnlyShowAtHead() {
+        MemorySource source = new MemorySource(500);
+        LogWindow window = LogWindow.head(source, 100);
+        VerificationLog pending = new VerificationLog(new byte[32], "failure", 9999, false);
+
+        LogWindow withNew = window.withHead(pending, 300);
+        assertSame(pending, withNew.items.get(0));
+        assertEquals(101, withNew.size());
+
+        LogWindow scrolled = window.loadOlder(source, 100, 100);
+        assertTrue(scrolled.hasNewer);
+        assertSame(scrolled, scrolled.withHead(pending, 100));
+    }
+
+    @Test
+    public void refreshPicksUpSyncedFlagsAndKeepsPendingLogs() {
+        MemorySource source = new MemorySource(50);
+        VerificationLog pending = new VerificationLog(new byte[32], "success", 9999, false);
+        LogWindow window = LogWindow.head(source, 100).withHead(pending, 300);
+        for (VerificationLog row : source.rows) {
+            row.setSynced(true);
+        }
+
+        LogWindow refreshed = window.refresh(source);
+
+        assertEquals(51, refreshed.size());
+        assertSame(pending, refreshed.items.get(0));
+        assertTrue(refreshed.items.get(1).isSynced());
+        assertTrue(refreshed.items.get(50).isSynced());
+    }
+}
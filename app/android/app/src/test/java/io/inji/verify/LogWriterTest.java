@@ -0,0 +1,93 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogWriterTest {
+
+    private static class RecordingSink implements LogWriter.Sink {
+        final List<Integer> batchSizes = new ArrayList<>();
+        int total;
+
+        @Override
+        public synchronized void insertBatch(List<VerificationLog> batch) {
+            batchSizes.add(batch.size());
+            total += batch.size();
+        }
+    }
+
+    private static VerificationLog log(int i) {
+        return new VerificationLog(new byte[32], "success", i, false);
+    }
+
+    @Test
+    public void burstIsGroupCommittedInBoundedBatches() {
+        RecordingSink sink = new RecordingSink();
+        LogWriter writer = new LogWriter(sink);
+        for (int i = 0; i < 500; i++) {
+            writer.enqueue(log(i));
+        }
+
+        assertTrue(writer.flush(5000));
+        synchronized (sink) {
+            assertEquals(500, sink.total);
+            assertTrue(sink.batchSizes.size() < 500);
+            for (int size : sink.batchSizes) {
+                assertTrue(size <= LogWriter.MAX_BATCH);
+            }
+        }
+        writer.close(1000);
+    }
+
+    @Test
+    public void requestedFlushCommitsAndWriterKeepsBatching() {
+        RecordingSink sink = new RecordingSink();
+        LogWriter writer = new LogWriter(sink);
+        writer.requestFlush();
+        writer.enqueue(log(1));
+        writer.requestFlush();
+
+        assertTrue(writer.flush(5000));
+        for (int i = 0; i < 100; i++) {
+            writer.enqueue(log(i));
+        }
+        assertTrue(writer.flush(5000));
+        synchronized (sink) {
+            assertEquals(101, sink.total);
+            for (int size : sink.batchSizes) {
+                assertTrue(size <= LogWriter.MAX_BATCH);
+            }
+        }
+        writer.close(1000);
+    }
+
+    @Test
+    public void failedCommitDoesNotBlockFlush() {
+        LogWriter writer = new LogWriter(new LogWriter.Sink() {
+            @Override
+            public void insertBatch(List<VerificationLog> batch) {
+                throw new IllegalStateException("disk full");
+            }
+        });
+        writer.enqueue(log(1));
+
+        assertTrue(writer.flush(5000));
+        assertEquals("disk full", writer.getLastError().getMessage());
+        writer.close(1000);
+    }
+
+    @Test
+    public void enqueueAfterCloseIsDropped() {
+        RecordingSink sink = new RecordingSink();
+        LogWriter writer = new LogWriter(sink);
+        writer.close(1000);
+
+        assertFalse(writer.enqueue(log(1)));
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(0, sink.total);
+    }
+}
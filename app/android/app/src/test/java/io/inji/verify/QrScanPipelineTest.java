@@ -0,0 +1,149 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QrScanPipelineTest {
+
+    static final int WIDTH = 640;
+    static final int HEIGHT = 480;
+
+    // NV21 frame with the QR code drawn into the luminance plane, neutral chroma
+    static byte[] frameWithQr(String text, int size, int left, int top) throws WriterException {
+        BitMatrix matrix = new QRCodeWriter().encode(text, BarcodeFormat.QR_CODE, size, size);
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        Arrays.fill(frame, (byte) 0xf0);
+        Arrays.fill(frame, WIDTH * HEIGHT, frame.length, (byte) 0x80);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                if (matrix.get(x, y)) {
+                    frame[(top + y) * WIDTH + left + x] = 0x10;
+                }
+            }
+        }
+        return frame;
+    }
+
+    @Test
+    public void decodesLuminancePlaneInPlace() throws WriterException {
+        byte[] frame = frameWithQr("{\"id\":\"urn:uuid:1\"}", 300, 170, 90);
+
+        assertEquals("{\"id\":\"urn:uuid:1\"}", new QrDecoder().decode(frame, WIDTH, HEIGHT));
+        assertNull(new QrDecoder().decode(new byte[WIDTH * HEIGHT * 3 / 2], WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void fallsBackToFullFrameAndLearnsRegion() throws WriterException {
+        // Top-left corner, outside the centre square
+        byte[] frame = frameWithQr("corner", 150, 0, 0);
+        QrDecoder decoder = new QrDecoder();
+
+        // The first miss already tries the full frame
+        assertEquals("corner", decoder.decode(frame, WIDTH, HEIGHT));
+        assertTrue(decoder.hasRegion());
+
+        // Now found on the region alone
+        assertEquals("corner", decoder.decode(frame, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void newCodeOutsideRegionIsFoundOnTheFirstMiss() throws WriterException {
+        QrDecoder decoder = new QrDecoder();
+        assertEquals("corner", decoder.decode(frameWithQr("corner", 150, 0, 0), WIDTH, HEIGHT));
+
+        // The next holder's code is elsewhere; no waiting for FULL_FRAME_INTERVAL misses
+        assertEquals("other", decoder.decode(frameWithQr("other", 150, WIDTH - 150, HEIGHT - 150), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void decodesHalfResolutionCentreOfLargeFrame() throws WriterException {
+        int width = 1280;
+        int height = 720;
+        BitMatrix matrix = new QRCodeWriter().encode("large", BarcodeFormat.QR_CODE, 400, 400);
+        byte[] frame = new byte[width * height * 3 / 2];
+        Arrays.fill(frame, (byte) 0xf0);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                if (matrix.get(x, y)) {
+                    frame[(160 + y) * width + 440 + x] = 0x10;
+                }
+            }
+        }
+
+        assertEquals("large", new QrDecoder().decode(frame, width, height));
+    }
+
+    // Records decodes and repeats as they arrive on the decode thread
+    private static class RecordingListener implements QrScanPipeline.Listener {
+        final BlockingQueue<String> decoded = new LinkedBlockingQueue<>();
+        final AtomicInteger repeats = new AtomicInteger();
+
+        @Override
+        public void onDecoded(String payload) {
+            decoded.add(payload);
+        }
+
+        @Override
+        public void onRepeat(ScanDeduplicator.Repeat repeat) {
+            repeats.incrementAndGet();
+        }
+    }
+
+    private static void publish(FrameRing ring, int buffer, String text) throws WriterException {
+        byte[] frame = ring.buffers()[buffer];
+        System.arraycopy(frameWithQr(text, 300, 170, 90), 0, frame, 0, frame.length);
+        ring.publish(frame);
+    }
+
+    @Test
+    public void stopsAtFirstDecode() throws Exception {
+        FrameRing ring = new FrameRing(3, WIDTH, HEIGHT, buffer -> { });
+        RecordingListener listener = new RecordingListener();
+        QrScanPipeline pipeline = new QrScanPipeline(ring, new QrDecoder(),
+            new ScanDeduplicator(ScanDeduplicator.DEFAULT_WINDOW_MS), false, listener);
+        pipeline.start();
+
+        publish(ring, 0, "hello");
+
+        assertEquals("hello", listener.decoded.poll(5, TimeUnit.SECONDS));
+        assertFalse(pipeline.isRunning());
+        publish(ring, 1, "again");
+        Thread.sleep(50);
+        assertTrue(listener.decoded.isEmpty());
+        assertEquals(0, listener.repeats.get());
+    }
+
+    @Test
+    public void continuousModeKeepsScanningAndCoalescesRepeats() throws Exception {
+        final BlockingQueue<byte[]> free = new LinkedBlockingQueue<>();
+        FrameRing ring = new FrameRing(3, WIDTH, HEIGHT, free::add);
+        RecordingListener listener = new RecordingListener();
+        QrScanPipeline pipeline = new QrScanPipeline(ring, new QrDecoder(),
+            new ScanDeduplicator(ScanDeduplicator.DEFAULT_WINDOW_MS), true, listener);
+        pipeline.start();
+
+        publish(ring, 0, "first");
+        assertEquals("first", listener.decoded.poll(5, TimeUnit.SECONDS));
+        assertNotNull(free.poll(5, TimeUnit.SECONDS));
+        publish(ring, 1, "first");
+        assertNotNull(free.poll(5, TimeUnit.SECONDS));
+        publish(ring, 2, "second");
+
+        assertEquals("second", listener.decoded.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.repeats.get());
+        assertTrue(pipeline.isRunning());
+        pipeline.stop();
+    }
+}
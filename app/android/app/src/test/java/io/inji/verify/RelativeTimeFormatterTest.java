@@ -0,0 +1,41 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RelativeTimeFormatterTest {
+
+    private static final long NOW = 1735689600000L;
+
+    @Test
+    public void labelsFollowBuckets() {
+        assertEquals("Just now", RelativeTimeFormatter.format(NOW - 59999, NOW));
+        assertEquals("Just now", RelativeTimeFormatter.format(NOW + 5000, NOW));
+        assertEquals("1 minutes ago", RelativeTimeFormatter.format(NOW - 60000, NOW));
+        assertEquals("59 minutes ago", RelativeTimeFormatter.format(NOW - 3599999, NOW));
+        assertEquals("23 hours ago", RelativeTimeFormatter.format(NOW - 86399999, NOW));
+        assertEquals("3 days ago", RelativeTimeFormatter.format(NOW - 3 * 86400000L, NOW));
+        assertEquals("400 days ago", RelativeTimeFormatter.format(NOW - 400 * 86400000L, NOW));
+    }
+
+    @Test
+    public void cachedLabelsAreShared() {
+        assertSame(RelativeTimeFormatter.format(NOW - 5 * 60000, NOW),
+            RelativeTimeFormatter.format(NOW - 5 * 60000 - 1234, NOW));
+        assertSame(RelativeTimeFormatter.format(NOW - 10 * 86400000L, NOW),
+            RelativeTimeFormatter.format(NOW - 10 * 86400000L - 5, NOW));
+    }
+
+    @Test
+    public void nextChangeIsTheBucketBoundary() {
+        long[] ages = {0, 59999, 60000, 125000, 3599999, 3600000, 86400000L + 7, 10 * 86400000L};
+        for (long age : ages) {
+            long timestamp = NOW - age;
+            long next = RelativeTimeFormatter.nextChange(timestamp, NOW);
+            assertTrue(next > NOW);
+            assertEquals(RelativeTimeFormatter.format(timestamp, NOW), RelativeTimeFormatter.format(timestamp, next - 1));
+            assertNotEquals(RelativeTimeFormatter.format(timestamp, NOW), RelativeTimeFormatter.format(timestamp, next));
+        }
+    }
+}
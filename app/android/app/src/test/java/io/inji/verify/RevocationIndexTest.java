@@ -0,0 +1,60 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RevocationIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void revokedIdsAreFoundAndOthersAreNot() throws Exception {
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            revoked.add("urn:uuid:revoked-" + i);
+        }
+        revoked.add("urn:uuid:\u00e9-non-ascii");
+        File file = temporaryFolder.newFile("revocation.idx");
+        RevocationIndex.build(file, revoked);
+        RevocationIndex index = RevocationIndex.open(file);
+
+        assertEquals(revoked.size(), index.size());
+        for (String id : revoked) {
+            assertTrue(id, index.isRevoked(id));
+        }
+        for (int i = 0; i < 50000; i++) {
+            assertFalse(index.isRevoked("urn:uuid:valid-" + i));
+        }
+        assertFalse(index.isRevoked("urn:uuid:revoked-"));
+        assertFalse(index.isRevoked("urn:uuid:revoked-500000"));
+    }
+
+    @Test
+    public void duplicatesAreCollapsed() throws Exception {
+        File file = temporaryFolder.newFile("revocation.idx");
+        RevocationIndex.build(file, Arrays.asList("b", "a", "b", "c"));
+        RevocationIndex index = RevocationIndex.open(file);
+
+        assertEquals(3, index.size());
+        assertTrue(index.isRevoked("a"));
+        assertTrue(index.isRevoked("c"));
+    }
+
+    @Test
+    public void emptyIndexRevokesNothing() throws Exception {
+        File file = temporaryFolder.newFile("revocation.idx");
+        RevocationIndex.build(file, Collections.<String>emptyList());
+
+        assertFalse(RevocationIndex.open(file).isRevoked("urn:uuid:1"));
+    }
+}
@@ -0,0 +1,54 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ScanDeduplicatorTest {
+
+    private static byte[] digest(String payload) {
+        return HashingService.hashPayload(payload);
+    }
+
+    @Test
+    public void repeatsWithinWindowAreCoalesced() {
+        ScanDeduplicator dedupe = new ScanDeduplicator(1000);
+        assertNull(dedupe.record(digest("a"), 0));
+        VerificationResult verified = VerificationResult.success("ok");
+        dedupe.remember(digest("a"), verified);
+
+        ScanDeduplicator.Repeat second = dedupe.record(digest("a"), 400);
+        ScanDeduplicator.Repeat third = dedupe.record(digest("a"), 1300);
+
+        assertEquals(2, second.count);
+        assertSame(verified, second.result);
+        // The window slides with each sighting while the camera stays on the code
+        assertEquals(3, third.count);
+        assertNull(dedupe.record(digest("b"), 1300));
+    }
+
+    @Test
+    public void payloadIsVerifiedAgainAfterWindow() {
+        ScanDeduplicator dedupe = new ScanDeduplicator(1000);
+        assertNull(dedupe.record(digest("a"), 0));
+        dedupe.remember(digest("a"), VerificationResult.success("ok"));
+
+        assertNull(dedupe.record(digest("a"), 1000));
+        ScanDeduplicator.Repeat repeat = dedupe.record(digest("a"), 1500);
+        assertEquals(2, repeat.count);
+        // Not verified yet in the new window
+        assertNull(repeat.result);
+    }
+
+    @Test
+    public void rememberedResultDoesNotKeepAnExpiredEntryAlive() {
+        ScanDeduplicator dedupe = new ScanDeduplicator(1000);
+        assertNull(dedupe.record(digest("a"), 0));
+        assertNull(dedupe.record(digest("b"), 500));
+        // a's verification finishes after b was seen
+        dedupe.remember(digest("a"), VerificationResult.success("ok"));
+
+        assertNull(dedupe.record(digest("a"), 1200));
+        assertEquals(2, dedupe.record(digest("b"), 1200).count);
+    }
+}
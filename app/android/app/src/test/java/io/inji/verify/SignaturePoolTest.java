@@ -0,0 +1,102 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Collections;
+
+public class SignaturePoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private KeyPair keyPair;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    }
+
+    @Test
+    public void releasedSignature_servesTheNextCheck() throws Exception {
+        SignaturePool pool = new SignaturePool();
+        SignaturePool.Slots slots = pool.slots("Ed25519", keyPair.getPublic());
+        byte[] message = "signed".getBytes(StandardCharsets.UTF_8);
+
+        Signature first = slots.acquire();
+        first.update("tampered".getBytes(StandardCharsets.UTF_8));
+        assertFalse(first.verify(sign(message)));
+        slots.release(first);
+
+        // verify() reset it to its initVerify state, so the failed input is gone
+        Signature second = slots.acquire();
+        assertSame(first, second);
+        second.update(message);
+        assertTrue(second.verify(sign(message)));
+    }
+
+    @Test
+    public void abandonedSignature_isNotReused() throws Exception {
+        SignaturePool.Slots slots = new SignaturePool().slots("Ed25519", keyPair.getPublic());
+        Signature abandoned = slots.acquire();
+        abandoned.update("half an input".getBytes(StandardCharsets.UTF_8));
+
+        Signature next = slots.acquire();
+        assertNotSame(abandoned, next);
+        byte[] message = "signed".getBytes(StandardCharsets.UTF_8);
+        next.update(message);
+        assertTrue(next.verify(sign(message)));
+    }
+
+    @Test
+    public void slots_arePerAlgorithmAndKey() throws Exception {
+        SignaturePool pool = new SignaturePool();
+        PublicKey other = KeyPairGenerator.getInstance("Ed25519").generateKeyPair().getPublic();
+
+        assertSame(pool.slots("Ed25519", keyPair.getPublic()), pool.slots("Ed25519", keyPair.getPublic()));
+        assertNotSame(pool.slots("Ed25519", keyPair.getPublic()), pool.slots("Ed25519", other));
+        assertNotSame(pool.slots("Ed25519", keyPair.getPublic()), pool.slots("SHA256withRSA", keyPair.getPublic()));
+        assertEquals(3, pool.size());
+        pool.invalidateAll();
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void engine_reusesSignaturesAcrossCredentials() throws Exception {
+        File indexFile = temporaryFolder.newFile("revocation.idx");
+        RevocationIndex.build(indexFile, Collections.<String>emptyList());
+        TrustStore trustStore = TrustStore.fromJson(VerificationEngineTest.trustBundle(keyPair));
+        VerificationEngine engine = new VerificationEngine(trustStore, RevocationIndex.open(indexFile));
+
+        for (int i = 0; i < 5; i++) {
+            String credential = VerificationEngineTest.signedCredential(keyPair, "urn:uuid:" + i).toString();
+            if (i == 2) {
+                credential = credential.replace("Mary Smith", "Mary Smyth");
+            }
+            VerificationResult result = engine.verify(credential, VerificationEngineTest.NOW);
+            assertEquals(result.getMessage(), i != 2, result.isSuccess());
+        }
+        assertEquals(1, trustStore.getSignaturePool().size());
+
+        // A reloaded bundle starts with an empty pool
+        TrustStore reloaded = TrustStore.fromJson(VerificationEngineTest.trustBundle(keyPair));
+        assertEquals(0, reloaded.getSignaturePool().size());
+    }
+
+    private byte[] sign(byte[] message) throws Exception {
+        Signature signer = Signature.getInstance("Ed25519");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(message);
+        return signer.sign();
+    }
+}
@@ -0,0 +1,101 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+public class StreamingCanonicalizerTest {
+
+    @Test
+    public void digest_matchesJsonCanonicalizer() throws Exception {
+        String[] documents = {
+            "{}",
+            "{\"b\": [1, 2.50, {\"z\": null, \"a\": true}], \"a\": {\"y\": false, \"x\": \"\"}}",
+            " {\n\t\"quote\\\"s\": \"tab\\there \\/ \\\\ \\u0001 \\u00e9 caf\u00e9\",\r\n \"n\": -12.0 } ",
+            "{\"\ue000\": 1, \"\ud83d\ude00\": 2, \"\\ud83d\\ude01\": 3, \"lone\": \"\\ud800x\"}",
+            "{\"credentialSubject\": {\"fullName\": \"Mary Smith\", \"landArea\": 25.75, \"tags\": [[], {}]}}",
+        };
+        for (String json : documents) {
+            byte[] expected = HashingService.sha256(JsonCanonicalizer.canonicalize(new JSONObject(json)));
+            assertArrayEquals(json, expected, digest(json));
+        }
+    }
+
+    @Test
+    public void signingData_matchesCanonicalizedProofOptionsAndDocument() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        JSONObject credential = VerificationEngineTest.signedCredential(keyPair, "urn:uuid:1");
+        credential.getJSONObject("proof").put("@context", "https://example.org/ignored");
+
+        JSONObject document = new JSONObject(credential.toString());
+        JSONObject options = (JSONObject) document.remove("proof");
+        options.remove("jws");
+        options.put("@context", document.get("@context"));
+        byte[] expected = new byte[64];
+        System.arraycopy(HashingService.sha256(JsonCanonicalizer.canonicalize(options)), 0, expected, 0, 32);
+        System.arraycopy(HashingService.sha256(JsonCanonicalizer.canonicalize(document)), 0, expected, 32, 32);
+
+        assertArrayEquals(expected,
+            VerificationEngine.signingData(credential.toString(2).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void numbers_areWrittenAsEcmaScriptDoes() throws Exception {
+        assertArrayEquals(digest("{\"a\":1.5,\"b\":0,\"c\":100,\"d\":1e-7,\"e\":1e+21}"),
+            digest("{\"a\":1.50,\"b\":-0.0,\"c\":1E2,\"d\":0.0000001,\"e\":1000000000000000000000}"));
+
+        assertEquals("100", StreamingCanonicalizer.formatNumber(1e2));
+        assertEquals("0.00001", StreamingCanonicalizer.formatNumber(0.00001));
+        assertEquals("1e-7", StreamingCanonicalizer.formatNumber(1e-7));
+        assertEquals("1e+21", StreamingCanonicalizer.formatNumber(1e21));
+        assertEquals("123456789012345680000", StreamingCanonicalizer.formatNumber(123456789012345678901d));
+        assertEquals("0.30000000000000004", StreamingCanonicalizer.formatNumber(0.1 + 0.2));
+        assertEquals("-1.7976931348623157e+308", StreamingCanonicalizer.formatNumber(-Double.MAX_VALUE));
+        assertEquals("5e-324", StreamingCanonicalizer.formatNumber(Double.MIN_VALUE));
+    }
+
+    @Test
+    public void ambiguousOrMalformedJson_isRejected() {
+        String deep = "{\"a\":" + repeat("[", StreamingCanonicalizer.MAX_DEPTH + 1)
+            + repeat("]", StreamingCanonicalizer.MAX_DEPTH + 1) + "}";
+        String[] rejected = {
+            "{\"a\": 1, \"a\": 2}",
+            "{\"a\": 1} {}",
+            "{'a': 1}",
+            "{\"a\": 007}",
+            "{\"a\": 1e999999}",
+            "[1]",
+            "{\"a\": \"unterminated}",
+            deep,
+        };
+        for (String json : rejected) {
+            try {
+                digest(json);
+                fail("Accepted " + json);
+            } catch (JSONException expected) {
+            }
+        }
+    }
+
+    private static byte[] digest(String json) throws JSONException {
+        StreamingCanonicalizer canonicalizer = StreamingCanonicalizer.forCurrentThread();
+        int root = canonicalizer.parse(json.getBytes(StandardCharsets.UTF_8));
+        byte[] hash = new byte[HashingService.HASH_LENGTH];
+        canonicalizer.digestObject(root, null, null, -1, hash, 0);
+        return hash;
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Provider;
+import java.security.Security;
+
+public class TrustStoreTest {
+
+    @Test
+    public void keysAreDecodedAndIndexedAtLoad() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        TrustStore store = TrustStore.fromJson(VerificationEngineTest.trustBundle(keyPair));
+
+        TrustStore.Issuer issuer = store.getIssuer(VerificationEngineTest.ISSUER);
+        assertNotNull(issuer);
+        TrustStore.IssuerKey key = store.resolveKey(issuer, VerificationEngineTest.KEY_ID, 0);
+        assertNotNull(key);
+        assertEquals(keyPair.getPublic(), key.publicKey);
+        assertSame(key, store.resolveKey(issuer, null, 0));
+    }
+
+    @Test
+    public void keyOfAnotherIssuerDoesNotResolve() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        JSONObject bundle = VerificationEngineTest.trustBundle(keyPair);
+        bundle.getJSONArray("issuers").put(new JSONObject()
+            .put("id", "did:web:other")
+            .put("publicKeys", new JSONArray()));
+        TrustStore store = TrustStore.fromJson(bundle);
+
+        assertNull(store.resolveKey(store.getIssuer("did:web:other"), VerificationEngineTest.KEY_ID, 0));
+    }
+
+    @Test
+    public void mockKeysAreKeptButUnavailable() throws Exception {
+        JSONObject bundle = new JSONObject().put("issuers", new JSONArray().put(new JSONObject()
+            .put("id", "did:mosip:issuer:gov")
+            .put("publicKeys", new JSONArray().put(new JSONObject()
+                .put("id", "did:mosip:issuer:gov#key-1")
+                .put("type", "Ed25519")
+                .put("publicKey", "mock-ed25519-public-key-gov")
+                .put("expiresAt", 1735689600000L)
+                .put("revoked", false)))));
+        TrustStore store = TrustStore.fromJson(bundle);
+
+        TrustStore.IssuerKey key = store.resolveKey(
+            store.getIssuer("did:mosip:issuer:gov"), "did:mosip:issuer:gov#key-1", 1704067200000L);
+        assertNotNull(key);
+        assertNull(key.publicKey);
+        assertNull(store.resolveKey(store.getIssuer("did:mosip:issuer:gov"), null, 1735689600001L));
+    }
+
+    @Test
+    public void keysWithoutAProviderAreMarkedUnsupported() throws Exception {
+        // Stands in for Android before API 33, which has no Ed25519 KeyFactory
+        JSONObject bundle = VerificationEngineTest.trustBundle(
+            KeyPairGenerator.getInstance("Ed25519").generateKeyPair());
+        Provider provider = Security.getProvider("SunEC");
+        int position = Security.getProviders().length;
+        for (int i = 0; i < Security.getProviders().length; i++) {
+            if (Security.getProviders()[i] == provider) {
+                position = i + 1;
+            }
+        }
+        Security.removeProvider("SunEC");
+        TrustStore store;
+        try {
+            store = TrustStore.fromJson(bundle);
+        } finally {
+            Security.insertProviderAt(provider, position);
+        }
+
+        TrustStore.IssuerKey key = store.resolveKey(
+            store.getIssuer(VerificationEngineTest.ISSUER), VerificationEngineTest.KEY_ID, 0);
+        assertNull(key.publicKey);
+        assertTrue(key.unsupported);
+    }
+}
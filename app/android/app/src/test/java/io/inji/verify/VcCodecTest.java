@@ -0,0 +1,146 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+public class VcCodecTest {
+
+    private static final byte[] NONCE = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final long ISSUED_AT = 1735795006000L;
+
+    @Test
+    public void sampleCredential_roundTripsCanonically() throws Exception {
+        JSONObject credential = farmerCredential();
+        VcCodec.Packet packet = VcCodec.decode(VcCodec.encode(credential, NONCE, ISSUED_AT));
+
+        assertArrayEquals(JsonCanonicalizer.canonicalize(credential), JsonCanonicalizer.canonicalize(packet.credential));
+        assertArrayEquals(NONCE, packet.nonce);
+        assertEquals(ISSUED_AT, packet.issuedAt);
+    }
+
+    @Test
+    public void sampleCredential_isSmallerThanCompactJson() throws Exception {
+        JSONObject credential = farmerCredential();
+        int json = credential.toString().getBytes(StandardCharsets.UTF_8).length;
+        int cbor = VcCodec.encode(credential, NONCE, ISSUED_AT).length;
+        // At least 40% off; the signature and header bytes themselves do not shrink
+        assertTrue(cbor + " vs " + json, cbor * 10 < json * 6);
+    }
+
+    @Test
+    public void decodedCredential_stillVerifies() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        File indexFile = File.createTempFile("revocation", ".idx");
+        indexFile.deleteOnExit();
+        RevocationIndex.build(indexFile, Collections.<String>emptyList());
+        VerificationEngine engine = new VerificationEngine(
+            TrustStore.fromJson(VerificationEngineTest.trustBundle(keyPair)), RevocationIndex.open(indexFile));
+
+        JSONObject credential = VerificationEngineTest.signedCredential(keyPair, "urn:uuid:1");
+        JSONObject received = VcCodec.decode(VcCodec.encode(credential, NONCE, ISSUED_AT)).credential;
+        VerificationResult result = engine.verify(received.toString(), VerificationEngineTest.NOW);
+        assertTrue(result.getMessage(), result.isSuccess());
+    }
+
+    @Test
+    public void nearMissStrings_arePreservedVerbatim() throws Exception {
+        JSONObject credential = new JSONObject()
+            .put("custom", new JSONArray()
+                .put("2025-01-02T05:16:46Z")
+                .put("2025-01-02T05:16:46.000Z")
+                .put("2025-01-02T05:16:46.1Z")
+                .put("2025-02-30T05:16:46Z")
+                .put("2025-01-02T05:16:46+05:30")
+                .put("a.b.c")
+                .put("ab==.cd.ef")
+                .put("z0OIl")
+                .put("zQ3s")
+                .put("zebra")
+                .put("VerifiableCredentials")
+                .put(""))
+            .put("numbers", new JSONArray().put(0).put(-1).put(23).put(24).put(Long.MAX_VALUE)
+                .put(Long.MIN_VALUE).put(25.75).put(true).put(false).put(JSONObject.NULL))
+            .put("nested", new JSONObject().put("ünïcödé", "✓"));
+
+        JSONObject decoded = VcCodec.decode(VcCodec.encode(credential, NONCE, ISSUED_AT)).credential;
+        assertEquals(credential.toString(), new JSONObject(decoded.toString()).toString());
+        assertArrayEquals(JsonCanonicalizer.canonicalize(credential), JsonCanonicalizer.canonicalize(decoded));
+    }
+
+    @Test
+    public void dataUriPhotos_areCarriedAsBytes() throws Exception {
+        byte[] photo = new byte[3001];
+        new Random(7).nextBytes(photo);
+        String uri = "data:image/jpeg;base64," + Encoding.encodeBase64(photo);
+        JSONObject credential = new JSONObject()
+            .put("credentialSubject", new JSONObject()
+                .put("face", uri)
+                .put("unpadded", "data:image/png;base64,AAE")
+                .put("notBase64", "data:text/plain,hello"));
+
+        byte[] packet = VcCodec.encode(credential, NONCE, ISSUED_AT);
+        JSONObject decoded = VcCodec.decode(packet).credential;
+        assertArrayEquals(JsonCanonicalizer.canonicalize(credential), JsonCanonicalizer.canonicalize(decoded));
+        // The photo travels as its raw bytes rather than a third more base64 characters
+        assertTrue(packet.length + " bytes", packet.length < photo.length + 200);
+    }
+
+    @Test
+    public void malformedPackets_areRejected() throws Exception {
+        byte[] packet = VcCodec.encode(farmerCredential(), NONCE, ISSUED_AT);
+        byte[][] bad = {
+            new byte[0],
+            Arrays.copyOf(packet, packet.length - 1),
+            Arrays.copyOf(packet, packet.length + 1),
+            {(byte) 0xa1, 0x06, (byte) 0x9b, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, 0, 0},
+            {(byte) 0xa1, 0x20, 0x00},
+        };
+        for (byte[] input : bad) {
+            try {
+                VcCodec.decode(input);
+                fail("Accepted " + Encoding.toHex(input));
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    // public/trust/test-vcs/mosip-farmer-vc.json
+    static JSONObject farmerCredential() throws Exception {
+        return new JSONObject()
+            .put("@context", new JSONArray()
+                .put("https://www.w3.org/2018/credentials/v1")
+                .put("https://piyush7034.github.io/my-files/farmer.json"))
+            .put("issuer", "did:web:vharsh.github.io:DID:local")
+            .put("type", new JSONArray().put("VerifiableCredential").put("FarmerCredential"))
+            .put("issuanceDate", "2025-01-02T05:16:46.176Z")
+            .put("expirationDate", "2027-01-02T05:16:46.176Z")
+            .put("credentialSubject", new JSONObject()
+                .put("fullName", "Mary Smith")
+                .put("mobileNumber", "8765432109")
+                .put("dateOfBirth", "1975-08-22")
+                .put("landArea", "25.75")
+                .put("landOwnershipType", "Leased")
+                .put("primaryCropType", "Rice")
+                .put("secondaryCropType", "Pulses"))
+            .put("proof", new JSONObject()
+                .put("type", "Ed25519Signature2018")
+                .put("created", "2025-01-01T23:46:46Z")
+                .put("proofPurpose", "assertionMethod")
+                .put("verificationMethod", "did:web:vharsh.github.io:DID:local#key-0")
+                .put("jws", "eyJ4NXQjUzI1NiI6IkhkakdicHlseVY0ZGZPZS01dDRhWGJOc3F2d1JDaExOeUxWczl2MEhqSjQiLCJiNjQi"
+                    + "OmZhbHNlLCJjcml0IjpbImI2NCJdLCJraWQiOiIxSTZ1bVNrRDRNeWxXUmMtYWJCejIwY3hMcUVGTUp3aG9K"
+                    + "dmhNM1ZGZ21jIiwiYWxnIjoiRWREU0EifQ..VAqXjgwvMZ-3TAUR6kW0snxqGdlycyP3cQCzdsl61CFulGl"
+                    + "OrCpCV_KiqMrEsQ3-23Cmn-pdtnF8m4V-qwkKAg"));
+    }
+}
@@ -0,0 +1,59 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class VerificationCacheTest {
+
+    private static ByteBuffer key(int i) {
+        byte[] digest = new byte[32];
+        digest[0] = (byte) i;
+        return ByteBuffer.wrap(digest);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        VerificationCache cache = new VerificationCache(2, 60000);
+        cache.put(key(1), VerificationResult.success("one"), 0);
+        cache.put(key(2), VerificationResult.success("two"), 0);
+        assertNotNull(cache.get(key(1), 1));
+        cache.put(key(3), VerificationResult.success("three"), 2);
+
+        assertNotNull(cache.get(key(1), 3));
+        assertNull(cache.get(key(2), 3));
+        assertNotNull(cache.get(key(3), 3));
+    }
+
+    @Test
+    public void entriesExpireAfterTtlOrCredentialExpiry() {
+        VerificationCache cache = new VerificationCache(16, 1000);
+        cache.put(key(1), VerificationResult.success("ttl"), 0);
+        cache.put(key(2), VerificationResult.success("expiring").expiringAt(500), 0);
+
+        assertNotNull(cache.get(key(2), 499));
+        assertNull(cache.get(key(2), 500));
+        assertNotNull(cache.get(key(1), 999));
+        assertNull(cache.get(key(1), 1000));
+    }
+
+    @Test
+    public void invalidateAllDropsEntries() {
+        VerificationCache cache = new VerificationCache(16, 1000);
+        cache.put(key(1), VerificationResult.failure("Untrusted issuer"), 0);
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void transientFailuresAreNotCached() {
+        VerificationCache cache = new VerificationCache(16, 1000);
+        cache.put(key(1), VerificationResult.transientFailure("Verification interrupted"), 0);
+
+        assertNull(cache.get(key(1), 1));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,189 @@
+package io.inji.verify;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class VerificationEngineTest {
+
+    static final String ISSUER = "did:web:example.org:issuer";
+    static final String KEY_ID = ISSUER + "#key-0";
+    static final long NOW = Iso8601.parse("2025-06-01T00:00:00Z");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private KeyPair keyPair;
+    private VerificationEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        File indexFile = temporaryFolder.newFile("revocation.idx");
+        RevocationIndex.build(indexFile, Collections.singletonList("urn:uuid:revoked"));
+        engine = new VerificationEngine(TrustStore.fromJson(trustBundle(keyPair)), RevocationIndex.open(indexFile));
+    }
+
+    @Test
+    public void validCredential_isVerified() throws Exception {
+        VerificationResult result = engine.verify(signedCredential(keyPair, "urn:uuid:1").toString(), NOW);
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertEquals(VerificationEngine.MESSAGE_VERIFIED, result.getMessage());
+    }
+
+    @Test
+    public void repeatScan_isServedFromCache() throws Exception {
+        String payload = signedCredential(keyPair, "urn:uuid:1").toString();
+        VerificationResult first = engine.verify(payload, NOW);
+        assertSame(first, engine.verify("  " + payload + "\n", NOW + 1000));
+    }
+
+    @Test
+    public void tamperedCredential_failsSignature() throws Exception {
+        JSONObject credential = signedCredential(keyPair, "urn:uuid:1");
+        credential.getJSONObject("credentialSubject").put("fullName", "Mallory");
+        VerificationResult result = engine.verify(credential.toString(), NOW);
+        assertFalse(result.isSuccess());
+        assertEquals(VerificationEngine.MESSAGE_SIGNATURE_MISMATCH, result.getMessage());
+    }
+
+    @Test
+    public void expiredCredential_fails() throws Exception {
+        JSONObject credential = signedCredential(keyPair, "urn:uuid:1");
+        VerificationResult result = engine.verify(credential.toString(), Iso8601.parse("2030-01-01T00:00:00Z"));
+        assertEquals("Credential has expired", result.getMessage());
+    }
+
+    @Test
+    public void notYetValidCredential_isRecheckedOnceValid() throws Exception {
+        JSONObject credential = signedCredential(keyPair, "urn:uuid:1");
+        String payload = credential.toString();
+        long issued = Iso8601.parse(credential.getString("issuanceDate"));
+
+        assertEquals("Credential is not yet valid", engine.verify(payload, issued - 1000).getMessage());
+        assertTrue(engine.verify(payload, issued).isSuccess());
+    }
+
+    @Test
+    public void unknownIssuer_fails() throws Exception {
+        JSONObject credential = signedCredential(keyPair, "urn:uuid:1");
+        credential.put("issuer", "did:web:unknown");
+        assertEquals("Untrusted issuer", engine.verify(credential.toString(), NOW).getMessage());
+    }
+
+    @Test
+    public void revokedCredential_fails() throws Exception {
+        JSONObject credential = signedCredential(keyPair, "urn:uuid:revoked");
+        assertEquals("Credential has been revoked", engine.verify(credential.toString(), NOW).getMessage());
+    }
+
+    @Test
+    public void malformedPayload_fails() {
+        assertEquals("Empty payload", engine.verify("", NOW).getMessage());
+        assertEquals("Invalid JSON format", engine.verify("{not json}", NOW).getMessage());
+        assertEquals("Invalid credential format", engine.verify("{\"a\":1}", NOW).getMessage());
+    }
+
+    @Test
+    public void stageExecutor_givesSameResults() throws Exception {
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        try {
+            VerificationEngine parallel = new VerificationEngine(TrustStore.fromJson(trustBundle(keyPair)),
+                RevocationIndex.open(new File(temporaryFolder.getRoot(), "revocation.idx")), stages);
+            JSONObject tampered = signedCredential(keyPair, "urn:uuid:2");
+            tampered.getJSONObject("credentialSubject").put("fullName", "Mallory");
+            JSONObject untrusted = signedCredential(keyPair, "urn:uuid:3").put("issuer", "did:web:unknown");
+            String[] payloads = {
+                signedCredential(keyPair, "urn:uuid:1").toString(),
+                tampered.toString(),
+                untrusted.toString(),
+                signedCredential(keyPair, "urn:uuid:revoked").toString(),
+                "{\"a\":1}",
+            };
+            for (String payload : payloads) {
+                assertEquals(engine.verify(payload, NOW).getMessage(), parallel.verify(payload, NOW).getMessage());
+            }
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedCheapCheck_cancelsProofStage() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        VerificationEngine parallel = new VerificationEngine(TrustStore.fromJson(trustBundle(keyPair)),
+            RevocationIndex.open(new File(temporaryFolder.getRoot(), "revocation.idx")), queued::add);
+
+        JSONObject revoked = signedCredential(keyPair, "urn:uuid:revoked");
+        assertEquals("Credential has been revoked", parallel.verify(revoked.toString(), NOW).getMessage());
+        assertEquals(1, queued.size());
+        assertTrue(((Future<?>) queued.get(0)).isCancelled());
+
+        // Nothing ever runs the queue: the caller does the work itself
+        VerificationResult result = parallel.verify(signedCredential(keyPair, "urn:uuid:1").toString(), NOW);
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertFalse(((Future<?>) queued.get(1)).isCancelled());
+    }
+
+    static JSONObject trustBundle(KeyPair keyPair) throws Exception {
+        JSONObject key = new JSONObject()
+            .put("id", KEY_ID)
+            .put("type", "Ed25519")
+            .put("publicKey", Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()))
+            .put("algorithm", "EdDSA")
+            .put("revoked", false);
+        JSONObject issuer = new JSONObject()
+            .put("id", ISSUER)
+            .put("name", "Test Issuer")
+            .put("publicKeys", new JSONArray().put(key));
+        return new JSONObject()
+            .put("issuers", new JSONArray().put(issuer))
+            .put("revocationLists", new JSONArray())
+            .put("contexts", new JSONArray()
+                .put(new JSONObject().put("@context", "https://www.w3.org/2018/credentials/v1")));
+    }
+
+    static JSONObject signedCredential(KeyPair keyPair, String id) throws Exception {
+        JSONObject credential = new JSONObject()
+            .put("@context", new JSONArray().put("https://www.w3.org/2018/credentials/v1"))
+            .put("id", id)
+            .put("type", new JSONArray().put("VerifiableCredential"))
+            .put("issuer", ISSUER)
+            .put("issuanceDate", "2025-01-02T05:16:46.176Z")
+            .put("expirationDate", "2027-01-02T05:16:46.176Z")
+            .put("credentialSubject", new JSONObject().put("fullName", "Mary Smith").put("landArea", 25.75));
+        JSONObject proof = new JSONObject()
+            .put("type", "Ed25519Signature2018")
+            .put("created", "2025-01-01T23:46:46Z")
+            .put("proofPurpose", "assertionMethod")
+            .put("verificationMethod", KEY_ID);
+
+        String header = Encoding.encodeBase64Url(
+            "{\"alg\":\"EdDSA\",\"b64\":false,\"crit\":[\"b64\"]}".getBytes(StandardCharsets.UTF_8));
+        Signature signer = Signature.getInstance("Ed25519");
+        signer.initSign(keyPair.getPrivate());
+        signer.update((header + ".").getBytes(StandardCharsets.US_ASCII));
+        credential.put("proof", proof);
+        signer.update(VerificationEngine.signingData(credential.toString().getBytes(StandardCharsets.UTF_8)));
+        proof.put("jws", header + ".." + Encoding.encodeBase64Url(signer.sign()));
+        return credential;
+    }
+}